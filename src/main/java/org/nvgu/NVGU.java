@@ -1,60 +1,336 @@
 package org.nvgu;
 
-import org.lwjgl.BufferUtils;
 import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGLUFramebuffer;
 import org.lwjgl.nanovg.NVGPaint;
 import org.lwjgl.system.MemoryUtil;
-import org.lwjgl.system.NativeResource;
+import org.nvgu.asset.AssetLoader;
+import org.nvgu.asset.DecodedImage;
+import org.nvgu.asset.FontHandle;
+import org.nvgu.asset.ResourceHandle;
+import org.nvgu.asset.TextureAtlas;
+import org.nvgu.asset.TextureHandle;
+import org.nvgu.asset.TextureManager;
+import org.nvgu.render.CullingRenderer;
+import org.nvgu.render.DisplayList;
+import org.nvgu.render.FrameExporter;
+import org.nvgu.render.LayerCache;
+import org.nvgu.render.MergingRenderer;
+import org.nvgu.render.NanoVGRenderer;
+import org.nvgu.render.OffscreenContext;
+import org.nvgu.render.OffscreenTarget;
+import org.nvgu.render.Renderer;
+import org.nvgu.render.SoftwareRenderer;
+import org.nvgu.render.TraceReader;
+import org.nvgu.render.TracingRenderer;
+import org.nvgu.text.TextDocument;
+import org.nvgu.text.TextLayout;
+import org.nvgu.text.TextLayoutCache;
 import org.nvgu.util.*;
 
 import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import static org.lwjgl.nanovg.NanoVGGL3.*;
 import static org.lwjgl.nanovg.NanoVG.*;
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.system.MemoryUtil.*;
 
 public class NVGU {
 
+    private static final int BATCH_RECTANGLES = 0;
+    private static final int BATCH_ROUNDED_RECTANGLES = 1;
+    private static final int BATCH_CIRCLES = 2;
+
+    // how far past its path a stroke may reach, in thicknesses, with NanoVG's default miter limit of 10
+    private static final float MITER_EXTENT = 5;
+
     private long handle = -1;
-    private final List<NativeResource> resources = new ArrayList<>();
+
+    // backs the colours and paints created during a frame, reset at the end of every frame
+    private final NativeArena arena = new NativeArena();
+
+    // optional cache which keeps colours and gradients alive across frames
+    private PaintCache paintCache = null;
+
+    // where drawing operations are sent, either NanoVG or a display list being recorded
+    private NanoVGRenderer nanoVGRenderer = null;
+    private Renderer renderer = null;
+
+    // draws on the CPU instead of through NanoVG, when created with one
+    private SoftwareRenderer software = null;
+
+    // the context and framebuffer of its own when created without a window
+    private OffscreenContext offscreenContext = null;
+    private OffscreenTarget offscreenTarget = null;
+
+    // writes every operation to a trace file in front of the culling renderer, when tracing is enabled
+    private TracingRenderer tracer = null;
+
+    // reads frames back in the background, when exporting is enabled
+    private FrameExporter exporter = null;
+
+    // instances recording panels on other threads, each into a display list of its own, kept for the next frame
+    private final List<NVGU> recorders = new ArrayList<>();
+    private ExecutorService recordingExecutor = ForkJoinPool.commonPool();
+
+    // the instance a recorder belongs to, which measures text for it, or null if this isn't a recorder
+    private NVGU parent = null;
+    private DisplayList recording = null;
+
+    // follows the transform and scissor, so primitives which can't be seen are skipped when culling is enabled
+    private CullingRenderer cullingRenderer = null;
+    private boolean culling = false;
+
+    // holds back fills so that consecutive shapes of the same colour are filled together, when path merging is enabled
+    private MergingRenderer mergingRenderer = null;
+
+    // areas to redraw in the next partial frame, and the framebuffer keeping everything else
+    private final DamageTracker damage = new DamageTracker(8);
+    private boolean damageAll = true;
+    private NVGLUFramebuffer retainedFramebuffer = null;
+    private int retainedWidth = 0;
+    private int retainedHeight = 0;
+    private final float[] clearColour = new float[4];
+    private final int[] viewport = new int[4];
+
+    // framebuffers of layers, and the layers to render into them at the start of the next frame
+    private LayerCache layers = null;
+    private final Map<LayerCache.Layer, Runnable> pendingLayers = new LinkedHashMap<>();
+    private final float[] layerClearColour = new float[4];
+    private final int[] layerViewport = new int[4];
+
+    // reused to group batched shapes by colour
+    private long[] batchOrder = new long[0];
+
+    // measuring text is a round trip through fontstash, so measurements are remembered
+    private TextMeasureCache textMeasureCache = new TextMeasureCache(1024);
+    private final float[] textBounds = new float[4];
+    private final TextLayoutCache textLayoutCache = new TextLayoutCache(256);
 
     private String currentFont = null;
     private int currentFontSize = -1;
     private Alignment alignment = Alignment.LEFT_TOP;
 
-    // retain all buffers to prevent them being GCed
+    // fontstash reads from a font's data for as long as the font exists, so the data of every font is kept,
+    // with the data read from streams freed when NanoVG is destroyed and mappings released once unreachable
     private final List<ByteBuffer> bufferRegistry = new ArrayList<>();
-    private final Map<String, Integer> textures = new HashMap<>();
+    private final List<ByteBuffer> mappedRegistry = new ArrayList<>();
+    private final Map<String, Integer> fonts = new HashMap<>();
+
+    private final Map<String, FontHandle> fontHandles = new HashMap<>();
+    private final Map<String, TextureHandle> textureHandles = new HashMap<>();
+    // textures whose last handle was closed, which may still be waiting to be drawn, so are deleted when the next frame begins
+    private final Set<String> pendingUnloads = new LinkedHashSet<>();
+    private TextureManager textures = null;
+
+    // optional atlas which small textures are packed into
+    private TextureAtlas atlas = null;
+
+    // reads and decodes assets on worker threads, uploading them at the start of the next frame
+    private final AssetLoader loader = new AssetLoader();
 
     /**
      * Creates the instance of NanoVG
      */
     public NVGU create() {
-        if (handle == -1) {
+        if (handle == -1 && software == null) {
             this.handle = nvgCreate(NVG_ANTIALIAS | NVG_STENCIL_STROKES);
+            this.nanoVGRenderer = new NanoVGRenderer(handle);
+            this.mergingRenderer = new MergingRenderer(nanoVGRenderer);
+            this.cullingRenderer = new CullingRenderer(mergingRenderer);
+            this.renderer = cullingRenderer;
+            this.textures = new TextureManager(handle);
+            this.layers = new LayerCache(handle);
+        }
+
+        return this;
+    }
+
+    /**
+     * Creates the instance without NanoVG, drawing into the given software renderer instead, so no GL context is needed.
+     * Shapes, gradients, transforms and scissors are drawn as NanoVG would draw them, but fonts, textures,
+     * layers and partial frames need NanoVG, and using them throws an {@link IllegalStateException}.
+     * @param software the renderer to draw into
+     */
+    public NVGU create(SoftwareRenderer software) {
+        if (handle == -1 && this.software == null) {
+            this.software = software;
+            this.mergingRenderer = new MergingRenderer(software);
+            this.cullingRenderer = new CullingRenderer(mergingRenderer);
+            this.renderer = cullingRenderer;
+        }
+
+        return this;
+    }
+
+    /**
+     * Creates the instance of NanoVG in an OpenGL context of its own, without a window, drawing into a framebuffer
+     * of the given size, so that frames can be rendered on machines without a display, such as with Mesa's llvmpipe.
+     * The context is made current on the calling thread, and frames are rendered with {@link NVGU#offscreenFrame(Runnable)}.
+     * @param width the width of the framebuffer in pixels
+     * @param height the height of the framebuffer in pixels
+     */
+    public NVGU createOffscreen(int width, int height) {
+        if (handle == -1 && software == null) {
+            this.offscreenContext = new OffscreenContext();
+
+            try {
+                this.offscreenTarget = new OffscreenTarget(width, height);
+            } catch (RuntimeException exception) {
+                offscreenContext.free();
+                offscreenContext = null;
+                throw exception;
+            }
+
+            create();
+        }
+
+        return this;
+    }
+
+    /**
+     * Renders a frame into the offscreen framebuffer, cleared to transparent first, and reads it back
+     * @param render what will be rendered in the frame
+     * @return the RGBA pixels with premultiplied alpha and the top row first, in a direct buffer which is reused by the next frame
+     */
+    public ByteBuffer offscreenFrame(Runnable render) {
+        renderOffscreen(render);
+
+        return offscreenTarget.read();
+    }
+
+    /**
+     * Renders a frame into the offscreen framebuffer, cleared to transparent first, and reads it back
+     * @param render what will be rendered in the frame
+     * @param argb an array of at least width * height pixels to read into, or null to allocate one
+     * @return the ARGB pixels with premultiplied alpha and the top row first
+     */
+    public int[] offscreenFrame(Runnable render, int[] argb) {
+        renderOffscreen(render);
+
+        return offscreenTarget.read(argb);
+    }
+
+    /**
+     * Enables exporting every frame, which reads it back from the framebuffer it was drawn into at the end of the frame.
+     * Reading back happens in the background through a ring of pixel buffers, so each frame reaches the consumer
+     * once as many frames as there are buffers have been drawn after it, on a worker thread where it can be encoded.
+     * Any exporter which was enabled is finished first.
+     * @param width the width of the frames in pixels
+     * @param height the height of the frames in pixels
+     * @param buffers the number of pixel buffers, 2 or 3 is usually enough to never wait for the GPU
+     * @param consumer what receives the frames
+     */
+    public NVGU enableExport(int width, int height, int buffers, FrameExporter.FrameConsumer consumer) {
+        requireNanoVG();
+        disableExport();
+
+        exporter = new FrameExporter(width, height, buffers, consumer);
+
+        return this;
+    }
+
+    /**
+     * Disables exporting, after handing the frames still being read back to the consumer and waiting for it to finish
+     */
+    public NVGU disableExport() {
+        if (exporter != null) {
+            exporter.free();
+            exporter = null;
         }
 
         return this;
     }
 
+    /**
+     * Hands the frames still being read back to the consumer and waits for it to finish, without disabling exporting
+     */
+    public NVGU finishExport() {
+        if (exporter != null) {
+            exporter.finish();
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the exporter, e.g. for its export rate
+     * @return the exporter, or null if exporting is disabled
+     */
+    public FrameExporter getFrameExporter() {
+        return exporter;
+    }
+
+    /**
+     * Gets the framebuffer frames are rendered into when created with {@link NVGU#createOffscreen(int, int)}
+     * @return the framebuffer, or null if not created offscreen
+     */
+    public OffscreenTarget getOffscreenTarget() {
+        return offscreenTarget;
+    }
+
+    public OffscreenContext getOffscreenContext() {
+        return offscreenContext;
+    }
+
     /**
      * Creates a font with the given identifier from the given input stream.
      * @param identifier what identifier will be used to draw the font
      * @param fontStream the input stream of the font
      */
     public NVGU createFont(String identifier, InputStream fontStream) {
-        ByteBuffer buffer = getBytes(fontStream, 1024);
-        nvgCreateFontMem(handle, identifier, buffer, false);
-        bufferRegistry.add(buffer);
+        requireNanoVG();
+
+        if (!hasFont(identifier)) {
+            createFont(identifier, getBytes(fontStream, 1024));
+        }
+
+        return this;
+    }
+
+    /**
+     * Creates a font with the given identifier from the given file.
+     * The file is mapped into memory rather than copied, so it is backed by the page cache instead of direct memory,
+     * and loading costs about the same regardless of its size.
+     * @param identifier what identifier will be used to draw the font
+     * @param font the path of the font
+     */
+    public NVGU createFont(String identifier, Path font) {
+        requireNanoVG();
+
+        if (!hasFont(identifier)) {
+            ByteBuffer buffer = map(font);
+
+            addFont(identifier, nvgCreateFontMem(handle, identifier, buffer, false));
+            mappedRegistry.add(buffer);
+        }
 
         return this;
     }
@@ -75,931 +351,2539 @@ public class NVGU {
      * @param flags any additional flags you want
      */
     public NVGU createTexture(String identifier, InputStream texture, int flags) {
-        if (!textures.containsKey(identifier)) {
+        requireNanoVG();
+
+        cancelUnload(identifier);
+
+        if (!hasTexture(identifier)) {
             ByteBuffer buffer = getBytes(texture, 512);
-            bufferRegistry.add(buffer);
 
-            textures.put(identifier, nvgCreateImageMem(handle, flags, buffer));
+            // the encoded image isn't needed once it has been decoded
+            if (usesAtlas(flags)) {
+                createTexture(identifier, decode(buffer), flags, null);
+            } else {
+                try {
+                    textures.put(identifier, nvgCreateImageMem(handle, flags, buffer), flags, null);
+                } finally {
+                    memFree(buffer);
+                }
+            }
         }
 
         return this;
     }
 
     /**
-     * Destroys the instance of NanoVG
+     * Creates a texture from the given file, which is mapped into memory rather than copied.
+     * @param identifier what identifier will be used to draw the texture
+     * @param texture the path of the texture
      */
-    public void destroy() {
-        textures.forEach((identifier, imageHandle) -> nvgDeleteImage(handle, imageHandle));
+    public NVGU createTexture(String identifier, Path texture) {
+        return createTexture(identifier, texture, NVG_IMAGE_NEAREST);
+    }
 
-        nvgDelete(handle);
+    /**
+     * Creates a texture from the given file, which is mapped into memory rather than copied.
+     * @param identifier what identifier will be used to draw the texture
+     * @param texture the path of the texture
+     * @param flags any additional flags you want
+     */
+    public NVGU createTexture(String identifier, Path texture, int flags) {
+        requireNanoVG();
 
-        bufferRegistry.clear();
-        textures.clear();
+        cancelUnload(identifier);
 
-        handle = -1;
+        if (!hasTexture(identifier)) {
+            // the image is decoded and copied, so the mapping isn't registered and is released once unreachable
+            Callable<DecodedImage> source = () -> DecodedImage.decode(map(texture));
+
+            if (usesAtlas(flags)) {
+                createTexture(identifier, DecodedImage.decode(map(texture)), flags, source);
+            } else {
+                textures.put(identifier, nvgCreateImageMem(handle, flags, map(texture)), flags, source);
+            }
+        }
+
+        return this;
     }
 
     /**
-     * Begins a new frame
-     * @param width the horizontal size of the frame in pixels
-     * @param height the vertical size of the frame in pixels
+     * Creates a texture which can be evicted when textures go over budget, and is created again from its source when next drawn.
+     * @param identifier what identifier will be used to draw the texture
+     * @param source opens a new input stream of the texture every time it is called
+     * @see NVGU#setTextureBudget(long)
      */
-    public NVGU beginFrame(int width, int height) {
-        nvgBeginFrame(handle, width, height, 1);
+    public NVGU createTexture(String identifier, Callable<InputStream> source) {
+        return createTexture(identifier, source, NVG_IMAGE_NEAREST);
+    }
+
+    /**
+     * Creates a texture which can be evicted when textures go over budget, and is created again from its source when next drawn.
+     * @param identifier what identifier will be used to draw the texture
+     * @param source opens a new input stream of the texture every time it is called
+     * @param flags any additional flags you want
+     * @see NVGU#setTextureBudget(long)
+     */
+    public NVGU createTexture(String identifier, Callable<InputStream> source, int flags) {
+        requireNanoVG();
+
+        cancelUnload(identifier);
+
+        if (!hasTexture(identifier)) {
+            Callable<DecodedImage> decoder = () -> decode(read(source.call(), 512));
+
+            try {
+                createTexture(identifier, decoder.call(), flags, decoder);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to load texture " + identifier, e);
+            }
+        }
 
         return this;
     }
 
     /**
-     * Ends the current frame
+     * Creates a font from data owned by the caller, which must stay valid until this instance is destroyed.
+     * The data is neither copied nor freed, so instances in contexts of their own can all share one copy of it.
+     * @param identifier what identifier will be used to draw the font
+     * @param font the data of the font
      */
-    public NVGU endFrame() {
-        nvgEndFrame(handle);
+    public NVGU createSharedFont(String identifier, ByteBuffer font) {
+        requireNanoVG();
+
+        if (!hasFont(identifier)) {
+            addFont(identifier, nvgCreateFontMem(handle, identifier, font, false));
+        }
+
         return this;
     }
 
     /**
-     * Begins, renders and ends a frame, and frees resources at the end.
-     * @param width the horizontal size of the frame in pixels
-     * @param height the vertical size of the frame in pixels
-     * @param render what will be rendered in the frame
+     * Creates a texture from an existing GL texture owned by the caller, such as one created in a context shared with this one.
+     * The GL texture isn't deleted along with the texture, so instances in contexts of their own can all draw the same one.
+     * It is never packed into the atlas or evicted.
+     * @param identifier what identifier will be used to draw the texture
+     * @param texture the name of the GL texture
+     * @param width the width of the texture in pixels
+     * @param height the height of the texture in pixels
+     * @param flags the flags the texture should be drawn with
      */
-    public NVGU frame(int width, int height, Runnable render) {
-        beginFrame(width, height);
+    public NVGU createSharedTexture(String identifier, int texture, int width, int height, int flags) {
+        requireNanoVG();
 
-        render.run();
+        cancelUnload(identifier);
 
-        freeResources();
-        endFrame();
+        if (!hasTexture(identifier)) {
+            textures.put(identifier, nvglCreateImageFromHandle(handle, texture, width, height, flags | NVG_IMAGE_NODELETE), flags, null);
+        }
 
         return this;
     }
 
     /**
-     * Provides a scope where any transformations that have taken place will be reverted
-     * immediately after rendering, such as rotations or scaling.
-     * @param render what will be rendered in the scope
+     * Creates a font with the given identifier from the given input stream, reading it on a worker thread.
+     * The font is created at the start of the next frame, or the next call to {@link NVGU#processUploads()}.
+     * @param identifier what identifier will be used to draw the font
+     * @param fontStream the input stream of the font, which is closed once read
+     * @return a future completed with the identifier once the font can be drawn, on the thread drawing the frames
      */
-    public NVGU scope(Runnable render) {
-        save();
-        render.run();
-        restore();
+    public CompletableFuture<String> createFontAsync(String identifier, InputStream fontStream) {
+        requireNanoVG();
+
+        return loader.load(() -> read(fontStream, 1024), buffer -> {
+            if (!hasFont(identifier)) {
+                createFont(identifier, buffer);
+            } else {
+                memFree(buffer);
+            }
 
-        return this;
+            return identifier;
+        }, MemoryUtil::memFree);
     }
 
     /**
-     * Saves current transformations
+     * Creates a texture, reading and decoding it on a worker thread.
+     * The texture is created at the start of the next frame, or the next call to {@link NVGU#processUploads()}.
+     * @param identifier what identifier will be used to draw the texture
+     * @param texture the input stream of the texture, which is closed once read
+     * @return a future completed with the identifier once the texture can be drawn, on the thread drawing the frames
      */
-    public NVGU save() {
-        nvgSave(handle);
-        return this;
+    public CompletableFuture<String> createTextureAsync(String identifier, InputStream texture) {
+        return createTextureAsync(identifier, texture, NVG_IMAGE_NEAREST);
     }
 
     /**
-     * Restores previous transformations
+     * Creates a texture, reading and decoding it on a worker thread.
+     * The texture is created at the start of the next frame, or the next call to {@link NVGU#processUploads()}.
+     * @param identifier what identifier will be used to draw the texture
+     * @param texture the input stream of the texture, which is closed once read
+     * @param flags any additional flags you want
+     * @return a future completed with the identifier once the texture can be drawn, on the thread drawing the frames
      */
-    public NVGU restore() {
-        nvgRestore(handle);
-        return this;
+    public CompletableFuture<String> createTextureAsync(String identifier, InputStream texture, int flags) {
+        requireNanoVG();
+
+        return loader.load(() -> decode(read(texture, 512)), image -> {
+            cancelUnload(identifier);
+
+            if (!hasTexture(identifier)) {
+                createTexture(identifier, image, flags, null);
+            } else {
+                image.free();
+            }
+
+            return identifier;
+        }, DecodedImage::free);
     }
 
     /**
-     * Textured rectangle
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param texture the texture identifier to use
+     * Packs small textures into a few large images, so drawing them doesn't switch textures.
+     * Textures created afterwards with the given flags are added to the atlas if they are small enough,
+     * and {@link NVGU#texture(String, float, float, float, float)} draws them from the atlas.
+     * @param pageSize the width and height of each image of the atlas
+     * @param flags the flags of the textures which are added to the atlas, which can't include
+     * {@code NVG_IMAGE_GENERATE_MIPMAPS}, {@code NVG_IMAGE_REPEATX} or {@code NVG_IMAGE_REPEATY},
+     * so textures created with those flags always get images of their own
      */
-    public NVGU texturedRectangle(float x, float y, float width, float height, String texture) {
-        return rectangle(x, y, width, height, texture(texture, x, y, width, height));
+    public NVGU enableTextureAtlas(int pageSize, int flags) {
+        requireNanoVG();
+
+        disableTextureAtlas();
+        this.atlas = new TextureAtlas(handle, pageSize, flags);
+
+        return this;
     }
 
     /**
-     * Basic coloured rectangle.
-     * @param rectangle bounds of the rectangle
-     * @param colour colour of the rectangle
+     * Packs small textures created with the default flags into a few large images.
+     * @param pageSize the width and height of each image of the atlas
+     * @see NVGU#enableTextureAtlas(int, int)
      */
-    public NVGU rectangle(Rectangle rectangle, Color colour) {
-        return rectangle((float) rectangle.getX(), (float) rectangle.getY(), (float) rectangle.getWidth(), (float) rectangle.getHeight(), colour);
+    public NVGU enableTextureAtlas(int pageSize) {
+        return enableTextureAtlas(pageSize, NVG_IMAGE_NEAREST);
     }
 
     /**
-     * Basic coloured rectangle.
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param colour colour of the rectangle
+     * Disables the texture atlas, deleting it along with every texture in it.
      */
-    public NVGU rectangle(float x, float y, float width, float height, Color colour) {
-        nvgBeginPath(handle);
+    public NVGU disableTextureAtlas() {
+        if (atlas != null) {
+            textureHandles.values().removeIf(texture -> {
+                if (texture.getRegion() != null) {
+                    texture.invalidate();
+                    return true;
+                }
 
-        nvgRect(handle, x, y, width, height);
+                return false;
+            });
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.FILL);
-        } else {
-            nvgFillColor(handle, createAndStoreColour(colour));
-            nvgFill(handle);
+            atlas.free();
+            atlas = null;
         }
 
-        nvgClosePath(handle);
+        return this;
+    }
+
+    /**
+     * Sets how much memory the images of textures may take up. At the start of each frame, the least recently drawn textures
+     * over the budget are deleted, if they were created from a file or a source which can reopen them,
+     * and are created again when next drawn. Textures in the atlas don't count towards the budget.
+     * @param bytes the budget in bytes
+     */
+    public NVGU setTextureBudget(long bytes) {
+        requireNanoVG();
 
+        textures.setBudget(bytes);
         return this;
     }
 
     /**
-     * Textured rectangle border
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param texture the texture identifier to use
+     * Gets the texture manager, which can be used to read its statistics.
+     * @return the texture manager
      */
-    public NVGU texturedRectangleBorder(float x, float y, float width, float height, float thickness, String texture, Border border) {
-        return rectangleBorder(x, y, width, height, thickness, texture(texture, x, y, width, height), border);
+    public TextureManager getTextureManager() {
+        return textures;
     }
 
     /**
-     * Basic coloured rectangle border.
-     * @param rectangle bounds of the rectangle
-     * @param colour colour of the rectangle
+     * Gets the texture atlas, which can be used to read its statistics or repack it.
+     * @return the atlas, or null if it hasn't been enabled
      */
-    public NVGU rectangleBorder(Rectangle rectangle, float thickness, Color colour, Border border) {
-        return rectangleBorder((float) rectangle.getX(), (float) rectangle.getY(), (float) rectangle.getWidth(), (float) rectangle.getHeight(), thickness, colour, border);
+    public TextureAtlas getTextureAtlas() {
+        return atlas;
     }
 
     /**
-     * Basic coloured rectangle border.
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param thickness thickness of the border
-     * @param colour colour of the rectangle
+     * Creates the fonts and textures which have finished loading on worker threads.
+     * This happens at the start of every frame, but can be called directly, e.g. while showing a loading screen.
+     * @return the number of fonts and textures created
      */
-    public NVGU rectangleBorder(float x, float y, float width, float height, float thickness, Color colour, Border border) {
-        nvgBeginPath(handle);
+    public int processUploads() {
+        return loader.processUploads();
+    }
 
-        switch (border) {
-            case INSIDE: {
-                x += thickness / 2f;
-                y += thickness / 2f;
-                width -= thickness;
-                height -= thickness;
-                break;
-            }
+    /**
+     * Gets a counted reference to a texture, which unloads the texture once every reference to it has been closed.
+     * Closing the last reference during a frame is safe, as the texture is only deleted when the next frame begins.
+     * @param identifier the identifier of the texture
+     * @return the handle of the texture, shared by everything which has acquired it
+     */
+    public TextureHandle acquireTexture(String identifier) {
+        requireNanoVG();
 
-            case OUTSIDE: {
-                x -= thickness / 2f;
-                y -= thickness / 2f;
-                width += thickness;
-                height += thickness;
-                break;
-            }
+        TextureHandle texture = textureHandles.get(identifier);
+
+        if (texture != null) {
+            return texture.retain();
         }
 
-        nvgRect(handle, x, y, width, height);
-        nvgStrokeWidth(handle, thickness);
+        cancelUnload(identifier);
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.STROKE);
-        } else {
-            nvgStrokeColor(handle, createAndStoreColour(colour));
-            nvgStroke(handle);
+        if (!hasTexture(identifier)) {
+            throw new IllegalArgumentException("No texture called " + identifier);
         }
 
-        nvgClosePath(handle);
+        texture = new TextureHandle(identifier, textures.getSlot(identifier), atlas == null ? null : atlas.get(identifier), () -> deferUnload(identifier));
+        textureHandles.put(identifier, texture);
 
-        return this;
+        return texture;
     }
 
     /**
-     * Textured rounded rectangle
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param topLeft radius of the top left corner
-     * @param topRight radius of the top right corner
-     * @param bottomRight radius of the bottom right corner
-     * @param bottomLeft radius of the bottom left corner
-     * @param texture the texture identifier to use
+     * Gets a counted reference to a font, which unloads the font once every reference to it has been closed.
+     * @param identifier the identifier of the font
+     * @return the handle of the font, shared by everything which has acquired it
      */
-    public NVGU texturedRoundedRectangle(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, String texture) {
-        return roundedRectangle(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft, texture(texture, x, y, width, height));
+    public FontHandle acquireFont(String identifier) {
+        requireNanoVG();
+
+        FontHandle font = fontHandles.get(identifier);
+
+        if (font != null) {
+            return font.retain();
+        }
+
+        if (!hasFont(identifier)) {
+            throw new IllegalArgumentException("No font called " + identifier);
+        }
+
+        font = new FontHandle(identifier, fonts.get(identifier), () -> unloadFont(identifier));
+        fontHandles.put(identifier, font);
+
+        return font;
     }
 
     /**
-     * Textured rounded rectangle
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param radius radius of the rounded rectangle
-     * @param texture the texture identifier to use
+     * Deletes a texture, closing any handle to it. Should be called outside of a frame which draws the texture.
+     * @param identifier the identifier of the texture
      */
-    public NVGU texturedRoundedRectangle(float x, float y, float width, float height, float radius, String texture) {
-        return roundedRectangle(x, y, width, height, radius, texture(texture, x, y, width, height));
-    }
+    public NVGU unloadTexture(String identifier) {
+        requireNanoVG();
 
-    /**
-     * Basic coloured rounded rectangle.
-     * @param bounds bounds of the rectangle
-     * @param topLeft radius of the top left corner
-     * @param topRight radius of the top right corner
-     * @param bottomRight radius of the bottom right corner
-     * @param bottomLeft radius of the bottom left corner
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangle(Rectangle bounds, float topLeft, float topRight, float bottomRight, float bottomLeft, Color colour) {
-        return roundedRectangle((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), topLeft, topRight, bottomRight, bottomLeft, colour);
-    }
+        TextureHandle texture = textureHandles.remove(identifier);
 
-    /**
-     * Basic coloured rounded rectangle.
-     * @param bounds bounds of the rectangle
-     * @param radius radius of the rounded rectangle
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangle(Rectangle bounds, float radius, Color colour) {
-        return roundedRectangle((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), radius, colour);
-    }
+        if (texture != null) {
+            texture.invalidate();
+        }
 
-    /**
-     * Basic coloured rounded rectangle.
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param radius radius of the rounded rectangle
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangle(float x, float y, float width, float height, float radius, Color colour) {
-        return roundedRectangle(x, y, width, height, radius, radius, radius, radius, colour);
+        pendingUnloads.remove(identifier);
+
+        if (!textures.remove(identifier) && atlas != null) {
+            atlas.remove(identifier);
+        }
+
+        return this;
     }
 
     /**
-     * Basic coloured rounded rectangle.
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param topLeft radius of the top left corner
-     * @param topRight radius of the top right corner
-     * @param bottomRight radius of the bottom right corner
-     * @param bottomLeft radius of the bottom left corner
-     * @param colour colour of the rounded rectangle
+     * Unloads a font, closing any handle to it. NanoVG can't delete fonts, so the font's data is kept
+     * and is used again, without reading anything, if a font with the same identifier is created later.
+     * @param identifier the identifier of the font
      */
-    public NVGU roundedRectangle(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, Color colour) {
-        nvgBeginPath(handle);
-
-        nvgRoundedRectVarying(handle, x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+    public NVGU unloadFont(String identifier) {
+        FontHandle font = fontHandles.remove(identifier);
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.FILL);
-        } else {
-            nvgFillColor(handle, createAndStoreColour(colour));
-            nvgFill(handle);
+        if (font != null) {
+            font.invalidate();
         }
 
-        nvgClosePath(handle);
+        fonts.remove(identifier);
 
         return this;
     }
 
     /**
-     * Textured rounded rectangle
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param topLeft radius of the top left corner
-     * @param topRight radius of the top right corner
-     * @param bottomRight radius of the bottom right corner
-     * @param bottomLeft radius of the bottom left corner
-     * @param thickness thickness of the border
-     * @param texture the texture identifier to use
-     * @param border the border type to use
+     * @return the loader used by {@link NVGU#createFontAsync(String, InputStream)} and {@link NVGU#createTextureAsync(String, InputStream)}
      */
-    public NVGU texturedRounddeRectangleBorder(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, String texture, Border border) {
-        return roundedRectangleBorder(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft, thickness, texture(texture, x, y, width, height), border);
+    public AssetLoader getLoader() {
+        return loader;
     }
 
     /**
-     * Textured rounded rectangle
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param radius radius of the rounded rectangle
-     * @param texture the texture identifier to use
+     * Destroys the instance of NanoVG
      */
-    public NVGU texturedRounddeRectangleBorder(float x, float y, float width, float height, float radius, float thickness, String texture, Border border) {
-        return roundedRectangleBorder(x, y, width, height, radius, thickness, texture(texture, x, y, width, height), border);
-    }
+    public void destroy() {
+        recorders.forEach(NVGU::destroyRecorder);
+        recorders.clear();
 
-    /**
-     * Basic coloured rounded rectangle border.
-     * @param bounds bounds of the rectangle
-     * @param topLeft radius of the top left corner
-     * @param topRight radius of the top right corner
-     * @param bottomRight radius of the bottom right corner
-     * @param bottomLeft radius of the bottom left corner
-     * @param thickness the thickness of the border
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangleBorder(Rectangle bounds, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, Color colour, Border border) {
-        return roundedRectangleBorder((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), topLeft, topRight, bottomRight, bottomLeft, thickness, colour, border);
-    }
+        disableTracing();
 
-    /**
-     * Basic coloured rounded rectangle border.
-     * @param bounds bounds of the rectangle
-     * @param radius radius of the rounded rectangle
-     * @param thickness the thickness of the border
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangleBorder(Rectangle bounds, float radius, float thickness, Color colour, Border border) {
-        return roundedRectangleBorder((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), radius, thickness, colour, border);
-    }
+        if (software != null) {
+            arena.free();
+            disablePaintCache();
 
-    /**
-     * Basic coloured rounded rectangle border.
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param radius radius of the rounded rectangle
-     * @param thickness the thickness of the border
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangleBorder(float x, float y, float width, float height, float radius, float thickness, Color colour, Border border) {
-        return roundedRectangleBorder(x, y, width, height, radius, radius, radius, radius, thickness, colour, border);
-    }
+            software = null;
+            mergingRenderer = null;
+            cullingRenderer = null;
+            renderer = null;
 
-    /**
-     * Basic coloured rounded rectangle border.
-     * @param x left coordinate
-     * @param y top coordinate
-     * @param width width of the rectangle
-     * @param height height of the rectangle
-     * @param topLeft radius of the top left corner
-     * @param topRight radius of the top right corner
-     * @param bottomRight radius of the bottom right corner
-     * @param bottomLeft radius of the bottom left corner
-     * @param thickness the thickness of the border
-     * @param colour colour of the rounded rectangle
-     */
-    public NVGU roundedRectangleBorder(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, Color colour, Border border) {
-        nvgBeginPath(handle);
+            return;
+        }
 
-        switch (border) {
-            case INSIDE: {
-                x += thickness / 2f;
-                y += thickness / 2f;
-                width -= thickness;
-                height -= thickness;
-                break;
-            }
+        loader.shutdown();
+        textures.clear();
+        disableTextureAtlas();
 
-            case OUTSIDE: {
-                x -= thickness / 2f;
-                y -= thickness / 2f;
-                width += thickness;
-                height += thickness;
-                break;
-            }
+        if (retainedFramebuffer != null) {
+            nvgluDeleteFramebuffer(handle, retainedFramebuffer);
+            retainedFramebuffer = null;
         }
 
-        nvgRoundedRectVarying(handle, x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+        disableExport();
 
-        nvgStrokeWidth(handle, thickness);
+        pendingLayers.clear();
+        layers.clear();
+        layers = null;
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.STROKE);
-        } else {
-            nvgStrokeColor(handle, createAndStoreColour(colour));
-            nvgStroke(handle);
-        }
+        nvgDelete(handle);
 
-        nvgClosePath(handle);
+        bufferRegistry.forEach(MemoryUtil::memFree);
+        bufferRegistry.clear();
+        mappedRegistry.clear();
+        fonts.clear();
+        fontHandles.values().forEach(FontHandle::invalidate);
+        fontHandles.clear();
+        textureHandles.values().forEach(TextureHandle::invalidate);
+        textureHandles.clear();
+        pendingUnloads.clear();
+        textures = null;
+        textMeasureCache.clear();
+        textLayoutCache.clear();
+        arena.free();
+        disablePaintCache();
+
+        nanoVGRenderer.free();
+        nanoVGRenderer = null;
+        mergingRenderer = null;
+        cullingRenderer = null;
+        renderer = null;
 
-        return this;
+        handle = -1;
+
+        if (offscreenContext != null) {
+            offscreenTarget.free();
+            offscreenTarget = null;
+
+            offscreenContext.free();
+            offscreenContext = null;
+        }
     }
 
     /**
-     * Basic coloured circle.
-     * @param x centre x coordinate of the circle
-     * @param y centre y coordinate of the circle
-     * @param radius radius of the circle
-     * @param colour colour of the circle
+     * Begins a new frame
+     * @param width the horizontal size of the frame in pixels
+     * @param height the vertical size of the frame in pixels
      */
-    public NVGU circle(float x, float y, float radius, Color colour) {
-        nvgBeginPath(handle);
+    public NVGU beginFrame(int width, int height) {
+        if (software != null) {
+            software.reset();
+            cullingRenderer.reset(width, height);
+            traceFrame(width, height);
+
+            return this;
+        }
 
-        nvgCircle(handle, x, y, radius);
+        loader.processUploads();
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.FILL);
-        } else {
-            nvgFillColor(handle, createAndStoreColour(colour));
-            nvgFill(handle);
+        // nothing is waiting to be drawn yet, so closed textures and images over the budget can be deleted
+        unloadPending();
+        textures.trim();
+
+        if (atlas != null) {
+            atlas.flush();
         }
 
-        nvgClosePath(handle);
+        layers.trim();
+        renderLayers();
+
+        nvgBeginFrame(handle, width, height, 1);
+        nanoVGRenderer.reset();
+        cullingRenderer.reset(width, height);
+
+        // marked once the layers have rendered, so a layer which fails doesn't leave a frame in the trace which never ends
+        traceFrame(width, height);
 
         return this;
     }
 
     /**
-     * Basic coloured circle border.
-     * @param x centre x coordinate of the circle
-     * @param y centre y coordinate of the circle
-     * @param radius radius of the circle
-     * @param thickness thickness of the circle border
-     * @param colour colour of the circle
+     * Ends the current frame
      */
-    public NVGU circleBorder(float x, float y, float radius, float thickness, Color colour) {
-        nvgBeginPath(handle);
-
-        nvgCircle(handle, x, y, radius);
-        nvgStrokeWidth(handle, thickness);
+    public NVGU endFrame() {
+        finishFrame(true);
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.STROKE);
-        } else {
-            nvgStrokeColor(handle, createAndStoreColour(colour));
-            nvgStroke(handle);
+        if (exporter != null) {
+            exporter.capture(glGetInteger(GL_DRAW_FRAMEBUFFER_BINDING));
         }
 
-        nvgClosePath(handle);
-
         return this;
     }
 
     /**
-     * Basic coloured right-angled triangle.
-     * @param x centre x coordinate of the circle
-     * @param y centre y coordinate of the circle
-     * @param width width of the triangle
-     * @param height height of the triangle
-     * @param colour colour of the circle
-     * @param corner where the corner is located
+     * Abandons the current frame without drawing anything it contains, so that nothing of it is left for the next frame,
+     * e.g. when rendering it failed part of the way through.
      */
-    public NVGU rightAngledTriangle(float x, float y, float width, float height, Color colour, RightAngledTriangleCorner corner) {
-        nvgBeginPath(handle);
-
-        switch (corner) {
-            case TOP_LEFT: {
-                nvgMoveTo(handle, x, y);
-                nvgLineTo(handle, x + width, y);
-                nvgLineTo(handle, x, y + height);
-                nvgLineTo(handle, x, y);
-                break;
-            }
+    public NVGU cancelFrame() {
+        abandonFrame();
 
-            case TOP_RIGHT: {
-                nvgMoveTo(handle, x + width, y);
-                nvgLineTo(handle, x, y);
-                nvgLineTo(handle, x + width, y + height);
-                nvgLineTo(handle, x + width, y);
-                break;
-            }
+        // the trace keeps what was issued, so that every frame it begins is also ended
+        if (tracer != null) {
+            tracer.endFrame();
+        }
 
-            case BOTTOM_LEFT: {
-                nvgMoveTo(handle, x, y + height);
-                nvgLineTo(handle, x + width, y + height);
-                nvgLineTo(handle, x, y);
-                nvgLineTo(handle, x, y + height);
-                break;
-            }
+        return this;
+    }
 
-            case BOTTOM_RIGHT: {
-                nvgMoveTo(handle, x + width, y + height);
-                nvgLineTo(handle, x, y + height);
-                nvgLineTo(handle, x + width, y);
-                nvgLineTo(handle, x + width, y + height);
-                break;
-            }
-        }
+    /**
+     * Begins, renders and ends a frame, and frees resources at the end.
+     * If the render block throws, the frame is cancelled before the exception is passed on.
+     * @param width the horizontal size of the frame in pixels
+     * @param height the vertical size of the frame in pixels
+     * @param render what will be rendered in the frame
+     */
+    public NVGU frame(int width, int height, Runnable render) {
+        beginFrame(width, height);
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.FILL);
-        } else {
-            nvgFillColor(handle, createAndStoreColour(colour));
-            nvgFill(handle);
+        try {
+            render.run();
+        } catch (Throwable throwable) {
+            cancelFrame();
+            throw throwable;
         }
 
-        nvgClosePath(handle);
+        freeResources();
+        endFrame();
 
         return this;
     }
 
     /**
-     * Basic coloured right-angled triangle border.
-     * @param x centre x coordinate of the circle
-     * @param y centre y coordinate of the circle
-     * @param width width of the triangle
-     * @param height height of the triangle
-     * @param colour colour of the circle
-     * @param corner where the corner is located
+     * Renders only the areas which have been invalidated since the last partial frame, and shows
+     * the rest as it was. The frame is kept in a framebuffer, where the box around every invalidated area
+     * is cleared and the render block is run once, clipped to that box. Culling is enabled while rendering,
+     * so primitives outside the box are skipped before they are tessellated, and the cost follows the size of the box
+     * rather than of the frame. The block itself still runs in full, so it should skip expensive work it can tell isn't needed.
+     * The whole framebuffer is then copied to the framebuffer that was bound.
+     * Everything is invalidated on the first frame and whenever the size changes.
+     * @param width the horizontal size of the frame in pixels
+     * @param height the vertical size of the frame in pixels
+     * @param render what will be rendered in the frame
      */
-    public NVGU rightAngledTriangleBorder(float x, float y, float width, float height, float thickness, Color colour, RightAngledTriangleCorner corner) {
-        nvgBeginPath(handle);
+    public NVGU partialFrame(int width, int height, Runnable render) {
+        requireNanoVG();
 
-        switch (corner) {
-            case TOP_LEFT: {
-                nvgMoveTo(handle, x, y);
-                nvgLineTo(handle, x + width, y);
-                nvgLineTo(handle, x, y + height);
-                nvgLineTo(handle, x, y);
-                break;
+        if (retainedFramebuffer == null || retainedWidth != width || retainedHeight != height) {
+            if (retainedFramebuffer != null) {
+                nvgluDeleteFramebuffer(handle, retainedFramebuffer);
             }
 
-            case TOP_RIGHT: {
-                nvgMoveTo(handle, x + width, y);
-                nvgLineTo(handle, x, y);
-                nvgLineTo(handle, x + width, y + height);
-                nvgLineTo(handle, x + width, y);
-                break;
-            }
+            retainedFramebuffer = nvgluCreateFramebuffer(handle, width, height, 0);
+            retainedWidth = width;
+            retainedHeight = height;
 
-            case BOTTOM_LEFT: {
-                nvgMoveTo(handle, x, y + height);
-                nvgLineTo(handle, x + width, y + height);
-                nvgLineTo(handle, x, y);
-                nvgLineTo(handle, x, y + height);
-                break;
+            damageAll = true;
+        }
+
+        if (damageAll) {
+            damage.clear();
+            damage.add(0, 0, width, height);
+            damageAll = false;
+        }
+
+        int target = glGetInteger(GL_DRAW_FRAMEBUFFER_BINDING);
+
+        if (!damage.isEmpty()) {
+            // running the block once per area would tessellate the scene once per area, so it runs once for the box around them all
+            float boxLeft = Float.POSITIVE_INFINITY;
+            float boxTop = Float.POSITIVE_INFINITY;
+            float boxRight = Float.NEGATIVE_INFINITY;
+            float boxBottom = Float.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < damage.size(); i++) {
+                boxLeft = Math.min(boxLeft, damage.getX(i));
+                boxTop = Math.min(boxTop, damage.getY(i));
+                boxRight = Math.max(boxRight, damage.getX(i) + damage.getWidth(i));
+                boxBottom = Math.max(boxBottom, damage.getY(i) + damage.getHeight(i));
             }
 
-            case BOTTOM_RIGHT: {
-                nvgMoveTo(handle, x + width, y + height);
-                nvgLineTo(handle, x, y + height);
-                nvgLineTo(handle, x + width, y);
-                nvgLineTo(handle, x + width, y + height);
-                break;
+            int left = (int) Math.max(0, Math.floor(boxLeft));
+            int top = (int) Math.max(0, Math.floor(boxTop));
+            int right = (int) Math.min(width, Math.ceil(boxRight));
+            int bottom = (int) Math.min(height, Math.ceil(boxBottom));
+
+            // areas entirely outside of the frame leave nothing to redraw
+            if (right > left && bottom > top) {
+                redrawRetained(width, height, left, top, right, bottom, target, render);
             }
+
+            damage.clear();
         }
 
-        nvgStrokeWidth(handle, thickness);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, retainedFramebuffer.fbo());
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, target);
+        glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL_COLOR_BUFFER_BIT, GL_NEAREST);
+        glBindFramebuffer(GL_FRAMEBUFFER, target);
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.STROKE);
-        } else {
-            nvgStrokeColor(handle, createAndStoreColour(colour));
-            nvgStroke(handle);
+        if (exporter != null) {
+            exporter.capture(target);
         }
 
-        nvgClosePath(handle);
-
         return this;
     }
 
     /**
-     * Basic filled polygon.
-     * @param points array of points, a point being a float array of length 2
-     * @param colour the colour of the polygon
+     * Marks an area as needing to be redrawn in the next {@link NVGU#partialFrame(int, int, Runnable)}.
+     * Overlapping areas are merged. The coordinates are in frame space, unaffected by any transformations.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the area
+     * @param height height of the area
      */
-    public NVGU polygon(float[][] points, Color colour) {
-        nvgBeginPath(handle);
-
-        nvgMoveTo(handle, points[0][0], points[0][1]);
+    public NVGU invalidate(float x, float y, float width, float height) {
+        damage.add(x, y, width, height);
 
-        for (int i = 1; i < points.length; i++) {
-            nvgLineTo(handle, points[i][0], points[i][1]);
-        }
-
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.FILL);
-        } else {
-            nvgFillColor(handle, createAndStoreColour(colour));
-            nvgFill(handle);
-        }
+        return this;
+    }
 
-        nvgClosePath(handle);
+    /**
+     * Marks the whole frame as needing to be redrawn in the next {@link NVGU#partialFrame(int, int, Runnable)}.
+     */
+    public NVGU invalidateAll() {
+        damageAll = true;
 
         return this;
     }
 
     /**
-     * Basic filled polygon.
-     * @param points array of points, a point being a float array of length 2
-     * @param colour the colour of the polygon
+     * Gets the areas which will be redrawn in the next partial frame.
+     * @return the damaged areas
      */
-    public NVGU polygonBorder(float[][] points, float thickness, Color colour) {
-        nvgBeginPath(handle);
+    public DamageTracker getDamage() {
+        return damage;
+    }
 
-        nvgMoveTo(handle, points[0][0], points[0][1]);
+    /**
+     * Draws a block which rarely changes from a framebuffer of its own, instead of rendering it every frame.
+     * The layer is drawn with its top left corner at the origin of the current transform.
+     * NanoVG can't switch framebuffers partway through a frame, so the first time a layer is drawn, and whenever
+     * it has been invalidated or resized, the block is drawn directly and then rendered into the framebuffer
+     * at the start of the next frame, where it has its own transform and scissor starting from the layer's top left corner.
+     * @param identifier the identifier of the layer
+     * @param width the width of the layer in pixels
+     * @param height the height of the layer in pixels
+     * @param render what will be rendered into the layer
+     */
+    public NVGU layer(String identifier, int width, int height, Runnable render) {
+        requireNanoVG();
 
-        for (int i = 1; i < points.length; i++) {
-            nvgLineTo(handle, points[i][0], points[i][1]);
+        if (culled(0, 0, width, height)) {
+            return this;
         }
 
-        nvgStrokeWidth(handle, thickness);
+        LayerCache.Layer layer = layers.get(identifier, width, height);
 
-        if (colour instanceof NVGUColour) {
-            ((NVGUColour) colour).apply(this, NVGUColour.RenderType.STROKE);
-        } else {
-            nvgStrokeColor(handle, createAndStoreColour(colour));
-            nvgStroke(handle);
+        if (layer.isValid()) {
+            return rectangle(0, 0, width, height, texture(layer.getImage(), 0, 0, width, height));
         }
 
-        nvgClosePath(handle);
+        pendingLayers.put(layer, render);
+        render.run();
 
         return this;
     }
 
     /**
-     * Renders the given text at given coordinates.
-     * Uses {@link NVGU#currentFont}, {@link NVGU#currentFontSize} and {@link NVGU#alignment}
-     * for the additional data.
-     * If these aren't set, a {@link NullPointerException} with be thrown.
-     * @param text the text to draw
-     * @param x the x position
-     * @param y the y position
-     * @param colour the colour of the text - will not accept gradients
+     * Marks a layer as needing to be rendered again, such as when what it draws has changed
+     * @param identifier the identifier of the layer
      */
-    public NVGU text(String text, float x, float y, Color colour) {
-        return text(text, x, y, colour, this.currentFont, this.currentFontSize, this.alignment);
+    public NVGU invalidateLayer(String identifier) {
+        requireNanoVG();
+
+        layers.invalidate(identifier);
+        return this;
     }
 
     /**
-     * Renders the given text at given coordinates, with alignment {@link Alignment#LEFT_TOP}
-     * @param text the text to draw
-     * @param x the x position
-     * @param y the y position
-     * @param colour the colour of the text - will not accept gradients
-     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
-     * @param size the font size
+     * Marks every layer as needing to be rendered again
      */
-    public NVGU text(String text, float x, float y, Color colour, String font, int size) {
-        return text(text, x, y, colour, font, size, Alignment.LEFT_TOP);
+    public NVGU invalidateLayers() {
+        requireNanoVG();
+
+        layers.invalidateAll();
+        return this;
     }
 
     /**
-     * Renders the given text at given coordinates
-     * @param text the text to draw
-     * @param x the x position
-     * @param y the y position
-     * @param colour the colour of the text - will not accept gradients
-     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
-     * @param size the font size
-     * @param alignment how the text should be aligned in accordance with the coordinates
+     * Deletes a layer and its framebuffer
+     * @param identifier the identifier of the layer
      */
-    public NVGU text(String text, float x, float y, Color colour, String font, int size, Alignment alignment) {
-        nvgBeginPath(handle);
+    public NVGU removeLayer(String identifier) {
+        requireNanoVG();
 
-        nvgFillColor(handle, createAndStoreColour(colour));
-        nvgFontFace(handle, font);
-        nvgFontSize(handle, size);
-        nvgTextAlign(handle, alignment.getTextAlignment());
-        nvgText(handle, x, y + 1, text);
+        LayerCache.Layer layer = layers.remove(identifier);
 
-        nvgClosePath(handle);
+        if (layer != null) {
+            pendingLayers.remove(layer);
+        }
 
         return this;
     }
 
-    public String getCurrentFont() {
-        return currentFont;
-    }
+    /**
+     * Sets how much memory the framebuffers of layers may take up. At the start of each frame, the framebuffers
+     * of the least recently drawn layers over the budget are deleted, and the layers are rendered again when next drawn.
+     * @param bytes the budget in bytes
+     */
+    public NVGU setLayerBudget(long bytes) {
+        requireNanoVG();
 
-    public int getCurrentFontSize() {
-        return currentFontSize;
+        layers.setBudget(bytes);
+        return this;
     }
 
-    public Alignment getAlignment() {
-        return alignment;
+    /**
+     * Gets the layer cache, which can be used to read its statistics.
+     * @return the layer cache
+     */
+    public LayerCache getLayerCache() {
+        return layers;
     }
 
     /**
-     * Sets the font data for {@link NVGU#text(String, float, float, Color)}
-     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
-     * @param size the size of the font
-     * @param alignment the alignment of the font
+     * Records everything drawn in the render block into the given display list, instead of drawing it.
+     * The display list is cleared first. Text can still be measured while recording.
+     * @param displayList the display list to record into
+     * @param render what will be recorded
      */
-    public NVGU setFontData(String font, int size, Alignment alignment) {
-        this.currentFont = font;
-        this.currentFontSize = size;
-        this.alignment = alignment;
+    public NVGU record(DisplayList displayList, Runnable render) {
+        Renderer previous = renderer;
+
+        displayList.clear();
+        renderer = displayList;
+
+        try {
+            render.run();
+        } finally {
+            renderer = previous;
+        }
 
         return this;
     }
 
     /**
-     * Gets the width of the given text.
-     * Uses {@link NVGU#currentFont} and {@link NVGU#currentFontSize}
-     * for the additional data.
-     * If these aren't set, a {@link NullPointerException} with be thrown.
-     * @param text the given text to calculate the width of
-     * @return the width of the text
+     * Records the given panels in parallel and then draws them, in the order given, so that later panels are drawn
+     * over earlier ones however long each took to record. Each panel is recorded on a thread of the recording executor
+     * with an instance of its own, which starts with this instance's font data and draws into a display list,
+     * while the calling thread waits. Their display lists are then replayed on the calling thread, each within a scope.
+     * Recording instances can measure text, which is done by this instance one at a time, but can't use textures,
+     * layers or anything else which needs NanoVG, and nothing is culled while recording.
+     * Should be called within a frame, with panels which don't depend on each other.
+     * @param panels what each panel draws, with the instance recording it
      */
-    public float textWidth(String text) {
-        return textWidth(text, currentFont, currentFontSize);
-    }
+    public NVGU parallel(List<Consumer<NVGU>> panels) {
+        while (recorders.size() < panels.size()) {
+            NVGU recorder = new NVGU();
 
-    /**
-     * Gets the width of the given text.
-     * @param text the given text to calculate the width of
-     * @param font the font to use
-     * @param size the size of the font
-     * @return the width of the text
-     */
-    public float textWidth(String text, String font, int size) {
-        float[] bounds = new float[4];
+            recorder.parent = this;
+            recorder.recording = new DisplayList();
+            recorder.renderer = recorder.recording;
 
-        save();
+            recorders.add(recorder);
+        }
 
-        nvgFontFace(handle, font);
-        nvgFontSize(handle, size);
-        nvgTextBounds(handle, 0f, 0f, text, bounds);
+        List<Callable<Void>> tasks = new ArrayList<>(panels.size());
 
-        restore();
+        for (int i = 0; i < panels.size(); i++) {
+            NVGU recorder = recorders.get(i);
+            Consumer<NVGU> panel = panels.get(i);
 
-        return bounds[2];
+            recorder.setFontData(currentFont, currentFontSize, alignment);
+
+            tasks.add(() -> {
+                recorder.record(recorder.recording, () -> panel.accept(recorder));
+
+                // paints have been copied into the display list
+                recorder.freeResources();
+
+                return null;
+            });
+        }
+
+        List<Future<Void>> results;
+
+        try {
+            results = recordingExecutor.invokeAll(tasks);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recording in parallel", exception);
+        }
+
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while recording in parallel", exception);
+            } catch (ExecutionException exception) {
+                if (exception.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) exception.getCause();
+                }
+
+                throw new IllegalStateException("Failed to record a panel", exception.getCause());
+            }
+        }
+
+        for (int i = 0; i < panels.size(); i++) {
+            renderer.save();
+            recorders.get(i).recording.replay(renderer);
+            renderer.restore();
+        }
+
+        return this;
     }
 
     /**
-     * Gets the height of a font.
-     * Uses {@link NVGU#currentFont} and {@link NVGU#currentFontSize}
-     * for the additional data.
-     * If these aren't set, a {@link NullPointerException} with be thrown.
-     * @return the height of the font
+     * Enables writing every operation drawn to a trace file, along with the start and end of every frame,
+     * so that the frames can be replayed later with {@link NVGU#replayTrace(Path)}, such as to benchmark them.
+     * The tracer receives what this instance issues, ahead of culling and merging, so the trace holds the shapes as drawn
+     * rather than as merged. Primitives which {@link NVGU#enableCulling()} finds off screen are skipped before they are issued,
+     * so they aren't in the trace and replaying doesn't draw them. Layers are rendered into their own framebuffers
+     * outside of the frame, so only drawing their images is traced. Any trace being written is closed first.
+     * Should be called outside of a frame.
+     * @param path the path of the trace file, which is replaced if it exists
      */
-    public float textHeight() {
-        return textHeight(currentFont, currentFontSize);
+    public NVGU enableTracing(Path path) {
+        disableTracing();
+
+        tracer = new TracingRenderer(cullingRenderer, path);
+        renderer = tracer;
+
+        return this;
     }
 
     /**
-     * Gets the height of a font.
-     * @param font the font to use
-     * @param size the font size
-     * @return the height of the font
+     * Disables tracing, writing whatever is still buffered and closing the trace file
      */
-    public float textHeight(String font, int size) {
-        float[] ascender = new float[1];
-        float[] descender = new float[1];
-        float[] height = new float[1];
+    public NVGU disableTracing() {
+        if (tracer != null) {
+            tracer.close();
 
-        nvgFontFace(handle, font);
-        nvgFontSize(handle, size);
-        nvgTextMetrics(handle, ascender, descender, height);
+            if (renderer == tracer) {
+                renderer = cullingRenderer;
+            }
+
+            tracer = null;
+        }
 
-        return height[0];
+        return this;
     }
 
     /**
-     * Translates subsequent rendering to the given coordinates
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
+     * Gets the renderer writing the trace, e.g. for how much has been written
+     * @return the tracing renderer, or null if tracing is disabled
      */
-    public NVGU translate(float x, float y) {
-        nvgTranslate(handle, x, y);
-
-        return this;
+    public TracingRenderer getTracer() {
+        return tracer;
     }
 
     /**
-     * Rotates subsequent rendering by the given angle
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
-     * @param angle angle of rotation (degrees)
+     * Draws every frame of a trace, each into a frame of its own with the size it was traced with,
+     * and measures how long each took, including waiting for the GPU to finish drawing it.
+     * The fonts and textures the trace uses must have been created in the same order as when it was traced,
+     * so that their ids match. Should be called outside of a frame.
+     * @param trace the path of the trace file
+     * @return the time each frame took, in nanoseconds
      */
-    public NVGU rotateDegrees(float x, float y, float angle) {
-        translate(x, y);
-        nvgRotate(handle, (float) Math.toRadians(angle));
-        translate(-x, -y);
+    public long[] replayTrace(Path trace) {
+        long[] times = new long[64];
+        int frames = 0;
 
-        return this;
+        try (TraceReader reader = new TraceReader(trace)) {
+            while (reader.nextFrame()) {
+                long start = System.nanoTime();
+
+                beginFrame(reader.getFrameWidth(), reader.getFrameHeight());
+                reader.replayFrame(renderer);
+                freeResources();
+                endFrame();
+
+                if (software == null) {
+                    glFinish();
+                }
+
+                if (frames == times.length) {
+                    times = Arrays.copyOf(times, frames * 2);
+                }
+
+                times[frames++] = System.nanoTime() - start;
+            }
+        }
+
+        return Arrays.copyOf(times, frames);
     }
 
     /**
-     * Rotates the rendering in the render block
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
-     * @param angle angle of rotation (degrees)
-     * @param render what will be rotated and rendered
+     * Sets the executor panels are recorded on by {@link NVGU#parallel(List)}, which is the common fork join pool by default.
+     * An executor starting a virtual thread per task works as well.
+     * @param executor the executor to record on
      */
-    public NVGU rotateDegrees(float x, float y, float angle, Runnable render) {
-        scope(() -> {
-            rotateDegrees(x, y, angle);
-            render.run();
-        });
+    public NVGU setRecordingExecutor(ExecutorService executor) {
+        this.recordingExecutor = executor;
 
         return this;
     }
 
     /**
-     * Rotates the rendering in the render block
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
-     * @param angle angle of rotation (radians)
-     * @param render what will be rotated and rendered
+     * Draws everything recorded in the given display list.
+     * @param displayList the display list to draw
      */
-    public NVGU rotateRadians(float x, float y, float angle, Runnable render) {
-        scope(() -> {
-            rotateRadians(x, y, angle);
-            render.run();
-        });
+    public NVGU replay(DisplayList displayList) {
+        displayList.replay(renderer);
 
         return this;
     }
 
     /**
-     * Rotates subsequent rendering by the given angle
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
-     * @param angle angle of rotation (radians)
+     * Provides a scope where any transformations that have taken place will be reverted
+     * immediately after rendering, such as rotations or scaling.
+     * @param render what will be rendered in the scope
      */
-    public NVGU rotateRadians(float x, float y, float angle) {
-        translate(x, y);
-        nvgRotate(handle, angle);
-        translate(-x, -y);
+    public NVGU scope(Runnable render) {
+        save();
+        render.run();
+        restore();
 
         return this;
     }
 
     /**
-     * Scales subsequent rendering by the given factors
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
-     * @param factorX horizontal scale factor
-     * @param factorY vertical scale factor
+     * Saves current transformations
      */
-    public NVGU scale(float x, float y, float factorX, float factorY) {
-        translate(x, y);
-        nvgScale(handle, factorX, factorY);
-        translate(-x, -y);
-
+    public NVGU save() {
+        renderer.save();
         return this;
     }
 
     /**
-     * Scales subsequent rendering by the given factor
-     * @param x horizontal coordinate
-     * @param y vertical coordinate
-     * @param factor scale factor
+     * Restores previous transformations
      */
-    public NVGU scale(float x, float y, float factor) {
-        return scale(x, y, factor, factor);
+    public NVGU restore() {
+        renderer.restore();
+        return this;
     }
 
-    // utility methods
-
     /**
-     * Creates an instance of {@link NVGColor} from the given {@link Color}
-     * @param colour the colour to transform into {@link NVGColor}
+     * Textured rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param texture the texture identifier to use
      */
-    public NVGColor createAndStoreColour(Color colour) {
-        NVGColor nvgColour = NVGColor.calloc()
-                .r(colour.getRed() / 255f)
-                .g(colour.getGreen() / 255f)
-                .b(colour.getBlue() / 255f)
-                .a(colour.getAlpha() / 255f);
-
-        resources.add(nvgColour);
+    public NVGU texturedRectangle(float x, float y, float width, float height, String texture) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
 
-        return nvgColour;
+        return rectangle(x, y, width, height, texture(texture, x, y, width, height));
     }
 
     /**
-     * Creates an instance of {@link NVGPaint}
+     * Textured rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param texture the handle of the texture to use
      */
-    public NVGPaint createAndStorePaint() {
-        NVGPaint paint = NVGPaint.calloc();
-
-        resources.add(paint);
+    public NVGU texturedRectangle(float x, float y, float width, float height, TextureHandle texture) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
 
-        return paint;
+        return rectangle(x, y, width, height, texture(texture, x, y, width, height));
     }
 
     /**
-     * Creates a linear gradient in an instance of an {@link NVGUColour}.
-     * The position parameters will most likely be the same as the coordinates of whatever shape you are
-     * drawing, e.g. a rectangle.
-     * The feather will be the greatest of either width or height.
-     * @param x start x coordinate of the gradient
-     * @param y start y coordinate of the gradient
-     * @param width width of the gradient
-     * @param height height of the gradient
-     * @param start start colour of the gradient
-     * @param end end colour of the gradient
-     * @param direction direction of the gradient
-     * @return instance of the gradient inside an {@link NVGUColour}
+     * Basic coloured rectangle.
+     * @param rectangle bounds of the rectangle
+     * @param colour colour of the rectangle
      */
-    public NVGUColour linearGradient(float x, float y, float width, float height, Color start, Color end, LinearGradientDirection direction) {
-        return linearGradient(x, y, width, height, Math.max(width, height), start, end, direction);
+    public NVGU rectangle(Rectangle rectangle, Color colour) {
+        return rectangle((float) rectangle.getX(), (float) rectangle.getY(), (float) rectangle.getWidth(), (float) rectangle.getHeight(), colour);
     }
 
     /**
-     * Creates a linear gradient in an instance of an {@link NVGUColour}. The position
-     * parameters will most likely be the same as the coordinates of whatever shape you are
-     * drawing, e.g. a rectangle.
-     * @param x start x coordinate of the gradient
-     * @param y start y coordinate of the gradient
+     * Basic coloured rectangle.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param colour colour of the rectangle
+     */
+    public NVGU rectangle(float x, float y, float width, float height, Color colour) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.rect(x, y, width, height);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured rectangle.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param colour colour of the rectangle, packed as ARGB
+     */
+    public NVGU rectangle(float x, float y, float width, float height, int colour) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.rect(x, y, width, height);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Textured rectangle border
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param texture the texture identifier to use
+     */
+    public NVGU texturedRectangleBorder(float x, float y, float width, float height, float thickness, String texture, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        return rectangleBorder(x, y, width, height, thickness, texture(texture, x, y, width, height), border);
+    }
+
+    /**
+     * Textured rectangle border
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param texture the handle of the texture to use
+     */
+    public NVGU texturedRectangleBorder(float x, float y, float width, float height, float thickness, TextureHandle texture, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        return rectangleBorder(x, y, width, height, thickness, texture(texture, x, y, width, height), border);
+    }
+
+    /**
+     * Basic coloured rectangle border.
+     * @param rectangle bounds of the rectangle
+     * @param colour colour of the rectangle
+     */
+    public NVGU rectangleBorder(Rectangle rectangle, float thickness, Color colour, Border border) {
+        return rectangleBorder((float) rectangle.getX(), (float) rectangle.getY(), (float) rectangle.getWidth(), (float) rectangle.getHeight(), thickness, colour, border);
+    }
+
+    /**
+     * Basic coloured rectangle border.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param thickness thickness of the border
+     * @param colour colour of the rectangle
+     */
+    public NVGU rectangleBorder(float x, float y, float width, float height, float thickness, Color colour, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        float inset = borderInset(thickness, border);
+
+        renderer.rect(x + inset, y + inset, width - inset * 2, height - inset * 2);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured rectangle border.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param thickness thickness of the border
+     * @param colour colour of the rectangle, packed as ARGB
+     */
+    public NVGU rectangleBorder(float x, float y, float width, float height, float thickness, int colour, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        float inset = borderInset(thickness, border);
+
+        renderer.rect(x + inset, y + inset, width - inset * 2, height - inset * 2);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param texture the texture identifier to use
+     */
+    public NVGU texturedRoundedRectangle(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, String texture) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        return roundedRectangle(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft, texture(texture, x, y, width, height));
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param texture the handle of the texture to use
+     */
+    public NVGU texturedRoundedRectangle(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, TextureHandle texture) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        return roundedRectangle(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft, texture(texture, x, y, width, height));
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param texture the texture identifier to use
+     */
+    public NVGU texturedRoundedRectangle(float x, float y, float width, float height, float radius, String texture) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        return roundedRectangle(x, y, width, height, radius, texture(texture, x, y, width, height));
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param texture the handle of the texture to use
+     */
+    public NVGU texturedRoundedRectangle(float x, float y, float width, float height, float radius, TextureHandle texture) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        return roundedRectangle(x, y, width, height, radius, texture(texture, x, y, width, height));
+    }
+
+    /**
+     * Basic coloured rounded rectangle.
+     * @param bounds bounds of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangle(Rectangle bounds, float topLeft, float topRight, float bottomRight, float bottomLeft, Color colour) {
+        return roundedRectangle((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), topLeft, topRight, bottomRight, bottomLeft, colour);
+    }
+
+    /**
+     * Basic coloured rounded rectangle.
+     * @param bounds bounds of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangle(Rectangle bounds, float radius, Color colour) {
+        return roundedRectangle((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), radius, colour);
+    }
+
+    /**
+     * Basic coloured rounded rectangle.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangle(float x, float y, float width, float height, float radius, Color colour) {
+        return roundedRectangle(x, y, width, height, radius, radius, radius, radius, colour);
+    }
+
+    /**
+     * Basic coloured rounded rectangle.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param colour colour of the rounded rectangle, packed as ARGB
+     */
+    public NVGU roundedRectangle(float x, float y, float width, float height, float radius, int colour) {
+        return roundedRectangle(x, y, width, height, radius, radius, radius, radius, colour);
+    }
+
+    /**
+     * Basic coloured rounded rectangle.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangle(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, Color colour) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.roundedRect(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured rounded rectangle.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param colour colour of the rounded rectangle, packed as ARGB
+     */
+    public NVGU roundedRectangle(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, int colour) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.roundedRect(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param thickness thickness of the border
+     * @param texture the texture identifier to use
+     * @param border the border type to use
+     */
+    public NVGU texturedRounddeRectangleBorder(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, String texture, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        return roundedRectangleBorder(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft, thickness, texture(texture, x, y, width, height), border);
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param thickness thickness of the border
+     * @param texture the handle of the texture to use
+     * @param border the border type to use
+     */
+    public NVGU texturedRounddeRectangleBorder(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, TextureHandle texture, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        return roundedRectangleBorder(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft, thickness, texture(texture, x, y, width, height), border);
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param texture the texture identifier to use
+     */
+    public NVGU texturedRounddeRectangleBorder(float x, float y, float width, float height, float radius, float thickness, String texture, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        return roundedRectangleBorder(x, y, width, height, radius, thickness, texture(texture, x, y, width, height), border);
+    }
+
+    /**
+     * Textured rounded rectangle
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param texture the handle of the texture to use
+     */
+    public NVGU texturedRounddeRectangleBorder(float x, float y, float width, float height, float radius, float thickness, TextureHandle texture, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        return roundedRectangleBorder(x, y, width, height, radius, thickness, texture(texture, x, y, width, height), border);
+    }
+
+    /**
+     * Basic coloured rounded rectangle border.
+     * @param bounds bounds of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param thickness the thickness of the border
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangleBorder(Rectangle bounds, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, Color colour, Border border) {
+        return roundedRectangleBorder((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), topLeft, topRight, bottomRight, bottomLeft, thickness, colour, border);
+    }
+
+    /**
+     * Basic coloured rounded rectangle border.
+     * @param bounds bounds of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param thickness the thickness of the border
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangleBorder(Rectangle bounds, float radius, float thickness, Color colour, Border border) {
+        return roundedRectangleBorder((float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight(), radius, thickness, colour, border);
+    }
+
+    /**
+     * Basic coloured rounded rectangle border.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param thickness the thickness of the border
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangleBorder(float x, float y, float width, float height, float radius, float thickness, Color colour, Border border) {
+        return roundedRectangleBorder(x, y, width, height, radius, radius, radius, radius, thickness, colour, border);
+    }
+
+    /**
+     * Basic coloured rounded rectangle border.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param radius radius of the rounded rectangle
+     * @param thickness the thickness of the border
+     * @param colour colour of the rounded rectangle, packed as ARGB
+     */
+    public NVGU roundedRectangleBorder(float x, float y, float width, float height, float radius, float thickness, int colour, Border border) {
+        return roundedRectangleBorder(x, y, width, height, radius, radius, radius, radius, thickness, colour, border);
+    }
+
+    /**
+     * Basic coloured rounded rectangle border.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param thickness the thickness of the border
+     * @param colour colour of the rounded rectangle
+     */
+    public NVGU roundedRectangleBorder(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, Color colour, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        float inset = borderInset(thickness, border);
+
+        renderer.roundedRect(x + inset, y + inset, width - inset * 2, height - inset * 2, topLeft, topRight, bottomRight, bottomLeft);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured rounded rectangle border.
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param topLeft radius of the top left corner
+     * @param topRight radius of the top right corner
+     * @param bottomRight radius of the bottom right corner
+     * @param bottomLeft radius of the bottom left corner
+     * @param thickness the thickness of the border
+     * @param colour colour of the rounded rectangle, packed as ARGB
+     */
+    public NVGU roundedRectangleBorder(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft, float thickness, int colour, Border border) {
+        if (culled(x - thickness, y - thickness, width + thickness * 2, height + thickness * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        float inset = borderInset(thickness, border);
+
+        renderer.roundedRect(x + inset, y + inset, width - inset * 2, height - inset * 2, topLeft, topRight, bottomRight, bottomLeft);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured circle.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param radius radius of the circle
+     * @param colour colour of the circle
+     */
+    public NVGU circle(float x, float y, float radius, Color colour) {
+        if (culled(x - radius, y - radius, radius * 2, radius * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.circle(x, y, radius);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured circle.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param radius radius of the circle
+     * @param colour colour of the circle, packed as ARGB
+     */
+    public NVGU circle(float x, float y, float radius, int colour) {
+        if (culled(x - radius, y - radius, radius * 2, radius * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.circle(x, y, radius);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured circle border.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param radius radius of the circle
+     * @param thickness thickness of the circle border
+     * @param colour colour of the circle
+     */
+    public NVGU circleBorder(float x, float y, float radius, float thickness, Color colour) {
+        if (culled(x - radius - thickness, y - radius - thickness, (radius + thickness) * 2, (radius + thickness) * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.circle(x, y, radius);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured circle border.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param radius radius of the circle
+     * @param thickness thickness of the circle border
+     * @param colour colour of the circle, packed as ARGB
+     */
+    public NVGU circleBorder(float x, float y, float radius, float thickness, int colour) {
+        if (culled(x - radius - thickness, y - radius - thickness, (radius + thickness) * 2, (radius + thickness) * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.circle(x, y, radius);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured right-angled triangle.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param width width of the triangle
+     * @param height height of the triangle
+     * @param colour colour of the circle
+     * @param corner where the corner is located
+     */
+    public NVGU rightAngledTriangle(float x, float y, float width, float height, Color colour, RightAngledTriangleCorner corner) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        rightAngledTrianglePath(x, y, width, height, corner);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured right-angled triangle.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param width width of the triangle
+     * @param height height of the triangle
+     * @param colour colour of the circle, packed as ARGB
+     * @param corner where the corner is located
+     */
+    public NVGU rightAngledTriangle(float x, float y, float width, float height, int colour, RightAngledTriangleCorner corner) {
+        if (culled(x, y, width, height)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        rightAngledTrianglePath(x, y, width, height, corner);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured right-angled triangle border.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param width width of the triangle
+     * @param height height of the triangle
+     * @param colour colour of the circle
+     * @param corner where the corner is located
+     */
+    public NVGU rightAngledTriangleBorder(float x, float y, float width, float height, float thickness, Color colour, RightAngledTriangleCorner corner) {
+        if (culled(x - thickness * MITER_EXTENT, y - thickness * MITER_EXTENT, width + thickness * MITER_EXTENT * 2, height + thickness * MITER_EXTENT * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        rightAngledTrianglePath(x, y, width, height, corner);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic coloured right-angled triangle border.
+     * @param x centre x coordinate of the circle
+     * @param y centre y coordinate of the circle
+     * @param width width of the triangle
+     * @param height height of the triangle
+     * @param colour colour of the circle, packed as ARGB
+     * @param corner where the corner is located
+     */
+    public NVGU rightAngledTriangleBorder(float x, float y, float width, float height, float thickness, int colour, RightAngledTriangleCorner corner) {
+        if (culled(x - thickness * MITER_EXTENT, y - thickness * MITER_EXTENT, width + thickness * MITER_EXTENT * 2, height + thickness * MITER_EXTENT * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        rightAngledTrianglePath(x, y, width, height, corner);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic filled polygon.
+     * @param points array of points, a point being a float array of length 2
+     * @param colour the colour of the polygon
+     */
+    public NVGU polygon(float[][] points, Color colour) {
+        if (culled(points, 0)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        polygonPath(points);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic filled polygon.
+     * @param points array of points, a point being a float array of length 2
+     * @param colour the colour of the polygon, packed as ARGB
+     */
+    public NVGU polygon(float[][] points, int colour) {
+        if (culled(points, 0)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        polygonPath(points);
+        fill(colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic filled polygon.
+     * @param points array of points, a point being a float array of length 2
+     * @param colour the colour of the polygon
+     */
+    public NVGU polygonBorder(float[][] points, float thickness, Color colour) {
+        if (culled(points, thickness * MITER_EXTENT)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        polygonPath(points);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Basic polygon border.
+     * @param points array of points, a point being a float array of length 2
+     * @param colour the colour of the polygon, packed as ARGB
+     */
+    public NVGU polygonBorder(float[][] points, float thickness, int colour) {
+        if (culled(points, thickness * MITER_EXTENT)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        polygonPath(points);
+        stroke(thickness, colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Draws many rectangles at once. Opaque rectangles of the same colour are drawn as a single path,
+     * so rectangles of different colours which overlap may not be drawn in the given order.
+     * Translucent ones are drawn one by one, so where they overlap they blend as they would if drawn separately.
+     * @param rectangles x, y, width and height of each rectangle, one after the other
+     * @param colours the colour of each rectangle packed as ARGB, or a single colour for all of them
+     */
+    public NVGU rectangles(float[] rectangles, int[] colours) {
+        return rectangles(FloatBuffer.wrap(rectangles), colours);
+    }
+
+    /**
+     * Draws many rectangles at once. Opaque rectangles of the same colour are drawn as a single path,
+     * so rectangles of different colours which overlap may not be drawn in the given order.
+     * Translucent ones are drawn one by one, so where they overlap they blend as they would if drawn separately.
+     * @param rectangles x, y, width and height of each rectangle, one after the other, from the buffer's position
+     * @param colours the colour of each rectangle packed as ARGB, or a single colour for all of them
+     */
+    public NVGU rectangles(FloatBuffer rectangles, int[] colours) {
+        batch(BATCH_RECTANGLES, rectangles, 4, colours);
+        return this;
+    }
+
+    /**
+     * Draws many rounded rectangles at once. Opaque rounded rectangles of the same colour are drawn as a single path,
+     * so rounded rectangles of different colours which overlap may not be drawn in the given order.
+     * Translucent ones are drawn one by one, so where they overlap they blend as they would if drawn separately.
+     * @param rectangles x, y, width, height and radius of each rounded rectangle, one after the other
+     * @param colours the colour of each rounded rectangle packed as ARGB, or a single colour for all of them
+     */
+    public NVGU roundedRectangles(float[] rectangles, int[] colours) {
+        return roundedRectangles(FloatBuffer.wrap(rectangles), colours);
+    }
+
+    /**
+     * Draws many rounded rectangles at once. Opaque rounded rectangles of the same colour are drawn as a single path,
+     * so rounded rectangles of different colours which overlap may not be drawn in the given order.
+     * Translucent ones are drawn one by one, so where they overlap they blend as they would if drawn separately.
+     * @param rectangles x, y, width, height and radius of each rounded rectangle, one after the other, from the buffer's position
+     * @param colours the colour of each rounded rectangle packed as ARGB, or a single colour for all of them
+     */
+    public NVGU roundedRectangles(FloatBuffer rectangles, int[] colours) {
+        batch(BATCH_ROUNDED_RECTANGLES, rectangles, 5, colours);
+        return this;
+    }
+
+    /**
+     * Draws many circles at once. Opaque circles of the same colour are drawn as a single path,
+     * so circles of different colours which overlap may not be drawn in the given order.
+     * Translucent ones are drawn one by one, so where they overlap they blend as they would if drawn separately.
+     * @param circles centre x, centre y and radius of each circle, one after the other
+     * @param colours the colour of each circle packed as ARGB, or a single colour for all of them
+     */
+    public NVGU circles(float[] circles, int[] colours) {
+        return circles(FloatBuffer.wrap(circles), colours);
+    }
+
+    /**
+     * Draws many circles at once. Opaque circles of the same colour are drawn as a single path,
+     * so circles of different colours which overlap may not be drawn in the given order.
+     * Translucent ones are drawn one by one, so where they overlap they blend as they would if drawn separately.
+     * @param circles centre x, centre y and radius of each circle, one after the other, from the buffer's position
+     * @param colours the colour of each circle packed as ARGB, or a single colour for all of them
+     */
+    public NVGU circles(FloatBuffer circles, int[] colours) {
+        batch(BATCH_CIRCLES, circles, 3, colours);
+        return this;
+    }
+
+    /**
+     * Renders the given text at given coordinates.
+     * Uses {@link NVGU#currentFont}, {@link NVGU#currentFontSize} and {@link NVGU#alignment}
+     * for the additional data.
+     * If these aren't set, a {@link NullPointerException} with be thrown.
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text - will not accept gradients
+     */
+    public NVGU text(String text, float x, float y, Color colour) {
+        return text(text, x, y, colour, this.currentFont, this.currentFontSize, this.alignment);
+    }
+
+    /**
+     * Renders the given text at given coordinates.
+     * Uses {@link NVGU#currentFont}, {@link NVGU#currentFontSize} and {@link NVGU#alignment}
+     * for the additional data.
+     * If these aren't set, a {@link NullPointerException} with be thrown.
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text, packed as ARGB
+     */
+    public NVGU text(String text, float x, float y, int colour) {
+        return text(text, x, y, colour, this.currentFont, this.currentFontSize, this.alignment);
+    }
+
+    /**
+     * Renders the given text at given coordinates, with alignment {@link Alignment#LEFT_TOP}
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text - will not accept gradients
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     */
+    public NVGU text(String text, float x, float y, Color colour, String font, int size) {
+        return text(text, x, y, colour, font, size, Alignment.LEFT_TOP);
+    }
+
+    /**
+     * Renders the given text at given coordinates, with alignment {@link Alignment#LEFT_TOP}
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text, packed as ARGB
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     */
+    public NVGU text(String text, float x, float y, int colour, String font, int size) {
+        return text(text, x, y, colour, font, size, Alignment.LEFT_TOP);
+    }
+
+    /**
+     * Renders the given text at given coordinates
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text - will not accept gradients
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     * @param alignment how the text should be aligned in accordance with the coordinates
+     */
+    public NVGU text(String text, float x, float y, Color colour, String font, int size, Alignment alignment) {
+        return text(text, x, y, colour.getRGB(), font, size, alignment);
+    }
+
+    /**
+     * Renders the given text at given coordinates
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text, packed as ARGB
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     * @param alignment how the text should be aligned in accordance with the coordinates
+     */
+    public NVGU text(String text, float x, float y, int colour, String font, int size, Alignment alignment) {
+        if (culledVertically(y - size * 2, y + size * 2)) {
+            return this;
+        }
+
+        renderer.beginPath();
+
+        renderer.text(x, y + 1, text, font, size, alignment.getTextAlignment(), colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Renders the given text at given coordinates, with alignment {@link Alignment#LEFT_TOP}
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text - will not accept gradients
+     * @param font the handle of the font to use
+     * @param size the font size
+     */
+    public NVGU text(String text, float x, float y, Color colour, FontHandle font, int size) {
+        return text(text, x, y, colour.getRGB(), font, size, Alignment.LEFT_TOP);
+    }
+
+    /**
+     * Renders the given text at given coordinates, with alignment {@link Alignment#LEFT_TOP}
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text, packed as ARGB
+     * @param font the handle of the font to use
+     * @param size the font size
+     */
+    public NVGU text(String text, float x, float y, int colour, FontHandle font, int size) {
+        return text(text, x, y, colour, font, size, Alignment.LEFT_TOP);
+    }
+
+    /**
+     * Renders the given text at given coordinates
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text - will not accept gradients
+     * @param font the handle of the font to use
+     * @param size the font size
+     * @param alignment how the text should be aligned in accordance with the coordinates
+     */
+    public NVGU text(String text, float x, float y, Color colour, FontHandle font, int size, Alignment alignment) {
+        return text(text, x, y, colour.getRGB(), font, size, alignment);
+    }
+
+    /**
+     * Renders the given text at given coordinates. The font is selected by its id, skipping the lookup by name.
+     * @param text the text to draw
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text, packed as ARGB
+     * @param font the handle of the font to use
+     * @param size the font size
+     * @param alignment how the text should be aligned in accordance with the coordinates
+     */
+    public NVGU text(String text, float x, float y, int colour, FontHandle font, int size, Alignment alignment) {
+        if (culledVertically(y - size * 2, y + size * 2)) {
+            return this;
+        }
+
+        checkOpen(font);
+
+        renderer.beginPath();
+
+        renderer.text(x, y + 1, text, font.getId(), size, alignment.getTextAlignment(), colour);
+
+        renderer.closePath();
+
+        return this;
+    }
+
+    /**
+     * Renders the given text wrapped to the given width.
+     * The layout of the paragraph is cached, so drawing the same paragraph again doesn't break it into lines again.
+     * @param text the text to draw, which may contain line breaks
+     * @param x the x position
+     * @param y the y position
+     * @param width the width to wrap the text to
+     * @param colour the colour of the text - will not accept gradients
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     * @param alignment how the paragraph should be aligned in accordance with the coordinates, and each line within the width
+     */
+    public NVGU wrappedText(String text, float x, float y, float width, Color colour, String font, int size, Alignment alignment) {
+        return wrappedText(layoutText(text, width, font, size, alignment), x, y, colour.getRGB());
+    }
+
+    /**
+     * Renders the given text wrapped to the given width.
+     * The layout of the paragraph is cached, so drawing the same paragraph again doesn't break it into lines again.
+     * @param text the text to draw, which may contain line breaks
+     * @param x the x position
+     * @param y the y position
+     * @param width the width to wrap the text to
+     * @param colour the colour of the text, packed as ARGB
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     * @param alignment how the paragraph should be aligned in accordance with the coordinates, and each line within the width
+     */
+    public NVGU wrappedText(String text, float x, float y, float width, int colour, String font, int size, Alignment alignment) {
+        return wrappedText(layoutText(text, width, font, size, alignment), x, y, colour);
+    }
+
+    /**
+     * Renders a paragraph which has already been laid out.
+     * @param layout the layout of the paragraph
+     * @param x the x position
+     * @param y the y position
+     * @param colour the colour of the text, packed as ARGB
+     */
+    public NVGU wrappedText(TextLayout layout, float x, float y, int colour) {
+        for (int i = 0; i < layout.getLineCount(); i++) {
+            float top = y + layout.getLineY(i);
+
+            if (culledVertically(top, top + layout.getLineHeight())) {
+                continue;
+            }
+
+            renderer.beginPath();
+
+            renderer.text(x + layout.getLineX(i), y + layout.getLineY(i) + 1, layout.getLine(i), layout.getFont(), layout.getSize(), NVG_ALIGN_LEFT | NVG_ALIGN_TOP, colour);
+
+            renderer.closePath();
+        }
+
+        return this;
+    }
+
+    /**
+     * Renders the part of a document which is visible through the given viewport, clipped to the viewport.
+     * Only the visible lines are visited, so the cost doesn't depend on the length of the document.
+     * @param document the document to draw
+     * @param x left coordinate of the viewport
+     * @param y top coordinate of the viewport
+     * @param width width of the viewport
+     * @param height height of the viewport
+     * @param scroll the distance from the top of the document to the top of the viewport
+     * @param colour the colour of the text - will not accept gradients
+     */
+    public NVGU textDocument(TextDocument document, float x, float y, float width, float height, float scroll, Color colour) {
+        return textDocument(document, x, y, width, height, scroll, colour.getRGB());
+    }
+
+    /**
+     * Renders the part of a document which is visible through the given viewport, clipped to the viewport.
+     * Only the visible lines are visited, so the cost doesn't depend on the length of the document.
+     * @param document the document to draw
+     * @param x left coordinate of the viewport
+     * @param y top coordinate of the viewport
+     * @param width width of the viewport
+     * @param height height of the viewport
+     * @param scroll the distance from the top of the document to the top of the viewport
+     * @param colour the colour of the text, packed as ARGB
+     */
+    public NVGU textDocument(TextDocument document, float x, float y, float width, float height, float scroll, int colour) {
+        pushScissor(x, y, width, height);
+
+        for (int i = document.lineAt(scroll); i < document.getLineCount() && document.getLineTop(i) < scroll + height; i++) {
+            renderer.beginPath();
+
+            renderer.text(x, y + (float) (document.getLineTop(i) - scroll) + 1, document.getLine(i), document.getFont(), document.getSize(), NVG_ALIGN_LEFT | NVG_ALIGN_TOP, colour);
+
+            renderer.closePath();
+        }
+
+        popScissor();
+
+        return this;
+    }
+
+    /**
+     * Lays out the given text wrapped to the given width, or gets the cached layout if it has been laid out before.
+     * @param text the text to lay out, which may contain line breaks
+     * @param width the width to wrap the text to
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the font size
+     * @param alignment how the paragraph should be aligned in accordance with the coordinates, and each line within the width
+     * @return the layout of the text
+     */
+    public TextLayout layoutText(String text, float width, String font, int size, Alignment alignment) {
+        if (parent != null) {
+            synchronized (parent) {
+                return parent.layoutText(text, width, font, size, alignment);
+            }
+        }
+
+        requireNanoVG();
+
+        TextLayout layout = textLayoutCache.get(text, width, font, size, alignment);
+
+        if (layout == null) {
+            layout = TextLayout.create(handle, text, width, font, size, alignment);
+            textLayoutCache.put(text, layout);
+        }
+
+        return layout;
+    }
+
+    /**
+     * Gets the cache of paragraph layouts, which can be used to read its statistics.
+     * @return the paragraph layout cache
+     */
+    public TextLayoutCache getTextLayoutCache() {
+        return textLayoutCache;
+    }
+
+    public String getCurrentFont() {
+        return currentFont;
+    }
+
+    public int getCurrentFontSize() {
+        return currentFontSize;
+    }
+
+    public Alignment getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * Sets the font data for {@link NVGU#text(String, float, float, Color)}
+     * @param font what font to use - must have been created using {@link NVGU#createFont(String, InputStream)}
+     * @param size the size of the font
+     * @param alignment the alignment of the font
+     */
+    public NVGU setFontData(String font, int size, Alignment alignment) {
+        this.currentFont = font;
+        this.currentFontSize = size;
+        this.alignment = alignment;
+
+        return this;
+    }
+
+    /**
+     * Gets the width of the given text.
+     * Uses {@link NVGU#currentFont} and {@link NVGU#currentFontSize}
+     * for the additional data.
+     * If these aren't set, a {@link NullPointerException} with be thrown.
+     * @param text the given text to calculate the width of
+     * @return the width of the text
+     */
+    public float textWidth(String text) {
+        return textWidth(text, currentFont, currentFontSize);
+    }
+
+    /**
+     * Gets the width of the given text.
+     * @param text the given text to calculate the width of
+     * @param font the font to use
+     * @param size the size of the font
+     * @return the width of the text
+     */
+    public float textWidth(String text, String font, int size) {
+        if (parent != null) {
+            synchronized (parent) {
+                return parent.textWidth(text, font, size);
+            }
+        }
+
+        requireNanoVG();
+
+        float width = textMeasureCache.getWidth(font, size, text);
+
+        if (Float.isNaN(width)) {
+            nvgSave(handle);
+
+            nvgFontFace(handle, font);
+            nvgFontSize(handle, size);
+            nvgTextBounds(handle, 0f, 0f, text, textBounds);
+
+            nvgRestore(handle);
+
+            width = textBounds[2];
+            textMeasureCache.putWidth(font, size, text, width);
+        }
+
+        return width;
+    }
+
+    /**
+     * Gets the height of a font.
+     * Uses {@link NVGU#currentFont} and {@link NVGU#currentFontSize}
+     * for the additional data.
+     * If these aren't set, a {@link NullPointerException} with be thrown.
+     * @return the height of the font
+     */
+    public float textHeight() {
+        return textHeight(currentFont, currentFontSize);
+    }
+
+    /**
+     * Gets the height of a font.
+     * @param font the font to use
+     * @param size the font size
+     * @return the height of the font
+     */
+    public float textHeight(String font, int size) {
+        if (parent != null) {
+            synchronized (parent) {
+                return parent.textHeight(font, size);
+            }
+        }
+
+        requireNanoVG();
+
+        float height = textMeasureCache.getLineHeight(font, size);
+
+        if (Float.isNaN(height)) {
+            float[] ascender = new float[1];
+            float[] descender = new float[1];
+            float[] lineHeight = new float[1];
+
+            nvgSave(handle);
+
+            nvgFontFace(handle, font);
+            nvgFontSize(handle, size);
+            nvgTextMetrics(handle, ascender, descender, lineHeight);
+
+            nvgRestore(handle);
+
+            height = lineHeight[0];
+            textMeasureCache.putMetrics(font, size, ascender[0], descender[0], height);
+        }
+
+        return height;
+    }
+
+    /**
+     * Gets the cache of text measurements, which can be used to read its statistics.
+     * @return the text measurement cache
+     */
+    public TextMeasureCache getTextMeasureCache() {
+        return textMeasureCache;
+    }
+
+    /**
+     * Replaces the text measurement cache with an empty one of the given capacity.
+     * @param capacity the maximum number of text widths to keep
+     */
+    public NVGU setTextMeasureCacheCapacity(int capacity) {
+        this.textMeasureCache = new TextMeasureCache(capacity);
+
+        return this;
+    }
+
+    /**
+     * Sets how the ends of subsequent strokes are drawn
+     * @param cap the line cap
+     */
+    public NVGU lineCap(LineCap cap) {
+        renderer.lineCap(cap.getCap());
+        return this;
+    }
+
+    /**
+     * Sets how the corners of subsequent strokes are drawn
+     * @param join the line join
+     */
+    public NVGU lineJoin(LineJoin join) {
+        renderer.lineJoin(join.getJoin());
+        return this;
+    }
+
+    /**
+     * Sets the transparency applied to everything drawn afterwards, until the next {@link #restore()}
+     * @param alpha the transparency, from 0 to 1
+     */
+    public NVGU globalAlpha(float alpha) {
+        renderer.globalAlpha(alpha);
+        return this;
+    }
+
+    /**
+     * Skips primitives which are entirely outside of the frame or the current scissor, before anything is sent to NanoVG.
+     * The transform and scissor are followed through NVGU, so they must not be changed directly through {@link #getHandle()}.
+     * Nothing is culled while recording a display list.
+     */
+    public NVGU enableCulling() {
+        culling = true;
+        return this;
+    }
+
+    /**
+     * Stops skipping primitives which can't be seen
+     */
+    public NVGU disableCulling() {
+        culling = false;
+        return this;
+    }
+
+    /**
+     * Gets the renderer which follows the transform and scissor, which can be used to read how many primitives were culled.
+     * @return the culling renderer
+     */
+    public CullingRenderer getCullingRenderer() {
+        return cullingRenderer;
+    }
+
+    /**
+     * Fills consecutive shapes of the same opaque colour together as one path, instead of one fill per shape.
+     * Fills are held back until a different colour, a stroke, text or a change of state, and the end of the frame.
+     * Shapes are only merged when that looks the same as drawing them separately, so translucent colours and paints are never merged.
+     * {@link #flushPaths()} must be called before drawing directly through {@link #getHandle()}.
+     */
+    public NVGU enablePathMerging() {
+        mergingRenderer.setEnabled(true);
+        return this;
+    }
+
+    /**
+     * Stops merging fills, filling any shapes which have been held back
+     */
+    public NVGU disablePathMerging() {
+        mergingRenderer.setEnabled(false);
+        return this;
+    }
+
+    /**
+     * Fills any shapes held back by path merging
+     */
+    public NVGU flushPaths() {
+        mergingRenderer.flush();
+        return this;
+    }
+
+    /**
+     * Gets the renderer which merges fills, which can be used to read how many fills were merged.
+     * @return the merging renderer
+     */
+    public MergingRenderer getMergingRenderer() {
+        return mergingRenderer;
+    }
+
+    /**
+     * Forgets the render state mirrored from NanoVG. Must be called after changing the state directly
+     * through {@link #getHandle()}, such as the font or stroke width, so that NVGU sets it again.
+     */
+    public NVGU invalidateState() {
+        if (nanoVGRenderer != null) {
+            nanoVGRenderer.invalidate();
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the renderer which issues drawing operations to NanoVG, which can be used to read how many state changes it skipped.
+     * @return the NanoVG renderer
+     */
+    public NanoVGRenderer getNanoVGRenderer() {
+        return nanoVGRenderer;
+    }
+
+    /**
+     * Translates subsequent rendering to the given coordinates
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     */
+    public NVGU translate(float x, float y) {
+        renderer.translate(x, y);
+
+        return this;
+    }
+
+    /**
+     * Rotates subsequent rendering by the given angle
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     * @param angle angle of rotation (degrees)
+     */
+    public NVGU rotateDegrees(float x, float y, float angle) {
+        translate(x, y);
+        renderer.rotate((float) Math.toRadians(angle));
+        translate(-x, -y);
+
+        return this;
+    }
+
+    /**
+     * Rotates the rendering in the render block
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     * @param angle angle of rotation (degrees)
+     * @param render what will be rotated and rendered
+     */
+    public NVGU rotateDegrees(float x, float y, float angle, Runnable render) {
+        scope(() -> {
+            rotateDegrees(x, y, angle);
+            render.run();
+        });
+
+        return this;
+    }
+
+    /**
+     * Rotates the rendering in the render block
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     * @param angle angle of rotation (radians)
+     * @param render what will be rotated and rendered
+     */
+    public NVGU rotateRadians(float x, float y, float angle, Runnable render) {
+        scope(() -> {
+            rotateRadians(x, y, angle);
+            render.run();
+        });
+
+        return this;
+    }
+
+    /**
+     * Rotates subsequent rendering by the given angle
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     * @param angle angle of rotation (radians)
+     */
+    public NVGU rotateRadians(float x, float y, float angle) {
+        translate(x, y);
+        renderer.rotate(angle);
+        translate(-x, -y);
+
+        return this;
+    }
+
+    /**
+     * Scales subsequent rendering by the given factors
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     * @param factorX horizontal scale factor
+     * @param factorY vertical scale factor
+     */
+    public NVGU scale(float x, float y, float factorX, float factorY) {
+        translate(x, y);
+        renderer.scale(factorX, factorY);
+        translate(-x, -y);
+
+        return this;
+    }
+
+    /**
+     * Scales subsequent rendering by the given factor
+     * @param x horizontal coordinate
+     * @param y vertical coordinate
+     * @param factor scale factor
+     */
+    public NVGU scale(float x, float y, float factor) {
+        return scale(x, y, factor, factor);
+    }
+
+    // utility methods
+
+    /**
+     * Creates an instance of {@link NVGColor} from the given {@link Color}.
+     * The colour is only valid until the end of the current frame.
+     * @param colour the colour to transform into {@link NVGColor}
+     */
+    public NVGColor createAndStoreColour(Color colour) {
+        return createAndStoreColour(colour.getRGB());
+    }
+
+    /**
+     * Creates an instance of {@link NVGColor} from the given packed colour.
+     * The colour is only valid until the end of the current frame.
+     * @param colour the colour to transform into {@link NVGColor}, packed as ARGB
+     */
+    public NVGColor createAndStoreColour(int colour) {
+        if (paintCache != null) {
+            return paintCache.colour(colour);
+        }
+
+        return Colours.unpack(colour, NVGColor.create(arena.malloc(NVGColor.SIZEOF, NVGColor.ALIGNOF)));
+    }
+
+    /**
+     * Creates an instance of {@link NVGPaint}.
+     * The paint is only valid until the end of the current frame.
+     */
+    public NVGPaint createAndStorePaint() {
+        return NVGPaint.create(arena.calloc(NVGPaint.SIZEOF, NVGPaint.ALIGNOF));
+    }
+
+    /**
+     * Creates a linear gradient in an instance of an {@link NVGUColour}.
+     * The position parameters will most likely be the same as the coordinates of whatever shape you are
+     * drawing, e.g. a rectangle.
+     * The feather will be the greatest of either width or height.
+     * @param x start x coordinate of the gradient
+     * @param y start y coordinate of the gradient
+     * @param width width of the gradient
+     * @param height height of the gradient
+     * @param start start colour of the gradient
+     * @param end end colour of the gradient
+     * @param direction direction of the gradient
+     * @return instance of the gradient inside an {@link NVGUColour}
+     */
+    public NVGUColour linearGradient(float x, float y, float width, float height, Color start, Color end, LinearGradientDirection direction) {
+        return linearGradient(x, y, width, height, Math.max(width, height), start, end, direction);
+    }
+
+    /**
+     * Creates a linear gradient in an instance of an {@link NVGUColour}.
+     * The position parameters will most likely be the same as the coordinates of whatever shape you are
+     * drawing, e.g. a rectangle.
+     * The feather will be the greatest of either width or height.
+     * @param x start x coordinate of the gradient
+     * @param y start y coordinate of the gradient
+     * @param width width of the gradient
+     * @param height height of the gradient
+     * @param start start colour of the gradient, packed as ARGB
+     * @param end end colour of the gradient, packed as ARGB
+     * @param direction direction of the gradient
+     * @return instance of the gradient inside an {@link NVGUColour}
+     */
+    public NVGUColour linearGradient(float x, float y, float width, float height, int start, int end, LinearGradientDirection direction) {
+        return linearGradient(x, y, width, height, Math.max(width, height), start, end, direction);
+    }
+
+    /**
+     * Creates a linear gradient in an instance of an {@link NVGUColour}. The position
+     * parameters will most likely be the same as the coordinates of whatever shape you are
+     * drawing, e.g. a rectangle.
+     * @param x start x coordinate of the gradient
+     * @param y start y coordinate of the gradient
      * @param width width of the gradient
      * @param height height of the gradient
      * @param feather the distance for the gradient to apply between the two colours
@@ -1009,8 +2893,24 @@ public class NVGU {
      * @return instance of the gradient inside an {@link NVGUColour}
      */
     public NVGUColour linearGradient(float x, float y, float width, float height, float feather, Color start, Color end, LinearGradientDirection direction) {
-        NVGUColour colour = new NVGUColour(createAndStorePaint());
+        return linearGradient(x, y, width, height, feather, start.getRGB(), end.getRGB(), direction);
+    }
 
+    /**
+     * Creates a linear gradient in an instance of an {@link NVGUColour}. The position
+     * parameters will most likely be the same as the coordinates of whatever shape you are
+     * drawing, e.g. a rectangle.
+     * @param x start x coordinate of the gradient
+     * @param y start y coordinate of the gradient
+     * @param width width of the gradient
+     * @param height height of the gradient
+     * @param feather the distance for the gradient to apply between the two colours
+     * @param start start colour of the gradient, packed as ARGB
+     * @param end end colour of the gradient, packed as ARGB
+     * @param direction direction of the gradient
+     * @return instance of the gradient inside an {@link NVGUColour}
+     */
+    public NVGUColour linearGradient(float x, float y, float width, float height, float feather, int start, int end, LinearGradientDirection direction) {
         float startX = x;
         float startY = y;
         float endX = x + width;
@@ -1061,7 +2961,12 @@ public class NVGU {
                 break;
         }
 
-        colour.setPaint(nvgLinearGradient(handle, startX, startY, endX, endY, createAndStoreColour(start), createAndStoreColour(end), colour.getPaint()).feather(feather));
+        if (paintCache != null) {
+            return paintCache.linearGradient(startX, startY, endX, endY, feather, start, end);
+        }
+
+        NVGUColour colour = new NVGUColour(createAndStorePaint());
+        colour.setPaint(Paints.linearGradient(startX, startY, endX, endY, createAndStoreColour(start), createAndStoreColour(end), colour.getPaint()).feather(feather));
 
         return colour;
     }
@@ -1086,6 +2991,26 @@ public class NVGU {
         return radialGradient(x, y, width, height, innerRadius, outerRadius, Math.max(width, height), start, end, alignment);
     }
 
+    /**
+     * Creates a radial gradient in an instance of an {@link NVGUColour}.
+     * The position parameters will most likely be the same as the coordinates of whatever shape you are
+     * drawing, e.g. a rectangle.
+     * The feather will be the greatest of either width or height.
+     * @param x start x coordinate of the gradient
+     * @param y start y coordinate of the gradient
+     * @param width width of the gradient
+     * @param height height of the gradient
+     * @param innerRadius the inner radius of the gradient
+     * @param outerRadius the outer radius of the gradient
+     * @param start start colour of the gradient, packed as ARGB
+     * @param end end colour of the gradient, packed as ARGB
+     * @param alignment alignment of the gradient
+     * @return instance of the gradient inside an {@link NVGUColour}
+     */
+    public NVGUColour radialGradient(float x, float y, float width, float height, float innerRadius, float outerRadius, int start, int end, Alignment alignment) {
+        return radialGradient(x, y, width, height, innerRadius, outerRadius, Math.max(width, height), start, end, alignment);
+    }
+
     /**
      * Creates a radial gradient in an instance of an {@link NVGUColour}.
      * The position parameters will most likely be the same as the coordinates of whatever shape you are
@@ -1103,8 +3028,26 @@ public class NVGU {
      * @return instance of the gradient inside an {@link NVGUColour}
      */
     public NVGUColour radialGradient(float x, float y, float width, float height, float innerRadius, float outerRadius, float feather, Color start, Color end, Alignment alignment) {
-        NVGUColour colour = new NVGUColour(createAndStorePaint());
+        return radialGradient(x, y, width, height, innerRadius, outerRadius, feather, start.getRGB(), end.getRGB(), alignment);
+    }
 
+    /**
+     * Creates a radial gradient in an instance of an {@link NVGUColour}.
+     * The position parameters will most likely be the same as the coordinates of whatever shape you are
+     * drawing, e.g. a rectangle.
+     * @param x start x coordinate of the gradient
+     * @param y start y coordinate of the gradient
+     * @param width width of the gradient
+     * @param height height of the gradient
+     * @param innerRadius the inner radius of the gradient
+     * @param outerRadius the outer radius of the gradient
+     * @param feather the distance for the gradient to apply between the two colours
+     * @param start start colour of the gradient, packed as ARGB
+     * @param end end colour of the gradient, packed as ARGB
+     * @param alignment alignment of the gradient
+     * @return instance of the gradient inside an {@link NVGUColour}
+     */
+    public NVGUColour radialGradient(float x, float y, float width, float height, float innerRadius, float outerRadius, float feather, int start, int end, Alignment alignment) {
         float startX = x;
         float startY = y;
 
@@ -1146,7 +3089,12 @@ public class NVGU {
                 break;
         }
 
-        colour.setPaint(nvgRadialGradient(handle, startX, startY, innerRadius, outerRadius, createAndStoreColour(start), createAndStoreColour(end), colour.getPaint()).feather(feather));
+        if (paintCache != null) {
+            return paintCache.radialGradient(startX, startY, innerRadius, outerRadius, feather, start, end);
+        }
+
+        NVGUColour colour = new NVGUColour(createAndStorePaint());
+        colour.setPaint(Paints.radialGradient(startX, startY, innerRadius, outerRadius, createAndStoreColour(start), createAndStoreColour(end), colour.getPaint()).feather(feather));
 
         return colour;
     }
@@ -1161,13 +3109,36 @@ public class NVGU {
      * @return the texture as a {@link NVGUColour}
      */
     public NVGUColour texture(String identifier, float x, float y, float width, float height) {
-        NVGUColour colour = new NVGUColour(createAndStorePaint());
+        requireNanoVG();
 
-        nvgImageSize(handle, textures.get(identifier), new int[]{ (int) width }, new int[]{ (int) height });
+        TextureAtlas.Region region = atlas == null ? null : atlas.get(identifier);
 
-        nvgImagePattern(handle, x, y, width, height, 0, textures.get(identifier), 1f, colour.getPaint());
+        if (region != null) {
+            return texture(region, x, y, width, height);
+        }
 
-        return colour;
+        return texture(textures.get(identifier), x, y, width, height);
+    }
+
+    /**
+     * Creates a texture at the given coordinates, without looking the texture up by name
+     * @param texture the handle of the texture
+     * @param x x coordinate of the rectangle
+     * @param y y coordinate of the rectangle
+     * @param width width of the texture
+     * @param height height of the texture
+     * @return the texture as a {@link NVGUColour}
+     */
+    public NVGUColour texture(TextureHandle texture, float x, float y, float width, float height) {
+        requireNanoVG();
+
+        checkOpen(texture);
+
+        if (texture.getRegion() != null) {
+            return texture(texture.getRegion(), x, y, width, height);
+        }
+
+        return texture(textures.get(texture.getSlot()), x, y, width, height);
     }
 
     /**
@@ -1178,8 +3149,8 @@ public class NVGU {
      * @param height height of the box
      */
     public NVGU pushScissor(float x, float y, float width, float height) {
-        nvgSave(handle);
-        nvgIntersectScissor(handle, x, y, width, height);
+        renderer.save();
+        renderer.intersectScissor(x, y, width, height);
         return this;
     }
 
@@ -1188,7 +3159,7 @@ public class NVGU {
      * readability
      */
     public NVGU popScissor() {
-        nvgRestore(handle);
+        renderer.restore();
         return this;
     }
 
@@ -1209,15 +3180,69 @@ public class NVGU {
     }
 
     /**
-     * Frees all resources allocated by this object
+     * Frees all colours and paints created since the last call.
+     * This doesn't release any native memory, which is kept for the next frame.
      */
     public NVGU freeResources() {
-        resources.forEach(NativeResource::free);
-        resources.clear();
+        arena.reset();
+
+        if (paintCache != null) {
+            paintCache.flush();
+        }
+
+        return this;
+    }
+
+    /**
+     * Enables caching of colours and gradients across frames, so that constant colours
+     * and gradients with unchanged geometry aren't rebuilt every frame.
+     * Gradients returned while the cache is enabled are owned by the cache, and must not be
+     * kept past the end of the frame they were created in.
+     * @param capacity the maximum number of colours and gradients to keep
+     */
+    public NVGU enablePaintCache(int capacity) {
+        disablePaintCache();
+        this.paintCache = new PaintCache(capacity);
 
         return this;
     }
 
+    /**
+     * Disables the colour and gradient cache, freeing everything it holds.
+     */
+    public NVGU disablePaintCache() {
+        if (paintCache != null) {
+            paintCache.free();
+            paintCache = null;
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the colour and gradient cache, which can be used to read its statistics.
+     * @return the cache, or null if it hasn't been enabled
+     */
+    public PaintCache getPaintCache() {
+        return paintCache;
+    }
+
+    /**
+     * Gets the arena which backs the colours and paints created during a frame.
+     * @return the arena
+     */
+    public NativeArena getArena() {
+        return arena;
+    }
+
+    /**
+     * Gets the renderer which drawing operations are currently sent to.
+     * @return the current renderer
+     */
+    public Renderer getRenderer() {
+        return renderer;
+    }
+
     /**
      * Gets the handle of the NanoVG instance.
      * @return the handle of the NanoVG instance
@@ -1236,32 +3261,562 @@ public class NVGU {
         return this;
     }
 
-    private ByteBuffer getBytes(InputStream stream, int size) {
-        ByteBuffer buffer = BufferUtils.createByteBuffer(size);
-        ReadableByteChannel channel = Channels.newChannel(stream);
+    private void batch(int shape, FloatBuffer geometry, int stride, int[] colours) {
+        int start = geometry.position();
+        int count = geometry.remaining() / stride;
 
-        while (true) {
-            try {
-                int bytes = channel.read(buffer);
+        if (colours.length != 1 && colours.length != count) {
+            throw new IllegalArgumentException("Expected 1 or " + count + " colours, got " + colours.length);
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        if (colours.length == 1) {
+            if (isOpaque(colours[0])) {
+                renderer.beginPath();
+
+                for (int i = 0; i < count; i++) {
+                    batchShape(shape, geometry, start + i * stride);
+                }
+
+                renderer.fill(colours[0]);
+                renderer.closePath();
+            } else {
+                for (int i = 0; i < count; i++) {
+                    batchSeparately(shape, geometry, start + i * stride, colours[0]);
+                }
+            }
+
+            return;
+        }
+
+        // sort by colour, then by index so that shapes of the same colour keep their order
+        if (batchOrder.length < count) {
+            batchOrder = new long[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            batchOrder[i] = ((colours[i] & 0xFFFFFFFFL) << 32) | i;
+        }
+
+        Arrays.sort(batchOrder, 0, count);
+
+        int i = 0;
+
+        while (i < count) {
+            int colour = (int) (batchOrder[i] >>> 32);
+
+            if (!isOpaque(colour)) {
+                batchSeparately(shape, geometry, start + (int) batchOrder[i] * stride, colour);
+                i++;
+                continue;
+            }
+
+            renderer.beginPath();
+
+            while (i < count && (int) (batchOrder[i] >>> 32) == colour) {
+                batchShape(shape, geometry, start + (int) batchOrder[i] * stride);
+                i++;
+            }
+
+            renderer.fill(colour);
+            renderer.closePath();
+        }
+    }
+
+    // translucent shapes get a path each, since overlapping shapes in one path would only be blended once
+    private void batchSeparately(int shape, FloatBuffer geometry, int offset, int colour) {
+        renderer.beginPath();
+        batchShape(shape, geometry, offset);
+        renderer.fill(colour);
+        renderer.closePath();
+    }
+
+    private static boolean isOpaque(int colour) {
+        return (colour >>> 24) == 0xFF;
+    }
+
+    private void batchShape(int shape, FloatBuffer geometry, int offset) {
+        switch (shape) {
+            case BATCH_RECTANGLES: {
+                float x = geometry.get(offset);
+                float y = geometry.get(offset + 1);
+                float width = geometry.get(offset + 2);
+                float height = geometry.get(offset + 3);
+
+                if (!culled(x, y, width, height)) {
+                    renderer.rect(x, y, width, height);
+                }
+
+                break;
+            }
+
+            case BATCH_ROUNDED_RECTANGLES: {
+                float x = geometry.get(offset);
+                float y = geometry.get(offset + 1);
+                float width = geometry.get(offset + 2);
+                float height = geometry.get(offset + 3);
+                float radius = geometry.get(offset + 4);
+
+                if (!culled(x, y, width, height)) {
+                    renderer.roundedRect(x, y, width, height, radius, radius, radius, radius);
+                }
+
+                break;
+            }
+
+            case BATCH_CIRCLES: {
+                float x = geometry.get(offset);
+                float y = geometry.get(offset + 1);
+                float radius = geometry.get(offset + 2);
+
+                if (!culled(x - radius, y - radius, radius * 2, radius * 2)) {
+                    renderer.circle(x, y, radius);
+                }
+
+                break;
+            }
+        }
+    }
+
+    private void fill(Color colour) {
+        if (colour instanceof NVGUColour && ((NVGUColour) colour).getPaint() != null) {
+            renderer.fill(((NVGUColour) colour).getPaint());
+        } else {
+            renderer.fill(colour.getRGB());
+        }
+    }
+
+    private void fill(int colour) {
+        renderer.fill(colour);
+    }
+
+    private void stroke(float thickness, Color colour) {
+        if (colour instanceof NVGUColour && ((NVGUColour) colour).getPaint() != null) {
+            renderer.stroke(thickness, ((NVGUColour) colour).getPaint());
+        } else {
+            renderer.stroke(thickness, colour.getRGB());
+        }
+    }
+
+    private void stroke(float thickness, int colour) {
+        renderer.stroke(thickness, colour);
+    }
+
+    // how far a shape should be shrunk on each side for its border to sit where requested
+    private static float borderInset(float thickness, Border border) {
+        switch (border) {
+            case INSIDE:
+                return thickness / 2f;
+
+            case OUTSIDE:
+                return -thickness / 2f;
+
+            default:
+                return 0;
+        }
+    }
+
+    // whether a primitive within the given bounds can be skipped
+    private boolean culled(float x, float y, float width, float height) {
+        return culling && isDrawingFrame() && !cullingRenderer.isVisible(x, y, width, height);
+    }
+
+    private boolean culled(float[][] points, float outset) {
+        if (!culling || !isDrawingFrame() || points.length == 0) {
+            return false;
+        }
+
+        float left = points[0][0];
+        float top = points[0][1];
+        float right = left;
+        float bottom = top;
+
+        for (float[] point : points) {
+            left = Math.min(left, point[0]);
+            top = Math.min(top, point[1]);
+            right = Math.max(right, point[0]);
+            bottom = Math.max(bottom, point[1]);
+        }
+
+        return !cullingRenderer.isVisible(left - outset, top - outset, right - left + outset * 2, bottom - top + outset * 2);
+    }
+
+    private boolean culledVertically(float top, float bottom) {
+        return culling && isDrawingFrame() && !cullingRenderer.isVisibleVertically(top, bottom);
+    }
+
+    private void rightAngledTrianglePath(float x, float y, float width, float height, RightAngledTriangleCorner corner) {
+        switch (corner) {
+            case TOP_LEFT: {
+                renderer.moveTo(x, y);
+                renderer.lineTo(x + width, y);
+                renderer.lineTo(x, y + height);
+                renderer.lineTo(x, y);
+                break;
+            }
+
+            case TOP_RIGHT: {
+                renderer.moveTo(x + width, y);
+                renderer.lineTo(x, y);
+                renderer.lineTo(x + width, y + height);
+                renderer.lineTo(x + width, y);
+                break;
+            }
+
+            case BOTTOM_LEFT: {
+                renderer.moveTo(x, y + height);
+                renderer.lineTo(x + width, y + height);
+                renderer.lineTo(x, y);
+                renderer.lineTo(x, y + height);
+                break;
+            }
+
+            case BOTTOM_RIGHT: {
+                renderer.moveTo(x + width, y + height);
+                renderer.lineTo(x, y + height);
+                renderer.lineTo(x + width, y);
+                renderer.lineTo(x + width, y + height);
+                break;
+            }
+        }
+    }
+
+    private void polygonPath(float[][] points) {
+        renderer.moveTo(points[0][0], points[0][1]);
 
-                if (bytes == -1) {
-                    break;
+        for (int i = 1; i < points.length; i++) {
+            renderer.lineTo(points[i][0], points[i][1]);
+        }
+    }
+
+    private NVGUColour texture(int image, float x, float y, float width, float height) {
+        NVGUColour colour = new NVGUColour(createAndStorePaint());
+        Paints.imagePattern(x, y, width, height, 0, image, 1f, colour.getPaint());
+
+        return colour;
+    }
+
+    private NVGUColour texture(TextureAtlas.Region region, float x, float y, float width, float height) {
+        NVGUColour colour = new NVGUColour(createAndStorePaint());
+
+        // textures added during this frame haven't been uploaded yet
+        atlas.flush();
+
+        // the pattern spans the whole page, scaled and offset so that the region lands on the rectangle
+        float scaleX = width / region.getWidth();
+        float scaleY = height / region.getHeight();
+
+        Paints.imagePattern(x - region.getX() * scaleX, y - region.getY() * scaleY, atlas.getPageSize() * scaleX, atlas.getPageSize() * scaleY, 0, atlas.getImage(region.getPage()), 1f, colour.getPaint());
+
+        return colour;
+    }
+
+    // renders the layers drawn directly in the last frame into their framebuffers, each in a frame of its own
+    private void renderLayers() {
+        if (pendingLayers.isEmpty()) {
+            return;
+        }
+
+        int target = glGetInteger(GL_FRAMEBUFFER_BINDING);
+        glGetIntegerv(GL_VIEWPORT, layerViewport);
+        glGetFloatv(GL_COLOR_CLEAR_VALUE, layerClearColour);
+        glClearColor(0, 0, 0, 0);
+
+        String font = currentFont;
+        int fontSize = currentFontSize;
+        Alignment alignment = this.alignment;
+
+        // layers are rendered into framebuffers of their own before the frame begins, so they are kept out of the trace
+        Renderer previous = renderer;
+
+        if (renderer == tracer) {
+            renderer = cullingRenderer;
+        }
+
+        // layers first drawn while rendering these are rendered in the next frame
+        List<Map.Entry<LayerCache.Layer, Runnable>> rendering = new ArrayList<>(pendingLayers.entrySet());
+        pendingLayers.clear();
+
+        try {
+            for (Map.Entry<LayerCache.Layer, Runnable> entry : rendering) {
+                LayerCache.Layer layer = entry.getKey();
+
+                glBindFramebuffer(GL_FRAMEBUFFER, layers.prepare(layer).fbo());
+                glViewport(0, 0, layer.getWidth(), layer.getHeight());
+                glClear(GL_COLOR_BUFFER_BIT | GL_STENCIL_BUFFER_BIT);
+
+                nvgBeginFrame(handle, layer.getWidth(), layer.getHeight(), 1);
+                nanoVGRenderer.reset();
+                cullingRenderer.reset(layer.getWidth(), layer.getHeight());
+
+                try {
+                    entry.getValue().run();
+                } catch (Throwable throwable) {
+                    // the layer stays invalid, so it is rendered again the next time it is drawn
+                    abandonFrame();
+                    throw throwable;
                 }
 
+                freeResources();
+                finishFrame(false);
+
+                layers.rendered(layer);
+            }
+        } finally {
+            renderer = previous;
+            this.currentFont = font;
+            this.currentFontSize = fontSize;
+            this.alignment = alignment;
+
+            glBindFramebuffer(GL_FRAMEBUFFER, target);
+            glViewport(layerViewport[0], layerViewport[1], layerViewport[2], layerViewport[3]);
+            glClearColor(layerClearColour[0], layerClearColour[1], layerClearColour[2], layerClearColour[3]);
+        }
+    }
+
+    // whether operations reach the culling renderer, rather than a display list being recorded
+    private boolean isDrawingFrame() {
+        return renderer == cullingRenderer || (tracer != null && renderer == tracer);
+    }
+
+    // clears the box of the retained framebuffer and renders into it, leaving the target bound again afterwards
+    private void redrawRetained(int width, int height, int left, int top, int right, int bottom, int target, Runnable render) {
+        glBindFramebuffer(GL_FRAMEBUFFER, retainedFramebuffer.fbo());
+
+        glGetIntegerv(GL_VIEWPORT, viewport);
+        glViewport(0, 0, width, height);
+
+        glGetFloatv(GL_COLOR_CLEAR_VALUE, clearColour);
+        glClearColor(0, 0, 0, 0);
+        glEnable(GL_SCISSOR_TEST);
+
+        // GL scissors start from the bottom left
+        glScissor(left, height - bottom, right - left, bottom - top);
+        glClear(GL_COLOR_BUFFER_BIT | GL_STENCIL_BUFFER_BIT);
+
+        glDisable(GL_SCISSOR_TEST);
+        glClearColor(clearColour[0], clearColour[1], clearColour[2], clearColour[3]);
+
+        boolean wasCulling = culling;
+        culling = true;
+
+        beginFrame(width, height);
+
+        try {
+            renderer.save();
+            renderer.intersectScissor(left, top, right - left, bottom - top);
+
+            render.run();
+
+            renderer.restore();
+        } catch (Throwable throwable) {
+            cancelFrame();
+
+            glBindFramebuffer(GL_FRAMEBUFFER, target);
+            glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+
+            // the whole box has been cleared, so it is drawn again by the next partial frame
+            damage.clear();
+            damage.add(left, top, right - left, bottom - top);
+
+            throw throwable;
+        } finally {
+            culling = wasCulling;
+        }
+
+        freeResources();
+        finishFrame(true);
+
+        glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+    }
+
+    private void traceFrame(int width, int height) {
+        if (tracer != null) {
+            tracer.beginFrame(width, height);
+        }
+    }
+
+    // drops everything issued in the current frame without drawing it
+    private void abandonFrame() {
+        mergingRenderer.discard();
+
+        if (software == null) {
+            nvgCancelFrame(handle);
+        }
+
+        freeResources();
+    }
+
+    // ends a frame without exporting it, marking its end in the trace if it is a frame which was begun with beginFrame
+    private void finishFrame(boolean traced) {
+        mergingRenderer.flush();
+
+        if (software == null) {
+            nvgEndFrame(handle);
+        }
+
+        if (traced && tracer != null) {
+            tracer.endFrame();
+        }
+    }
+
+    // recording instances have no NanoVG of their own, so only what they allocated themselves is freed
+    private void destroyRecorder() {
+        recording.free();
+        recording = null;
+        renderer = null;
+
+        arena.free();
+        disablePaintCache();
+        loader.shutdown();
+    }
+
+    private void renderOffscreen(Runnable render) {
+        if (offscreenTarget == null) {
+            throw new IllegalStateException("Not created offscreen");
+        }
+
+        offscreenTarget.bind();
+        offscreenTarget.clear(0);
+
+        frame(offscreenTarget.getWidth(), offscreenTarget.getHeight(), render);
+    }
+
+    private void requireNanoVG() {
+        if (software != null) {
+            throw new IllegalStateException("Not available when drawing with a software renderer");
+        }
+
+        if (parent != null) {
+            throw new IllegalStateException("Not available while recording in parallel");
+        }
+    }
+
+    private static void checkOpen(ResourceHandle resource) {
+        if (resource.isClosed()) {
+            throw new IllegalStateException(resource.getIdentifier() + " has been unloaded");
+        }
+    }
+
+    private boolean hasFont(String identifier) {
+        if (fonts.containsKey(identifier)) {
+            return true;
+        }
+
+        // a font which was unloaded is still in fontstash
+        int font = nvgFindFont(handle, identifier);
+
+        if (font != -1) {
+            fonts.put(identifier, font);
+            return true;
+        }
+
+        return false;
+    }
+
+    private void createFont(String identifier, ByteBuffer buffer) {
+        addFont(identifier, nvgCreateFontMem(handle, identifier, buffer, false));
+        bufferRegistry.add(buffer);
+    }
+
+    private void addFont(String identifier, int font) {
+        fonts.put(identifier, font);
+
+        // text measured with the identifier before the font existed measured as empty
+        textMeasureCache.clear();
+        textLayoutCache.clear();
+    }
+
+    // decodes an encoded image and frees it
+    private static DecodedImage decode(ByteBuffer encoded) {
+        try {
+            return DecodedImage.decode(encoded);
+        } finally {
+            memFree(encoded);
+        }
+    }
+
+    private boolean hasTexture(String identifier) {
+        return textures.contains(identifier) || (atlas != null && atlas.contains(identifier));
+    }
+
+    // a texture which is created or acquired again before its pending unload is wanted after all, so it is kept
+    private void cancelUnload(String identifier) {
+        pendingUnloads.remove(identifier);
+    }
+
+    private void deferUnload(String identifier) {
+        textureHandles.remove(identifier);
+        pendingUnloads.add(identifier);
+    }
+
+    private void unloadPending() {
+        if (pendingUnloads.isEmpty()) {
+            return;
+        }
+
+        // copied, since unloading removes the identifier from the set
+        for (String identifier : pendingUnloads.toArray(new String[0])) {
+            unloadTexture(identifier);
+        }
+    }
+
+    private boolean usesAtlas(int flags) {
+        return atlas != null && atlas.getFlags() == flags;
+    }
+
+    // adds the image to the atlas if it fits, or gives it an image of its own, then frees its pixels
+    private void createTexture(String identifier, DecodedImage image, int flags, Callable<DecodedImage> source) {
+        try {
+            if (!usesAtlas(flags) || !atlas.add(identifier, image)) {
+                textures.put(identifier, nvgCreateImageRGBA(handle, image.getWidth(), image.getHeight(), flags, image.getPixels()), flags, source);
+            }
+        } finally {
+            image.free();
+        }
+    }
+
+    // reads a stream into a buffer which has to be freed with memFree
+    private static ByteBuffer getBytes(InputStream stream, int size) {
+        ReadableByteChannel channel = Channels.newChannel(stream);
+        ByteBuffer buffer = null;
+
+        try {
+            // one more than is available, so a stream which reports its full length is read without growing
+            buffer = memAlloc(Math.max(size, stream.available() + 1));
+
+            while (channel.read(buffer) != -1) {
                 if (buffer.remaining() == 0) {
-                    ByteBuffer newBuffer = BufferUtils.createByteBuffer(buffer.capacity() * 3 / 2);
-                    buffer.flip();
-                    newBuffer.put(buffer);
-                    buffer = newBuffer;
+                    buffer = memRealloc(buffer, buffer.capacity() * 2);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+
+            buffer.flip();
+
+            return buffer;
+        } catch (IOException e) {
+            memFree(buffer);
+            throw new UncheckedIOException(e);
         }
+    }
 
-        buffer.flip();
+    private static MappedByteBuffer map(Path path) {
+        // the mapping stays valid after its channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        return MemoryUtil.memSlice(buffer);
+    // reads and closes a stream handed to a worker thread, which nothing else reads from
+    private static ByteBuffer read(InputStream stream, int size) throws IOException {
+        try (InputStream closing = stream) {
+            return getBytes(closing, size);
+        }
     }
 
 }
\ No newline at end of file
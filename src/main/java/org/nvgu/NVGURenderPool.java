@@ -0,0 +1,491 @@
+package org.nvgu;
+
+import org.nvgu.asset.DecodedImage;
+import org.nvgu.render.OffscreenContext;
+import org.nvgu.render.OffscreenTarget;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Renders images on several threads at once, each with an offscreen context and an instance of {@link NVGU} of its own,
+ * so that a server generating images can use every core. Jobs are queued and taken by whichever thread is free,
+ * and their futures are completed with the pixels.
+ * Fonts and textures added before starting are loaded once and shared by every thread: the contexts share
+ * the GL textures, and every instance creates its fonts from the same data. They can't be changed once started.
+ * The queue has a fixed capacity, and submitting to a full queue waits until there is room,
+ * so that jobs can't be queued faster than they are rendered.
+ */
+public class NVGURenderPool {
+
+    private static final Job STOP = new Job(0, 0, null, null);
+
+    private final int contexts;
+    private final BlockingQueue<Job> queue;
+
+    private final Map<String, Path> fontPaths = new LinkedHashMap<>();
+    private final Map<String, Path> texturePaths = new LinkedHashMap<>();
+    private final Map<String, Integer> textureFlags = new LinkedHashMap<>();
+
+    // shared by every thread once started, and freed once they have all stopped
+    private final Map<String, ByteBuffer> fonts = new LinkedHashMap<>();
+    private final Map<String, SharedTexture> textures = new LinkedHashMap<>();
+    private OffscreenContext root = null;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean started = false;
+    private volatile boolean stopped = false;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakDepth = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * @param contexts the number of threads, each with a context of its own, usually the number of cores
+     * @param capacity how many jobs can wait in the queue
+     */
+    public NVGURenderPool(int contexts, int capacity) {
+        if (contexts < 1) {
+            throw new IllegalArgumentException("There must be at least one context");
+        }
+
+        this.contexts = contexts;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds a font which every thread can draw with. Must be called before starting.
+     * @param identifier what identifier will be used to draw the font
+     * @param font the path of the font
+     */
+    public NVGURenderPool addFont(String identifier, Path font) {
+        requireNotStarted();
+        fontPaths.put(identifier, font);
+
+        return this;
+    }
+
+    /**
+     * Adds a texture which every thread can draw. Must be called before starting.
+     * @param identifier what identifier will be used to draw the texture
+     * @param texture the path of the texture
+     * @param flags the flags the texture is drawn with, as for {@link NVGU#createTexture(String, Path, int)}
+     */
+    public NVGURenderPool addTexture(String identifier, Path texture, int flags) {
+        requireNotStarted();
+        texturePaths.put(identifier, texture);
+        textureFlags.put(identifier, flags);
+
+        return this;
+    }
+
+    /**
+     * Loads the fonts and textures, and starts the threads, waiting until they have all created their context.
+     * The textures are uploaded in a context made current on the calling thread and released afterwards,
+     * so this should be called on a thread without a context of its own.
+     */
+    public NVGURenderPool start() {
+        requireNotStarted();
+        started = true;
+
+        root = new OffscreenContext();
+
+        try {
+            fontPaths.forEach((identifier, path) -> fonts.put(identifier, map(path)));
+            texturePaths.forEach((identifier, path) -> textures.put(identifier, upload(path, textureFlags.get(identifier))));
+
+            // the other contexts may only use the textures once they have been uploaded
+            glFinish();
+        } finally {
+            root.release();
+        }
+
+        List<CompletableFuture<Void>> ready = new ArrayList<>();
+
+        for (int i = 0; i < contexts; i++) {
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            Thread thread = new Thread(() -> work(created), "NVGU Renderer " + (threads.size() + 1));
+
+            thread.setDaemon(true);
+            thread.start();
+
+            threads.add(thread);
+            ready.add(created);
+        }
+
+        try {
+            CompletableFuture.allOf(ready.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException exception) {
+            shutdown();
+            throw new IllegalStateException("Failed to create the contexts of the render pool", exception.getCause());
+        }
+
+        return this;
+    }
+
+    /**
+     * Queues a job, waiting until there is room in the queue if it is full
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param render draws the image, called within a frame on one of the threads with its instance
+     * @return a future completed with the ARGB pixels of the image, with premultiplied alpha and the top row first
+     */
+    public CompletableFuture<int[]> submit(int width, int height, Consumer<NVGU> render) {
+        Job job = new Job(width, height, render, new CompletableFuture<>());
+
+        requireRunning();
+
+        if (!queue.offer(job)) {
+            blocked.incrementAndGet();
+
+            try {
+                queue.put(job);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                job.future.completeExceptionally(exception);
+                return job.future;
+            }
+        }
+
+        if (abandoned(job)) {
+            return job.future;
+        }
+
+        queued();
+
+        return job.future;
+    }
+
+    /**
+     * Queues a job if there is room in the queue
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param render draws the image, called within a frame on one of the threads with its instance
+     * @return a future completed with the ARGB pixels of the image, with premultiplied alpha and the top row first,
+     * or completed with a {@link RejectedExecutionException} if the queue was full
+     */
+    public CompletableFuture<int[]> trySubmit(int width, int height, Consumer<NVGU> render) {
+        Job job = new Job(width, height, render, new CompletableFuture<>());
+
+        requireRunning();
+
+        if (!queue.offer(job)) {
+            rejected.incrementAndGet();
+            job.future.completeExceptionally(new RejectedExecutionException("The render queue is full"));
+
+            return job.future;
+        }
+
+        if (abandoned(job)) {
+            return job.future;
+        }
+
+        queued();
+
+        return job.future;
+    }
+
+    /**
+     * Stops accepting jobs, waits for those already queued to be rendered, and frees every context, font and texture
+     */
+    public void shutdown() {
+        if (stopped) {
+            return;
+        }
+
+        stopped = true;
+
+        try {
+            for (Thread thread : threads) {
+                if (thread.isAlive()) {
+                    queue.put(STOP);
+                }
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // jobs which were still waiting for room when the threads were told to stop
+        Job job;
+
+        while ((job = queue.poll()) != null) {
+            if (job != STOP) {
+                reject(job);
+            }
+        }
+
+        if (root != null) {
+            root.makeCurrent();
+
+            for (SharedTexture texture : textures.values()) {
+                glDeleteTextures(texture.texture);
+            }
+
+            root.free();
+            root = null;
+        }
+
+        textures.clear();
+        fonts.clear();
+    }
+
+    /**
+     * @return the number of jobs waiting in the queue
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the most jobs which have waited in the queue at once
+     */
+    public int getPeakQueueDepth() {
+        return peakDepth.get();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /**
+     * @return the number of jobs being rendered right now
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getContexts() {
+        return contexts;
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of jobs not queued by {@link NVGURenderPool#trySubmit(int, int, Consumer)} since the queue was full
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of times {@link NVGURenderPool#submit(int, int, Consumer)} had to wait for room in the queue
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    public void resetStatistics() {
+        peakDepth.set(queue.size());
+        submitted.set(0);
+        completed.set(0);
+        failed.set(0);
+        rejected.set(0);
+        blocked.set(0);
+    }
+
+    private void work(CompletableFuture<Void> created) {
+        OffscreenContext context;
+        NVGU nvgu;
+
+        try {
+            context = new OffscreenContext(root);
+            nvgu = new NVGU().create();
+
+            fonts.forEach(nvgu::createSharedFont);
+            textures.forEach((identifier, texture) -> nvgu.createSharedTexture(identifier, texture.texture, texture.width, texture.height, texture.flags));
+        } catch (Throwable throwable) {
+            created.completeExceptionally(throwable);
+            return;
+        }
+
+        created.complete(null);
+
+        OffscreenTarget target = null;
+
+        try {
+            while (true) {
+                Job job = queue.take();
+
+                if (job == STOP) {
+                    break;
+                }
+
+                active.incrementAndGet();
+
+                try {
+                    // the framebuffer is kept for the next job, unless it is a different size
+                    if (target == null || target.getWidth() != job.width || target.getHeight() != job.height) {
+                        if (target != null) {
+                            target.free();
+                        }
+
+                        target = new OffscreenTarget(job.width, job.height);
+                    }
+
+                    target.bind();
+                    target.clear(0);
+
+                    // a render which throws cancels its frame, so none of what it drew is left for the next job
+                    nvgu.frame(job.width, job.height, () -> job.render.accept(nvgu));
+
+                    job.future.complete(target.read((int[]) null));
+                    completed.incrementAndGet();
+                } catch (Throwable throwable) {
+                    job.future.completeExceptionally(throwable);
+                    failed.incrementAndGet();
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (target != null) {
+                target.free();
+            }
+
+            nvgu.destroy();
+            context.free();
+        }
+    }
+
+    // a job queued while shutting down may have missed both the threads and the jobs cleared afterwards, so nothing would complete it
+    private boolean abandoned(Job job) {
+        if (stopped && queue.remove(job)) {
+            reject(job);
+            return true;
+        }
+
+        return false;
+    }
+
+    private void reject(Job job) {
+        job.future.completeExceptionally(new RejectedExecutionException("The render pool was shut down"));
+    }
+
+    private void queued() {
+        submitted.incrementAndGet();
+        peakDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    private void requireNotStarted() {
+        if (started) {
+            throw new IllegalStateException("The render pool has already been started");
+        }
+    }
+
+    private void requireRunning() {
+        if (!started || stopped) {
+            throw new RejectedExecutionException("The render pool isn't running");
+        }
+    }
+
+    // uploads an image into a GL texture of the root context, set up the way NanoVG sets up its own
+    private static SharedTexture upload(Path path, int flags) {
+        DecodedImage image = DecodedImage.decode(map(path));
+
+        try {
+            int texture = glGenTextures();
+            glBindTexture(GL_TEXTURE_2D, texture);
+
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, image.getWidth(), image.getHeight(), 0, GL_RGBA, GL_UNSIGNED_BYTE, image.getPixels());
+
+            boolean mipmaps = (flags & NVG_IMAGE_GENERATE_MIPMAPS) != 0;
+            boolean nearest = (flags & NVG_IMAGE_NEAREST) != 0;
+
+            if (mipmaps) {
+                glGenerateMipmap(GL_TEXTURE_2D);
+            }
+
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, mipmaps ? (nearest ? GL_NEAREST_MIPMAP_NEAREST : GL_LINEAR_MIPMAP_LINEAR) : (nearest ? GL_NEAREST : GL_LINEAR));
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, nearest ? GL_NEAREST : GL_LINEAR);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, (flags & NVG_IMAGE_REPEATX) != 0 ? GL_REPEAT : GL_CLAMP_TO_EDGE);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, (flags & NVG_IMAGE_REPEATY) != 0 ? GL_REPEAT : GL_CLAMP_TO_EDGE);
+
+            glBindTexture(GL_TEXTURE_2D, 0);
+
+            return new SharedTexture(texture, image.getWidth(), image.getHeight(), flags);
+        } finally {
+            image.free();
+        }
+    }
+
+    private static ByteBuffer map(Path path) {
+        // the mapping stays valid after its channel is closed, and is released once unreachable
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Job {
+
+        private final int width;
+        private final int height;
+        private final Consumer<NVGU> render;
+        private final CompletableFuture<int[]> future;
+
+        private Job(int width, int height, Consumer<NVGU> render, CompletableFuture<int[]> future) {
+            this.width = width;
+            this.height = height;
+            this.render = render;
+            this.future = future;
+        }
+
+    }
+
+    private static final class SharedTexture {
+
+        private final int texture;
+        private final int width;
+        private final int height;
+        private final int flags;
+
+        private SharedTexture(int texture, int width, int height, int flags) {
+            this.texture = texture;
+            this.width = width;
+            this.height = height;
+            this.flags = flags;
+        }
+
+    }
+
+}
@@ -0,0 +1,206 @@
+package org.nvgu.asset;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads assets in two steps: the slow part, such as reading and decoding, runs on a pool of worker
+ * threads, and the upload, which needs the NanoVG context, is queued until the thread owning the
+ * context calls {@link AssetLoader#processUploads()}.
+ * Loading many assets therefore takes about as long as the slowest one, rather than all of them combined.
+ */
+public class AssetLoader {
+
+    private final Queue<Upload<?, ?>> uploads = new ConcurrentLinkedQueue<>();
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    private Executor executor = null;
+    private ExecutorService ownedExecutor = null;
+    private volatile boolean shutDown = false;
+
+    /**
+     * Loads an asset whose result holds nothing which needs to be freed
+     * @param load what runs on a worker thread, e.g. reading and decoding
+     * @param upload what runs on the thread owning the NanoVG context with the result of the load
+     * @return a future which is completed with the result of the upload, on the thread owning the NanoVG context
+     */
+    public <T, R> CompletableFuture<R> load(Callable<T> load, Function<T, R> upload) {
+        return load(load, upload, result -> { });
+    }
+
+    /**
+     * Loads an asset
+     * @param load what runs on a worker thread, e.g. reading and decoding
+     * @param upload what runs on the thread owning the NanoVG context with the result of the load
+     * @param discard frees the result of the load if it is never uploaded, because the loader was shut down
+     * @return a future which is completed with the result of the upload, on the thread owning the NanoVG context,
+     * or completed exceptionally if the loader is shut down first, or already was, in which case nothing is loaded
+     */
+    public <T, R> CompletableFuture<R> load(Callable<T> load, Function<T, R> upload, Consumer<T> discard) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+
+        // nothing would upload the result, and a pool created now would never be shut down
+        if (shutDown) {
+            future.completeExceptionally(cancellation());
+            return future;
+        }
+
+        pending.add(future);
+        future.whenComplete((result, throwable) -> pending.remove(future));
+
+        executor().execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+
+            T result;
+
+            try {
+                result = load.call();
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            Upload<T, R> entry = new Upload<>(result, upload, discard, future);
+
+            // the loader may have been shut down while loading, in which case nothing will upload the result
+            if (future.isDone()) {
+                discard.accept(result);
+                return;
+            }
+
+            uploads.add(entry);
+
+            if (future.isDone() && uploads.remove(entry)) {
+                discard.accept(result);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Runs every upload whose load has finished. Must be called on the thread owning the NanoVG context.
+     * @return the number of uploads which were run
+     */
+    public int processUploads() {
+        int processed = 0;
+        Upload<?, ?> upload;
+
+        while ((upload = uploads.poll()) != null) {
+            upload.run();
+            processed++;
+        }
+
+        return processed;
+    }
+
+    /**
+     * @return the number of assets which haven't finished uploading
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Sets the executor which loads run on. By default, a pool with a thread per processor is created when first needed.
+     * Loads already started keep running, and are uploaded as usual.
+     * @param executor the executor to use
+     */
+    public void setExecutor(Executor executor) {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+            ownedExecutor = null;
+        }
+
+        this.executor = executor;
+    }
+
+    /**
+     * Stops the worker threads, if they were created by this loader, and abandons every load which hasn't been uploaded yet.
+     * Their futures are completed exceptionally, and the results of those which finished loading are discarded.
+     * Loads started afterwards fail straight away.
+     */
+    public void shutdown() {
+        shutDown = true;
+
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+            ownedExecutor = null;
+        }
+
+        executor = null;
+
+        CancellationException cancellation = cancellation();
+
+        for (CompletableFuture<?> future : pending) {
+            future.completeExceptionally(cancellation);
+        }
+
+        Upload<?, ?> upload;
+
+        while ((upload = uploads.poll()) != null) {
+            upload.discard();
+        }
+    }
+
+    private static CancellationException cancellation() {
+        return new CancellationException("The asset loader was shut down");
+    }
+
+    private Executor executor() {
+        if (executor == null) {
+            AtomicInteger threads = new AtomicInteger();
+
+            ownedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "NVGU Loader " + threads.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+            executor = ownedExecutor;
+        }
+
+        return executor;
+    }
+
+    private static final class Upload<T, R> {
+
+        private final T result;
+        private final Function<T, R> upload;
+        private final Consumer<T> discard;
+        private final CompletableFuture<R> future;
+
+        private Upload(T result, Function<T, R> upload, Consumer<T> discard, CompletableFuture<R> future) {
+            this.result = result;
+            this.upload = upload;
+            this.discard = discard;
+            this.future = future;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                discard.accept(result);
+                return;
+            }
+
+            try {
+                future.complete(upload.apply(result));
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        }
+
+        private void discard() {
+            discard.accept(result);
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.nvgu.asset;
+
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.stb.STBImage.*;
+
+/**
+ * An image decoded to RGBA pixels by stb_image, ready to be uploaded.
+ * Decoding doesn't touch NanoVG, so it can happen on any thread.
+ */
+public final class DecodedImage implements NativeResource {
+
+    private final ByteBuffer pixels;
+    private final int width;
+    private final int height;
+
+    private DecodedImage(ByteBuffer pixels, int width, int height) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Decodes an encoded image, such as a PNG or JPEG
+     * @param encoded the encoded image
+     * @return the decoded image
+     * @throws IllegalStateException if the image couldn't be decoded
+     */
+    public static DecodedImage decode(ByteBuffer encoded) {
+        int[] width = new int[1];
+        int[] height = new int[1];
+        int[] components = new int[1];
+
+        ByteBuffer pixels = stbi_load_from_memory(encoded, width, height, components, 4);
+
+        if (pixels == null) {
+            throw new IllegalStateException("Failed to decode image: " + stbi_failure_reason());
+        }
+
+        return new DecodedImage(pixels, width[0], height[0]);
+    }
+
+    public ByteBuffer getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the size of the pixels in bytes
+     */
+    public int getSize() {
+        return width * height * 4;
+    }
+
+    @Override
+    public void free() {
+        stbi_image_free(pixels);
+    }
+
+}
@@ -0,0 +1,34 @@
+package org.nvgu.asset;
+
+/**
+ * A counted reference to a font, which can be drawn without looking the font up by name
+ * @see org.nvgu.NVGU#acquireFont(String)
+ */
+public final class FontHandle extends ResourceHandle {
+
+    private final int id;
+
+    /**
+     * @param identifier the identifier of the font
+     * @param id the id of the font in NanoVG
+     * @param unload unloads the font once every reference has been closed
+     */
+    public FontHandle(String identifier, int id, Runnable unload) {
+        super(identifier, unload);
+        this.id = id;
+    }
+
+    @Override
+    public FontHandle retain() {
+        super.retain();
+        return this;
+    }
+
+    /**
+     * @return the id of the font in NanoVG
+     */
+    public int getId() {
+        return id;
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.nvgu.asset;
+
+/**
+ * A counted reference to a font or texture. Every holder of the handle closes it once it is done with the resource,
+ * and the resource is unloaded when the last holder has closed it.
+ */
+public abstract class ResourceHandle implements AutoCloseable {
+
+    private final String identifier;
+    private final Runnable unload;
+
+    private int references = 1;
+
+    protected ResourceHandle(String identifier, Runnable unload) {
+        this.identifier = identifier;
+        this.unload = unload;
+    }
+
+    /**
+     * Adds a reference to the resource, which has to be closed separately
+     */
+    public ResourceHandle retain() {
+        if (references == 0) {
+            throw new IllegalStateException(identifier + " has already been unloaded");
+        }
+
+        references++;
+
+        return this;
+    }
+
+    /**
+     * Removes a reference to the resource, unloading it if it was the last one
+     */
+    @Override
+    public void close() {
+        if (references > 0 && --references == 0) {
+            unload.run();
+        }
+    }
+
+    /**
+     * Marks the handle as closed without unloading anything, once the resource has been unloaded directly
+     */
+    public void invalidate() {
+        references = 0;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public int getReferences() {
+        return references;
+    }
+
+    /**
+     * @return whether the resource has been unloaded
+     */
+    public boolean isClosed() {
+        return references == 0;
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.nvgu.asset;
+
+import java.util.Arrays;
+
+/**
+ * Packs rectangles into a fixed area using the bottom-left skyline heuristic, the same one
+ * fontstash uses for its glyph atlas. The skyline is the outline of the tops of everything packed
+ * so far, and each rectangle is placed where it ends lowest on it.
+ */
+public final class SkylinePacker {
+
+    private final int width;
+    private final int height;
+
+    // segment i of the skyline starts at nodeX[i] and is nodeWidth[i] wide, at a height of nodeY[i]
+    private int[] nodeX = new int[16];
+    private int[] nodeY = new int[16];
+    private int[] nodeWidth = new int[16];
+    private int count;
+
+    private long area;
+
+    /**
+     * @param width the width of the area to pack into
+     * @param height the height of the area to pack into
+     */
+    public SkylinePacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        reset();
+    }
+
+    /**
+     * Finds a place for a rectangle
+     * @param rectangleWidth the width of the rectangle
+     * @param rectangleHeight the height of the rectangle
+     * @return the position of the rectangle, packed as {@code (x << 32) | y}, or -1 if it doesn't fit
+     */
+    public long pack(int rectangleWidth, int rectangleHeight) {
+        int bestIndex = -1;
+        int bestX = -1;
+        int bestY = -1;
+        int bestWidth = width;
+        int bestBottom = height;
+
+        for (int i = 0; i < count; i++) {
+            int y = fits(i, rectangleWidth, rectangleHeight);
+
+            if (y != -1 && (y + rectangleHeight < bestBottom || (y + rectangleHeight == bestBottom && nodeWidth[i] < bestWidth))) {
+                bestIndex = i;
+                bestX = nodeX[i];
+                bestY = y;
+                bestWidth = nodeWidth[i];
+                bestBottom = y + rectangleHeight;
+            }
+        }
+
+        if (bestIndex == -1) {
+            return -1;
+        }
+
+        addLevel(bestIndex, bestX, bestY, rectangleWidth, rectangleHeight);
+        area += (long) rectangleWidth * rectangleHeight;
+
+        return ((long) bestX << 32) | bestY;
+    }
+
+    /**
+     * Forgets every packed rectangle
+     */
+    public void reset() {
+        count = 1;
+        nodeX[0] = 0;
+        nodeY[0] = 0;
+        nodeWidth[0] = width;
+        area = 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the fraction of the area covered by packed rectangles
+     */
+    public double getOccupancy() {
+        return (double) area / ((long) width * height);
+    }
+
+    // the height a rectangle would sit at if its left edge was at the start of segment i, or -1 if it doesn't fit there
+    private int fits(int i, int rectangleWidth, int rectangleHeight) {
+        if (nodeX[i] + rectangleWidth > width) {
+            return -1;
+        }
+
+        int y = nodeY[i];
+        int remaining = rectangleWidth;
+
+        while (remaining > 0) {
+            if (i == count) {
+                return -1;
+            }
+
+            y = Math.max(y, nodeY[i]);
+
+            if (y + rectangleHeight > height) {
+                return -1;
+            }
+
+            remaining -= nodeWidth[i];
+            i++;
+        }
+
+        return y;
+    }
+
+    private void addLevel(int index, int x, int y, int rectangleWidth, int rectangleHeight) {
+        insert(index, x, y + rectangleHeight, rectangleWidth);
+
+        // shrink or remove the segments now underneath the new one
+        for (int i = index + 1; i < count; i++) {
+            int end = nodeX[i - 1] + nodeWidth[i - 1];
+
+            if (nodeX[i] >= end) {
+                break;
+            }
+
+            int shrink = end - nodeX[i];
+            nodeX[i] += shrink;
+            nodeWidth[i] -= shrink;
+
+            if (nodeWidth[i] > 0) {
+                break;
+            }
+
+            remove(i);
+            i--;
+        }
+
+        // merge neighbouring segments at the same height
+        for (int i = 0; i < count - 1; i++) {
+            if (nodeY[i] == nodeY[i + 1]) {
+                nodeWidth[i] += nodeWidth[i + 1];
+                remove(i + 1);
+                i--;
+            }
+        }
+    }
+
+    private void insert(int index, int x, int y, int segmentWidth) {
+        if (count == nodeX.length) {
+            nodeX = Arrays.copyOf(nodeX, count * 2);
+            nodeY = Arrays.copyOf(nodeY, count * 2);
+            nodeWidth = Arrays.copyOf(nodeWidth, count * 2);
+        }
+
+        System.arraycopy(nodeX, index, nodeX, index + 1, count - index);
+        System.arraycopy(nodeY, index, nodeY, index + 1, count - index);
+        System.arraycopy(nodeWidth, index, nodeWidth, index + 1, count - index);
+
+        nodeX[index] = x;
+        nodeY[index] = y;
+        nodeWidth[index] = segmentWidth;
+        count++;
+    }
+
+    private void remove(int index) {
+        System.arraycopy(nodeX, index + 1, nodeX, index, count - index - 1);
+        System.arraycopy(nodeY, index + 1, nodeY, index, count - index - 1);
+        System.arraycopy(nodeWidth, index + 1, nodeWidth, index, count - index - 1);
+        count--;
+    }
+
+}
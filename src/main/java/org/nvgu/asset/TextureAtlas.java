@@ -0,0 +1,346 @@
+package org.nvgu.asset;
+
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Packs many small images into a few large NanoVG images, called pages, so that drawing them
+ * doesn't switch textures and NanoVG can batch the draws together.
+ * Each page keeps a copy of its pixels, which images are copied into as they are added and which is
+ * uploaded by {@link TextureAtlas#flush()}. When no page has room for an image, the pages are repacked
+ * if images have been removed since the last repack, and a new page is added otherwise.
+ * Repacking moves images within the pages, so images shouldn't be added during a frame which has already drawn from the atlas.
+ */
+public class TextureAtlas implements NativeResource {
+
+    // keeps images apart, so filtering and rounding at their edges never sample a neighbour
+    private static final int PADDING = 1;
+    // flags which only work on a whole image, as mipmaps are generated from the page and patterns repeat the page
+    private static final int UNSUPPORTED_FLAGS = NVG_IMAGE_GENERATE_MIPMAPS | NVG_IMAGE_REPEATX | NVG_IMAGE_REPEATY;
+
+    private final long handle;
+    private final int pageSize;
+    private final int flags;
+
+    private final List<Page> pages = new ArrayList<>();
+    private final Map<String, Region> regions = new HashMap<>();
+
+    // area left behind by removed images, which only a repack can reclaim
+    private long removedArea = 0;
+    private int repacks = 0;
+
+    /**
+     * @param handle the handle of the NanoVG instance
+     * @param pageSize the width and height of each page in pixels
+     * @param flags the image flags of the pages, which every image in the atlas shares.
+     * Generating mipmaps and repeating aren't supported, as they would apply to the whole page rather than each image.
+     */
+    public TextureAtlas(long handle, int pageSize, int flags) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+        }
+
+        if ((flags & UNSUPPORTED_FLAGS) != 0) {
+            throw new IllegalArgumentException("Atlas pages can't be mipmapped or repeated, got flags " + flags);
+        }
+
+        this.handle = handle;
+        this.pageSize = pageSize;
+        this.flags = flags;
+    }
+
+    /**
+     * Adds an image to the atlas
+     * @param identifier the identifier of the image
+     * @param image the pixels of the image, which are copied, so the image can be freed afterwards
+     * @return whether the image was added, which it isn't if it is too large for the atlas or the identifier is taken
+     */
+    public boolean add(String identifier, DecodedImage image) {
+        return add(identifier, image.getPixels(), image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Adds an image to the atlas
+     * @param identifier the identifier of the image
+     * @param pixels the RGBA pixels of the image, which are copied
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return whether the image was added, which it isn't if it is too large for the atlas or the identifier is taken
+     */
+    public boolean add(String identifier, ByteBuffer pixels, int width, int height) {
+        if (!accepts(width, height) || regions.containsKey(identifier)) {
+            return false;
+        }
+
+        Region region = new Region(width, height);
+
+        if (!place(region)) {
+            if (removedArea > 0) {
+                repack();
+            }
+
+            if (!place(region)) {
+                addPage();
+                place(region);
+            }
+        }
+
+        copy(pixels, width * 4, region, pages.get(region.page).pixels);
+        regions.put(identifier, region);
+
+        return true;
+    }
+
+    /**
+     * Removes an image from the atlas. Its area is reclaimed by the next repack.
+     * @param identifier the identifier of the image
+     * @return whether the image was in the atlas
+     */
+    public boolean remove(String identifier) {
+        Region region = regions.remove(identifier);
+
+        if (region == null) {
+            return false;
+        }
+
+        removedArea += (long) (region.width + PADDING) * (region.height + PADDING);
+
+        return true;
+    }
+
+    /**
+     * Packs every image again from scratch, largest first, reclaiming the area of removed images
+     * and usually fitting the remaining images into fewer pages than inserting them one by one did.
+     */
+    public void repack() {
+        List<Region> sorted = new ArrayList<>(regions.values());
+        sorted.sort((first, second) -> first.height != second.height ? second.height - first.height : second.width - first.width);
+
+        ByteBuffer[] previous = new ByteBuffer[pages.size()];
+
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+
+            previous[i] = page.pixels;
+            page.pixels = memCalloc(pageSize * pageSize * 4);
+            page.packer.reset();
+            page.dirty = true;
+        }
+
+        for (Region region : sorted) {
+            int page = region.page;
+            int x = region.x;
+            int y = region.y;
+
+            if (!place(region)) {
+                addPage();
+                place(region);
+            }
+
+            ByteBuffer source = previous[page];
+            source.position((y * pageSize + x) * 4);
+            copy(source, pageSize * 4, region, pages.get(region.page).pixels);
+        }
+
+        for (ByteBuffer pixels : previous) {
+            memFree(pixels);
+        }
+
+        removedArea = 0;
+        repacks++;
+    }
+
+    /**
+     * Uploads the pages which have changed since the last flush. Must be called before drawing from the atlas.
+     * @return the number of pages uploaded
+     */
+    public int flush() {
+        int uploaded = 0;
+
+        for (Page page : pages) {
+            if (page.dirty) {
+                nvgUpdateImage(handle, page.image, page.pixels);
+                page.dirty = false;
+                uploaded++;
+            }
+        }
+
+        return uploaded;
+    }
+
+    /**
+     * Gets where an image is in the atlas. The region is updated in place when the atlas is repacked.
+     * @param identifier the identifier of the image
+     * @return the region, or null if the image isn't in the atlas
+     */
+    public Region get(String identifier) {
+        return regions.get(identifier);
+    }
+
+    public boolean contains(String identifier) {
+        return regions.containsKey(identifier);
+    }
+
+    /**
+     * @return whether an image of the given size can be added to the atlas
+     */
+    public boolean accepts(int width, int height) {
+        return width + PADDING <= getMaxImageSize() && height + PADDING <= getMaxImageSize();
+    }
+
+    /**
+     * @return the largest width and height of an image in the atlas, above which images get a NanoVG image of their own
+     */
+    public int getMaxImageSize() {
+        return pageSize / 4;
+    }
+
+    /**
+     * @return the NanoVG image of the given page
+     */
+    public int getImage(int page) {
+        return pages.get(page).image;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public int size() {
+        return regions.size();
+    }
+
+    public int getRepacks() {
+        return repacks;
+    }
+
+    /**
+     * @return the fraction of every page covered by images, counting the area of removed images until the next repack
+     */
+    public double getOccupancy() {
+        if (pages.isEmpty()) {
+            return 0;
+        }
+
+        double occupancy = 0;
+
+        for (Page page : pages) {
+            occupancy += page.packer.getOccupancy();
+        }
+
+        return occupancy / pages.size();
+    }
+
+    @Override
+    public void free() {
+        for (Page page : pages) {
+            nvgDeleteImage(handle, page.image);
+            memFree(page.pixels);
+        }
+
+        pages.clear();
+        regions.clear();
+        removedArea = 0;
+    }
+
+    private boolean place(Region region) {
+        for (int i = 0; i < pages.size(); i++) {
+            long position = pages.get(i).packer.pack(region.width + PADDING, region.height + PADDING);
+
+            if (position != -1) {
+                region.page = i;
+                region.x = (int) (position >>> 32);
+                region.y = (int) position;
+
+                pages.get(i).dirty = true;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void addPage() {
+        ByteBuffer pixels = memCalloc(pageSize * pageSize * 4);
+        pages.add(new Page(nvgCreateImageRGBA(handle, pageSize, pageSize, flags, pixels), pixels, new SkylinePacker(pageSize, pageSize)));
+    }
+
+    // copies a region's pixels, starting at the source's position, to where the region is in the destination page
+    private void copy(ByteBuffer source, int sourceStride, Region region, ByteBuffer destination) {
+        long from = memAddress(source);
+        long to = memAddress0(destination) + (long) (region.y * pageSize + region.x) * 4;
+
+        for (int row = 0; row < region.height; row++) {
+            memCopy(from + (long) row * sourceStride, to + (long) row * pageSize * 4, region.width * 4L);
+        }
+    }
+
+    /**
+     * Where an image is in the atlas
+     */
+    public static final class Region {
+
+        private final int width;
+        private final int height;
+
+        private int page;
+        private int x;
+        private int y;
+
+        private Region(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+    }
+
+    private static final class Page {
+
+        private final int image;
+        private ByteBuffer pixels;
+        private final SkylinePacker packer;
+        private boolean dirty = false;
+
+        private Page(int image, ByteBuffer pixels, SkylinePacker packer) {
+            this.image = image;
+            this.pixels = pixels;
+            this.packer = packer;
+        }
+
+    }
+
+}
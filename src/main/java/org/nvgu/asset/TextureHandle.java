@@ -0,0 +1,45 @@
+package org.nvgu.asset;
+
+/**
+ * A counted reference to a texture, which can be drawn without looking the texture up by name
+ * @see org.nvgu.NVGU#acquireTexture(String)
+ */
+public final class TextureHandle extends ResourceHandle {
+
+    private final int slot;
+    private final TextureAtlas.Region region;
+
+    /**
+     * @param identifier the identifier of the texture
+     * @param slot the slot of the texture in the texture manager, or -1 if it is in the atlas
+     * @param region where the texture is in the atlas, or null if it has an image of its own
+     * @param unload unloads the texture once every reference has been closed
+     */
+    public TextureHandle(String identifier, int slot, TextureAtlas.Region region, Runnable unload) {
+        super(identifier, unload);
+
+        this.slot = slot;
+        this.region = region;
+    }
+
+    @Override
+    public TextureHandle retain() {
+        super.retain();
+        return this;
+    }
+
+    /**
+     * @return the slot of the texture in the texture manager, or -1 if it is in the atlas
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return where the texture is in the atlas, or null if it has an image of its own
+     */
+    public TextureAtlas.Region getRegion() {
+        return region;
+    }
+
+}
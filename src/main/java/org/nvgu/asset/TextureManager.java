@@ -0,0 +1,276 @@
+package org.nvgu.asset;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+
+/**
+ * Keeps track of the NanoVG images of textures, their size and when they were last drawn.
+ * When the images take up more than the budget, the least recently drawn ones which can be reloaded
+ * are deleted by {@link TextureManager#trim()}, and created again from their source the next time they are drawn.
+ * Textures without a source are never evicted.
+ * Every texture is given a slot, which stays the same while its image is evicted and reloaded,
+ * so it can be looked up by index rather than by name.
+ */
+public class TextureManager {
+
+    private final long handle;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private Entry[] slots = new Entry[16];
+    private int slotCount = 0;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount = 0;
+
+    // incremented on every lookup, so the entry with the lowest lastUsed is the least recently drawn
+    private long clock = 0;
+
+    private long budget = Long.MAX_VALUE;
+    private long used = 0;
+
+    private long evictions = 0;
+    private long reloads = 0;
+
+    /**
+     * @param handle the handle of the NanoVG instance
+     */
+    public TextureManager(long handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Adds a texture
+     * @param identifier the identifier of the texture
+     * @param image the NanoVG image of the texture, which is now owned by the manager
+     * @param flags the flags the image was created with
+     * @param source creates the image again after it has been evicted, or null if it can't be evicted
+     * @return the slot of the texture
+     */
+    public int put(String identifier, int image, int flags, Callable<DecodedImage> source) {
+        remove(identifier);
+
+        Entry entry = new Entry(identifier, flags, source);
+        entry.setImage(handle, image);
+        entry.lastUsed = clock;
+        entry.slot = allocateSlot();
+
+        slots[entry.slot] = entry;
+        entries.put(identifier, entry);
+        used += entry.size;
+
+        return entry.slot;
+    }
+
+    /**
+     * Gets the image of a texture, creating it again if it has been evicted, and marks it as the most recently used.
+     * @param identifier the identifier of the texture
+     * @return the NanoVG image, or -1 if there is no texture with the given identifier
+     */
+    public int get(String identifier) {
+        Entry entry = entries.get(identifier);
+        return entry == null ? -1 : image(entry);
+    }
+
+    /**
+     * Gets the image of a texture, creating it again if it has been evicted, and marks it as the most recently used.
+     * @param slot the slot of the texture
+     * @return the NanoVG image
+     */
+    public int get(int slot) {
+        return image(slots[slot]);
+    }
+
+    /**
+     * @return the slot of the texture with the given identifier, or -1 if there isn't one
+     */
+    public int getSlot(String identifier) {
+        Entry entry = entries.get(identifier);
+        return entry == null ? -1 : entry.slot;
+    }
+
+    public boolean contains(String identifier) {
+        return entries.containsKey(identifier);
+    }
+
+    /**
+     * Deletes a texture, freeing its slot
+     * @param identifier the identifier of the texture
+     * @return whether there was a texture with the given identifier
+     */
+    public boolean remove(String identifier) {
+        Entry entry = entries.remove(identifier);
+
+        if (entry == null) {
+            return false;
+        }
+
+        evict(entry);
+
+        slots[entry.slot] = null;
+
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+
+        freeSlots[freeSlotCount++] = entry.slot;
+
+        return true;
+    }
+
+    /**
+     * Deletes the least recently drawn textures which can be reloaded until the images fit in the budget.
+     * Must be called outside of a frame, since the images may still be waiting to be drawn.
+     * @return the number of textures evicted
+     */
+    public int trim() {
+        if (used <= budget) {
+            return 0;
+        }
+
+        Entry[] candidates = new Entry[entries.size()];
+        int count = 0;
+
+        for (Entry entry : entries.values()) {
+            if (entry.image != -1 && entry.source != null) {
+                candidates[count++] = entry;
+            }
+        }
+
+        Arrays.sort(candidates, 0, count, (first, second) -> Long.compare(first.lastUsed, second.lastUsed));
+
+        int evicted = 0;
+
+        while (used > budget && evicted < count) {
+            evict(candidates[evicted++]);
+            evictions++;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Deletes every texture
+     */
+    public void clear() {
+        entries.values().forEach(this::evict);
+        entries.clear();
+
+        Arrays.fill(slots, 0, slotCount, null);
+        slotCount = 0;
+        freeSlotCount = 0;
+    }
+
+    /**
+     * Sets how many bytes the images may take up before textures are evicted
+     * @param budget the budget in bytes
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the estimated size of the images which currently exist, in bytes
+     */
+    public long getUsed() {
+        return used;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getReloads() {
+        return reloads;
+    }
+
+    private int image(Entry entry) {
+        entry.lastUsed = ++clock;
+
+        if (entry.image == -1) {
+            DecodedImage image;
+
+            try {
+                image = entry.source.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to reload texture " + entry.identifier, e);
+            }
+
+            try {
+                entry.setImage(handle, nvgCreateImageRGBA(handle, image.getWidth(), image.getHeight(), entry.flags, image.getPixels()));
+            } finally {
+                image.free();
+            }
+
+            used += entry.size;
+            reloads++;
+        }
+
+        return entry.image;
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+
+        if (slotCount == slots.length) {
+            slots = Arrays.copyOf(slots, slotCount * 2);
+        }
+
+        return slotCount++;
+    }
+
+    private void evict(Entry entry) {
+        if (entry.image != -1) {
+            nvgDeleteImage(handle, entry.image);
+            used -= entry.size;
+            entry.image = -1;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String identifier;
+        private final int flags;
+        private final Callable<DecodedImage> source;
+
+        private int slot;
+        private int image = -1;
+        private long size = 0;
+        private long lastUsed;
+
+        private Entry(String identifier, int flags, Callable<DecodedImage> source) {
+            this.identifier = identifier;
+            this.flags = flags;
+            this.source = source;
+        }
+
+        private void setImage(long handle, int image) {
+            int[] width = new int[1];
+            int[] height = new int[1];
+            nvgImageSize(handle, image, width, height);
+
+            this.image = image;
+
+            // mipmaps add a third on top of the base level
+            this.size = (long) width[0] * height[0] * 4;
+
+            if ((flags & NVG_IMAGE_GENERATE_MIPMAPS) != 0) {
+                this.size += size / 3;
+            }
+        }
+
+    }
+
+}
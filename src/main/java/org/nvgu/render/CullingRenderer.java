@@ -0,0 +1,291 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGPaint;
+
+/**
+ * Passes drawing operations on to another renderer, while following the transform and scissor
+ * so that {@link org.nvgu.NVGU} can tell when a primitive can't be seen and skip it entirely.
+ * The scissor is kept as a box in frame space, which always contains the area NanoVG actually clips to,
+ * so a primitive is only culled when it is certainly outside of it.
+ */
+public class CullingRenderer implements Renderer {
+
+    // matches the depth of NanoVG's own state stack
+    private static final int MAX_STATES = 32;
+
+    // covers antialiasing, which reaches about a pixel past the edge of a shape
+    private static final float MARGIN = 1;
+
+    private final Renderer renderer;
+
+    // 6 floats of the transform, as in NanoVG, followed by the left, top, right and bottom of the clip, for each state
+    private final float[] states = new float[MAX_STATES * 10];
+    private int depth = 1;
+    private int current = 0;
+
+    private long tested = 0;
+    private long culled = 0;
+
+    /**
+     * @param renderer the renderer operations are passed on to
+     */
+    public CullingRenderer(Renderer renderer) {
+        this.renderer = renderer;
+        reset(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Resets the transform and clips to the frame. Must be called at the start of every frame.
+     * @param width the width of the frame
+     * @param height the height of the frame
+     */
+    public void reset(float width, float height) {
+        depth = 1;
+        current = 0;
+
+        states[0] = 1;
+        states[1] = 0;
+        states[2] = 0;
+        states[3] = 1;
+        states[4] = 0;
+        states[5] = 0;
+
+        states[6] = 0;
+        states[7] = 0;
+        states[8] = width;
+        states[9] = height;
+    }
+
+    /**
+     * Checks whether any of the given rectangle, in the current coordinate space, could be visible
+     * @return false if the rectangle is certainly outside of the frame or scissor
+     */
+    public boolean isVisible(float x, float y, float width, float height) {
+        tested++;
+
+        float[] s = states;
+        int i = current;
+
+        float a = s[i], b = s[i + 1], c = s[i + 2], d = s[i + 3], e = s[i + 4], f = s[i + 5];
+
+        // the bounds of the transformed corners, found per axis from the sign of each term
+        float left = e + Math.min(a * x, a * (x + width)) + Math.min(c * y, c * (y + height));
+        float right = e + Math.max(a * x, a * (x + width)) + Math.max(c * y, c * (y + height));
+        float top = f + Math.min(b * x, b * (x + width)) + Math.min(d * y, d * (y + height));
+        float bottom = f + Math.max(b * x, b * (x + width)) + Math.max(d * y, d * (y + height));
+
+        if (right + MARGIN <= s[i + 6] || left - MARGIN >= s[i + 8] || bottom + MARGIN <= s[i + 7] || top - MARGIN >= s[i + 9]) {
+            culled++;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether anything between the given heights, in the current coordinate space, could be visible.
+     * Used for text, whose width isn't known without measuring it. Always true while rotated.
+     * @return false if everything between the heights is certainly outside of the frame or scissor
+     */
+    public boolean isVisibleVertically(float top, float bottom) {
+        float[] s = states;
+        int i = current;
+
+        if (s[i + 1] != 0 || s[i + 2] != 0) {
+            return true;
+        }
+
+        tested++;
+
+        float d = s[i + 3], f = s[i + 5];
+        float first = f + d * top;
+        float second = f + d * bottom;
+
+        if (Math.max(first, second) + MARGIN <= s[i + 7] || Math.min(first, second) - MARGIN >= s[i + 9]) {
+            culled++;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of primitives checked
+     */
+    public long getTested() {
+        return tested;
+    }
+
+    /**
+     * @return the number of primitives skipped because they couldn't be seen
+     */
+    public long getCulled() {
+        return culled;
+    }
+
+    /**
+     * Resets the tested and culled counters
+     */
+    public void resetStatistics() {
+        tested = 0;
+        culled = 0;
+    }
+
+    @Override
+    public void beginPath() {
+        renderer.beginPath();
+    }
+
+    @Override
+    public void closePath() {
+        renderer.closePath();
+    }
+
+    @Override
+    public void rect(float x, float y, float width, float height) {
+        renderer.rect(x, y, width, height);
+    }
+
+    @Override
+    public void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        renderer.roundedRect(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+    }
+
+    @Override
+    public void circle(float x, float y, float radius) {
+        renderer.circle(x, y, radius);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        renderer.moveTo(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        renderer.lineTo(x, y);
+    }
+
+    @Override
+    public void fill(int colour) {
+        renderer.fill(colour);
+    }
+
+    @Override
+    public void fill(NVGPaint paint) {
+        renderer.fill(paint);
+    }
+
+    @Override
+    public void stroke(float thickness, int colour) {
+        renderer.stroke(thickness, colour);
+    }
+
+    @Override
+    public void stroke(float thickness, NVGPaint paint) {
+        renderer.stroke(thickness, paint);
+    }
+
+    @Override
+    public void text(float x, float y, String text, String font, float size, int alignment, int colour) {
+        renderer.text(x, y, text, font, size, alignment, colour);
+    }
+
+    @Override
+    public void text(float x, float y, String text, int font, float size, int alignment, int colour) {
+        renderer.text(x, y, text, font, size, alignment, colour);
+    }
+
+    @Override
+    public void save() {
+        renderer.save();
+
+        if (depth < MAX_STATES) {
+            System.arraycopy(states, current, states, current + 10, 10);
+            depth++;
+            current += 10;
+        }
+    }
+
+    @Override
+    public void restore() {
+        renderer.restore();
+
+        if (depth > 1) {
+            depth--;
+            current -= 10;
+        }
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        renderer.translate(x, y);
+
+        float[] s = states;
+        int i = current;
+
+        s[i + 4] += s[i] * x + s[i + 2] * y;
+        s[i + 5] += s[i + 1] * x + s[i + 3] * y;
+    }
+
+    @Override
+    public void rotate(float angle) {
+        renderer.rotate(angle);
+
+        float[] s = states;
+        int i = current;
+
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+        float a = s[i], b = s[i + 1], c = s[i + 2], d = s[i + 3];
+
+        s[i] = a * cos + c * sin;
+        s[i + 1] = b * cos + d * sin;
+        s[i + 2] = c * cos - a * sin;
+        s[i + 3] = d * cos - b * sin;
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        renderer.scale(x, y);
+
+        float[] s = states;
+        int i = current;
+
+        s[i] *= x;
+        s[i + 1] *= x;
+        s[i + 2] *= y;
+        s[i + 3] *= y;
+    }
+
+    @Override
+    public void intersectScissor(float x, float y, float width, float height) {
+        renderer.intersectScissor(x, y, width, height);
+
+        float[] s = states;
+        int i = current;
+
+        float a = s[i], b = s[i + 1], c = s[i + 2], d = s[i + 3], e = s[i + 4], f = s[i + 5];
+
+        s[i + 6] = Math.max(s[i + 6], e + Math.min(a * x, a * (x + width)) + Math.min(c * y, c * (y + height)));
+        s[i + 8] = Math.min(s[i + 8], e + Math.max(a * x, a * (x + width)) + Math.max(c * y, c * (y + height)));
+        s[i + 7] = Math.max(s[i + 7], f + Math.min(b * x, b * (x + width)) + Math.min(d * y, d * (y + height)));
+        s[i + 9] = Math.min(s[i + 9], f + Math.max(b * x, b * (x + width)) + Math.max(d * y, d * (y + height)));
+    }
+
+    @Override
+    public void lineCap(int cap) {
+        renderer.lineCap(cap);
+    }
+
+    @Override
+    public void lineJoin(int join) {
+        renderer.lineJoin(join);
+    }
+
+    @Override
+    public void globalAlpha(float alpha) {
+        renderer.globalAlpha(alpha);
+    }
+
+}
@@ -0,0 +1,463 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * A recorded sequence of drawing operations, which can be replayed any number of times.
+ * Operations are stored in flat primitive arrays, and strings and paints are interned, so
+ * replaying doesn't allocate or re-run any of the code which produced the operations.
+ * Paints are copied when recorded, so they may be freed afterwards, but any textures they
+ * reference must still exist when the list is replayed.
+ * @see org.nvgu.NVGU#record(DisplayList, Runnable)
+ * @see org.nvgu.NVGU#replay(DisplayList)
+ */
+public class DisplayList implements Renderer, NativeResource {
+
+    private static final int BEGIN_PATH = 0;
+    private static final int CLOSE_PATH = 1;
+    private static final int RECT = 2;
+    private static final int ROUNDED_RECT = 3;
+    private static final int CIRCLE = 4;
+    private static final int MOVE_TO = 5;
+    private static final int LINE_TO = 6;
+    private static final int FILL_COLOUR = 7;
+    private static final int FILL_PAINT = 8;
+    private static final int STROKE_COLOUR = 9;
+    private static final int STROKE_PAINT = 10;
+    private static final int TEXT = 11;
+    private static final int SAVE = 12;
+    private static final int RESTORE = 13;
+    private static final int TRANSLATE = 14;
+    private static final int ROTATE = 15;
+    private static final int SCALE = 16;
+    private static final int SCISSOR = 17;
+    private static final int TEXT_FONT_ID = 18;
+    private static final int LINE_CAP = 19;
+    private static final int LINE_JOIN = 20;
+    private static final int GLOBAL_ALPHA = 21;
+
+    // opcodes, each followed by its int operands
+    private int[] ops = new int[256];
+    private int opCount = 0;
+
+    private float[] floats = new float[1024];
+    private int floatCount = 0;
+
+    private String[] strings = new String[16];
+    private int stringCount = 0;
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+
+    // paints are copied end to end into a single native buffer
+    private ByteBuffer paints = null;
+    private int paintCount = 0;
+    private NVGPaint[] paintViews = new NVGPaint[0];
+
+    /**
+     * Removes all recorded operations, keeping the allocated storage for the next recording.
+     */
+    public void clear() {
+        opCount = 0;
+        floatCount = 0;
+
+        Arrays.fill(strings, 0, stringCount, null);
+        stringCount = 0;
+        stringIndices.clear();
+
+        paintCount = 0;
+    }
+
+    /**
+     * Issues every recorded operation, in order, to the given renderer.
+     * @param renderer the renderer to replay to
+     */
+    public void replay(Renderer renderer) {
+        NVGPaint[] paints = paintViews();
+
+        int[] ops = this.ops;
+        float[] floats = this.floats;
+        String[] strings = this.strings;
+
+        int f = 0;
+        int i = 0;
+
+        while (i < opCount) {
+            switch (ops[i++]) {
+                case BEGIN_PATH:
+                    renderer.beginPath();
+                    break;
+
+                case CLOSE_PATH:
+                    renderer.closePath();
+                    break;
+
+                case RECT:
+                    renderer.rect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3]);
+                    f += 4;
+                    break;
+
+                case ROUNDED_RECT:
+                    renderer.roundedRect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3], floats[f + 4], floats[f + 5], floats[f + 6], floats[f + 7]);
+                    f += 8;
+                    break;
+
+                case CIRCLE:
+                    renderer.circle(floats[f], floats[f + 1], floats[f + 2]);
+                    f += 3;
+                    break;
+
+                case MOVE_TO:
+                    renderer.moveTo(floats[f], floats[f + 1]);
+                    f += 2;
+                    break;
+
+                case LINE_TO:
+                    renderer.lineTo(floats[f], floats[f + 1]);
+                    f += 2;
+                    break;
+
+                case FILL_COLOUR:
+                    renderer.fill(ops[i++]);
+                    break;
+
+                case FILL_PAINT:
+                    renderer.fill(paints[ops[i++]]);
+                    break;
+
+                case STROKE_COLOUR:
+                    renderer.stroke(floats[f++], ops[i++]);
+                    break;
+
+                case STROKE_PAINT:
+                    renderer.stroke(floats[f++], paints[ops[i++]]);
+                    break;
+
+                case TEXT:
+                    renderer.text(floats[f], floats[f + 1], strings[ops[i]], strings[ops[i + 1]], floats[f + 2], ops[i + 2], ops[i + 3]);
+                    f += 3;
+                    i += 4;
+                    break;
+
+                case TEXT_FONT_ID:
+                    renderer.text(floats[f], floats[f + 1], strings[ops[i]], ops[i + 1], floats[f + 2], ops[i + 2], ops[i + 3]);
+                    f += 3;
+                    i += 4;
+                    break;
+
+                case SAVE:
+                    renderer.save();
+                    break;
+
+                case RESTORE:
+                    renderer.restore();
+                    break;
+
+                case TRANSLATE:
+                    renderer.translate(floats[f], floats[f + 1]);
+                    f += 2;
+                    break;
+
+                case ROTATE:
+                    renderer.rotate(floats[f++]);
+                    break;
+
+                case SCALE:
+                    renderer.scale(floats[f], floats[f + 1]);
+                    f += 2;
+                    break;
+
+                case SCISSOR:
+                    renderer.intersectScissor(floats[f], floats[f + 1], floats[f + 2], floats[f + 3]);
+                    f += 4;
+                    break;
+
+                case LINE_CAP:
+                    renderer.lineCap(ops[i++]);
+                    break;
+
+                case LINE_JOIN:
+                    renderer.lineJoin(ops[i++]);
+                    break;
+
+                case GLOBAL_ALPHA:
+                    renderer.globalAlpha(floats[f++]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return whether nothing has been recorded
+     */
+    public boolean isEmpty() {
+        return opCount == 0;
+    }
+
+    /**
+     * @return the number of ints used by recorded opcodes and their operands
+     */
+    public int size() {
+        return opCount;
+    }
+
+    @Override
+    public void free() {
+        clear();
+
+        if (paints != null) {
+            memFree(paints);
+            paints = null;
+        }
+
+        paintViews = new NVGPaint[0];
+    }
+
+    @Override
+    public void beginPath() {
+        op(BEGIN_PATH);
+    }
+
+    @Override
+    public void closePath() {
+        op(CLOSE_PATH);
+    }
+
+    @Override
+    public void rect(float x, float y, float width, float height) {
+        op(RECT);
+        floats4(x, y, width, height);
+    }
+
+    @Override
+    public void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        op(ROUNDED_RECT);
+        floats4(x, y, width, height);
+        floats4(topLeft, topRight, bottomRight, bottomLeft);
+    }
+
+    @Override
+    public void circle(float x, float y, float radius) {
+        op(CIRCLE);
+        floats2(x, y);
+        floats1(radius);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        op(MOVE_TO);
+        floats2(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        op(LINE_TO);
+        floats2(x, y);
+    }
+
+    @Override
+    public void fill(int colour) {
+        op(FILL_COLOUR, colour);
+    }
+
+    @Override
+    public void fill(NVGPaint paint) {
+        op(FILL_PAINT, intern(paint));
+    }
+
+    @Override
+    public void stroke(float thickness, int colour) {
+        op(STROKE_COLOUR, colour);
+        floats1(thickness);
+    }
+
+    @Override
+    public void stroke(float thickness, NVGPaint paint) {
+        op(STROKE_PAINT, intern(paint));
+        floats1(thickness);
+    }
+
+    @Override
+    public void text(float x, float y, String text, String font, float size, int alignment, int colour) {
+        op(TEXT, intern(text), intern(font), alignment, colour);
+        floats2(x, y);
+        floats1(size);
+    }
+
+    @Override
+    public void text(float x, float y, String text, int font, float size, int alignment, int colour) {
+        op(TEXT_FONT_ID, intern(text), font, alignment, colour);
+        floats2(x, y);
+        floats1(size);
+    }
+
+    @Override
+    public void save() {
+        op(SAVE);
+    }
+
+    @Override
+    public void restore() {
+        op(RESTORE);
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        op(TRANSLATE);
+        floats2(x, y);
+    }
+
+    @Override
+    public void rotate(float angle) {
+        op(ROTATE);
+        floats1(angle);
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        op(SCALE);
+        floats2(x, y);
+    }
+
+    @Override
+    public void intersectScissor(float x, float y, float width, float height) {
+        op(SCISSOR);
+        floats4(x, y, width, height);
+    }
+
+    @Override
+    public void lineCap(int cap) {
+        op(LINE_CAP, cap);
+    }
+
+    @Override
+    public void lineJoin(int join) {
+        op(LINE_JOIN, join);
+    }
+
+    @Override
+    public void globalAlpha(float alpha) {
+        op(GLOBAL_ALPHA);
+        floats1(alpha);
+    }
+
+    // fixed arities rather than varargs, so recording doesn't allocate an array per operation
+    private void op(int op) {
+        ensureOps(1);
+        ops[opCount++] = op;
+    }
+
+    private void op(int op, int operand) {
+        ensureOps(2);
+        ops[opCount++] = op;
+        ops[opCount++] = operand;
+    }
+
+    private void op(int op, int first, int second, int third, int fourth) {
+        ensureOps(5);
+        ops[opCount++] = op;
+        ops[opCount++] = first;
+        ops[opCount++] = second;
+        ops[opCount++] = third;
+        ops[opCount++] = fourth;
+    }
+
+    private void ensureOps(int count) {
+        if (opCount + count > ops.length) {
+            ops = Arrays.copyOf(ops, Math.max(ops.length * 2, opCount + count));
+        }
+    }
+
+    private void floats1(float value) {
+        ensureFloats(1);
+        floats[floatCount++] = value;
+    }
+
+    private void floats2(float first, float second) {
+        ensureFloats(2);
+        floats[floatCount++] = first;
+        floats[floatCount++] = second;
+    }
+
+    private void floats4(float first, float second, float third, float fourth) {
+        ensureFloats(4);
+        floats[floatCount++] = first;
+        floats[floatCount++] = second;
+        floats[floatCount++] = third;
+        floats[floatCount++] = fourth;
+    }
+
+    private void ensureFloats(int count) {
+        if (floatCount + count > floats.length) {
+            floats = Arrays.copyOf(floats, Math.max(floats.length * 2, floatCount + count));
+        }
+    }
+
+    private int intern(String string) {
+        Integer index = stringIndices.get(string);
+
+        if (index == null) {
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, strings.length * 2);
+            }
+
+            index = stringCount;
+            strings[stringCount++] = string;
+            stringIndices.put(string, index);
+        }
+
+        return index;
+    }
+
+    // paints are compared by content rather than address, since a struct may be reused with different contents,
+    // and a paint the same as the one recorded before it, such as one gradient filling several shapes, is only stored once
+    private int intern(NVGPaint paint) {
+        long source = paint.address();
+
+        if (paintCount > 0 && samePaint(source, memAddress(paints) + (long) (paintCount - 1) * NVGPaint.SIZEOF)) {
+            return paintCount - 1;
+        }
+
+        if (paints == null) {
+            paints = memAlloc(NVGPaint.SIZEOF * 8);
+        } else if ((paintCount + 1) * NVGPaint.SIZEOF > paints.capacity()) {
+            paints = memRealloc(paints, paints.capacity() * 2);
+        }
+
+        int index = paintCount++;
+        memCopy(source, memAddress(paints) + (long) index * NVGPaint.SIZEOF, NVGPaint.SIZEOF);
+
+        return index;
+    }
+
+    private static boolean samePaint(long first, long second) {
+        // NVGPaint is made of 4 byte fields, so it is compared an int at a time
+        for (int offset = 0; offset < NVGPaint.SIZEOF; offset += 4) {
+            if (memGetInt(first + offset) != memGetInt(second + offset)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // the buffer may have moved since the views were created, so they're rebuilt when stale
+    private NVGPaint[] paintViews() {
+        if (paintViews.length != paintCount || (paintCount > 0 && paintViews[0].address() != memAddress(paints))) {
+            paintViews = new NVGPaint[paintCount];
+
+            for (int i = 0; i < paintCount; i++) {
+                paintViews[i] = NVGPaint.create(memAddress(paints) + (long) i * NVGPaint.SIZEOF);
+            }
+        }
+
+        return paintViews;
+    }
+
+}
@@ -0,0 +1,297 @@
+package org.nvgu.render;
+
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Reads frames back without stalling the render thread, through a ring of pixel buffer objects.
+ * Each capture starts copying the frame into the next buffer of the ring, which the GPU does in the background,
+ * and the frame captured as many frames earlier as there are buffers, which has finished copying by then,
+ * is handed to a consumer on a worker thread, where it can be encoded or written out.
+ * Frames are consumed one at a time, in the order they were captured. If the consumer falls behind by
+ * more frames than there are buffers, capturing waits for it, so that memory use stays bounded.
+ */
+public class FrameExporter implements NativeResource {
+
+    /**
+     * Receives exported frames on the worker thread
+     */
+    public interface FrameConsumer {
+
+        /**
+         * @param frame the number of the frame, counting captures from 0
+         * @param pixels the RGBA pixels with the top row first, only valid until this returns
+         * @param width the width of the frame in pixels
+         * @param height the height of the frame in pixels
+         */
+        void consume(long frame, ByteBuffer pixels, int width, int height) throws Exception;
+
+    }
+
+    private final int width;
+    private final int height;
+    private final FrameConsumer consumer;
+
+    private final int[] buffers;
+    // the frame waiting in each buffer of the ring, or -1 if it is empty
+    private final long[] frames;
+
+    // copies of frames handed to the worker, returned once consumed
+    private final BlockingQueue<ByteBuffer> free;
+    private final ExecutorService worker;
+
+    private long captured = 0;
+
+    // statistics, written by the worker thread
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Throwable lastFailure = null;
+    private volatile long firstCapture = 0;
+    private volatile long lastExport = 0;
+    private long stalls = 0;
+
+    /**
+     * Creates the pixel buffers in the current context
+     * @param width the width of the frames in pixels
+     * @param height the height of the frames in pixels
+     * @param count the number of buffers in the ring, which is how many frames behind the consumer runs
+     * @param consumer what receives the frames
+     */
+    public FrameExporter(int width, int height, int count, FrameConsumer consumer) {
+        if (count < 1) {
+            throw new IllegalArgumentException("There must be at least one buffer");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.consumer = consumer;
+
+        this.buffers = new int[count];
+        this.frames = new long[count];
+        this.free = new ArrayBlockingQueue<>(count);
+
+        int size = width * height * 4;
+
+        glGenBuffers(buffers);
+
+        for (int i = 0; i < count; i++) {
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, buffers[i]);
+            glBufferData(GL_PIXEL_PACK_BUFFER, size, GL_STREAM_READ);
+
+            frames[i] = -1;
+            free.add(MemoryUtil.memAlloc(size));
+        }
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "NVGU Exporter");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Starts reading the current frame back from the given framebuffer, and hands the oldest frame in the ring to the consumer.
+     * Must be called in the context the exporter was created in, after the frame has been drawn.
+     * @param framebuffer the framebuffer to read from, 0 for the window
+     */
+    public void capture(int framebuffer) {
+        int slot = (int) (captured % buffers.length);
+
+        if (frames[slot] != -1) {
+            export(slot);
+        }
+
+        if (captured == 0) {
+            firstCapture = System.nanoTime();
+        }
+
+        int previous = glGetInteger(GL_READ_FRAMEBUFFER_BINDING);
+
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebuffer);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        glPixelStorei(GL_PACK_ALIGNMENT, 4);
+
+        // with a pack buffer bound, this only queues the copy and returns
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, previous);
+
+        frames[slot] = captured++;
+    }
+
+    /**
+     * Hands every frame still in the ring to the consumer and waits until all of them have been consumed.
+     * Must be called in the context the exporter was created in.
+     */
+    public void finish() {
+        for (int i = 0; i < buffers.length; i++) {
+            int slot = (int) ((captured + i) % buffers.length);
+
+            if (frames[slot] != -1) {
+                export(slot);
+            }
+        }
+
+        try {
+            worker.submit(() -> { }).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * @return the number of frames captured
+     */
+    public long getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return the number of frames the consumer has finished with, including those it failed on
+     */
+    public long getExported() {
+        return exported.get();
+    }
+
+    /**
+     * @return the number of frames the consumer threw an exception for
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the last exception thrown by the consumer, or null
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return the number of captures which had to wait for the consumer to catch up
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * @return the frames exported per second, from the first capture to the last frame consumed
+     */
+    public double getExportFps() {
+        long frames = exported.get();
+        long elapsed = lastExport - firstCapture;
+
+        return frames == 0 || elapsed <= 0 ? 0 : frames * 1e9 / elapsed;
+    }
+
+    public void resetStatistics() {
+        exported.set(0);
+        failures.set(0);
+        lastFailure = null;
+        firstCapture = System.nanoTime();
+        lastExport = firstCapture;
+        stalls = 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Consumes the frames still in the ring, stops the worker and deletes the buffers, in the context they were created in
+     */
+    @Override
+    public void free() {
+        finish();
+
+        worker.shutdown();
+
+        glDeleteBuffers(buffers);
+
+        ByteBuffer copy;
+
+        while ((copy = free.poll()) != null) {
+            MemoryUtil.memFree(copy);
+        }
+    }
+
+    private void export(int slot) {
+        ByteBuffer copy = free.poll();
+
+        if (copy == null) {
+            stalls++;
+
+            try {
+                copy = free.take();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        int stride = width * 4;
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        ByteBuffer mapped = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, (long) stride * height, GL_MAP_READ_BIT);
+
+        if (mapped != null) {
+            // GL reads bottom up, so the rows are reversed while copying out of the buffer
+            long source = MemoryUtil.memAddress(mapped);
+            long destination = MemoryUtil.memAddress(copy);
+
+            for (int y = 0; y < height; y++) {
+                MemoryUtil.memCopy(source + (long) (height - 1 - y) * stride, destination + (long) y * stride, stride);
+            }
+
+            glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+        }
+
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+        long frame = frames[slot];
+        frames[slot] = -1;
+
+        if (mapped == null) {
+            free.add(copy);
+            failures.incrementAndGet();
+            lastFailure = new IllegalStateException("Failed to map the pixel buffer of frame " + frame);
+            return;
+        }
+
+        ByteBuffer pixels = copy;
+
+        worker.execute(() -> {
+            try {
+                consumer.consume(frame, pixels, width, height);
+            } catch (Throwable throwable) {
+                failures.incrementAndGet();
+                lastFailure = throwable;
+            } finally {
+                pixels.clear();
+                free.add(pixels);
+                lastExport = System.nanoTime();
+                exported.incrementAndGet();
+            }
+        });
+    }
+
+}
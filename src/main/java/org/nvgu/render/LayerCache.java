@@ -0,0 +1,274 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGLUFramebuffer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.nanovg.NanoVGGL3.*;
+
+/**
+ * Keeps the framebuffers which layers are rendered into, so that a layer which hasn't changed
+ * can be drawn as an image instead of being rendered again.
+ * When the framebuffers take up more than the budget, those of the least recently drawn layers are deleted
+ * by {@link LayerCache#trim()}, and the layers are rendered again the next time they are drawn.
+ * Layers drawn in the last frame are never evicted, so a single frame may go over the budget.
+ */
+public class LayerCache {
+
+    private final long handle;
+    private final Map<String, Layer> layers = new HashMap<>();
+
+    // incremented by every trim, which happens once per frame
+    private long frame = 0;
+
+    private long budget = Long.MAX_VALUE;
+    private long used = 0;
+
+    private long evictions = 0;
+    private long renders = 0;
+
+    /**
+     * @param handle the handle of the NanoVG instance
+     */
+    public LayerCache(long handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Gets a layer, creating it if it doesn't exist, and marks it as drawn in the current frame.
+     * If the size is different from the layer's, its framebuffer is deleted and it has to be rendered again.
+     * @param identifier the identifier of the layer
+     * @param width the width of the layer in pixels
+     * @param height the height of the layer in pixels
+     * @return the layer
+     */
+    public Layer get(String identifier, int width, int height) {
+        Layer layer = layers.get(identifier);
+
+        if (layer == null) {
+            layer = new Layer(identifier, width, height);
+            layers.put(identifier, layer);
+        } else if (layer.width != width || layer.height != height) {
+            release(layer);
+            layer.width = width;
+            layer.height = height;
+        }
+
+        layer.lastUsed = frame;
+
+        return layer;
+    }
+
+    /**
+     * Creates the framebuffer of a layer if it doesn't have one.
+     * Must be called right before the layer is rendered into its framebuffer, and followed by
+     * {@link LayerCache#rendered(Layer)} once the layer has been rendered successfully.
+     * @param layer the layer
+     * @return the framebuffer to render the layer into
+     */
+    public NVGLUFramebuffer prepare(Layer layer) {
+        if (layer.framebuffer == null) {
+            // NanoVG renders with premultiplied alpha, and framebuffers are stored bottom up
+            layer.framebuffer = nvgluCreateFramebuffer(handle, layer.width, layer.height, NVG_IMAGE_PREMULTIPLIED | NVG_IMAGE_FLIPY);
+
+            if (layer.framebuffer == null) {
+                throw new IllegalStateException("Failed to create a " + layer.width + "x" + layer.height + " framebuffer for layer " + layer.identifier);
+            }
+
+            used += layer.getSize();
+        }
+
+        return layer.framebuffer;
+    }
+
+    /**
+     * Marks a layer as rendered, so its framebuffer is drawn until it is invalidated.
+     * A layer whose rendering failed is left invalid, so it is rendered again the next time it is drawn.
+     * @param layer the layer
+     */
+    public void rendered(Layer layer) {
+        layer.valid = true;
+        renders++;
+    }
+
+    /**
+     * Marks a layer as needing to be rendered again the next time it is drawn. Its framebuffer is kept and reused.
+     * @param identifier the identifier of the layer
+     * @return whether there was a layer with the given identifier
+     */
+    public boolean invalidate(String identifier) {
+        Layer layer = layers.get(identifier);
+
+        if (layer == null) {
+            return false;
+        }
+
+        layer.valid = false;
+
+        return true;
+    }
+
+    /**
+     * Marks every layer as needing to be rendered again
+     */
+    public void invalidateAll() {
+        for (Layer layer : layers.values()) {
+            layer.valid = false;
+        }
+    }
+
+    /**
+     * Deletes a layer and its framebuffer
+     * @param identifier the identifier of the layer
+     * @return the layer, or null if there wasn't one with the given identifier
+     */
+    public Layer remove(String identifier) {
+        Layer layer = layers.remove(identifier);
+
+        if (layer != null) {
+            release(layer);
+        }
+
+        return layer;
+    }
+
+    /**
+     * Deletes the framebuffers of the least recently drawn layers until they fit in the budget, and starts counting a new frame.
+     * Must be called once per frame, outside of it, since the framebuffers may still be waiting to be drawn.
+     * @return the number of layers evicted
+     */
+    public int trim() {
+        int evicted = 0;
+
+        if (used > budget) {
+            Layer[] candidates = new Layer[layers.size()];
+            int count = 0;
+
+            for (Layer layer : layers.values()) {
+                if (layer.framebuffer != null && layer.lastUsed < frame) {
+                    candidates[count++] = layer;
+                }
+            }
+
+            Arrays.sort(candidates, 0, count, (first, second) -> Long.compare(first.lastUsed, second.lastUsed));
+
+            while (used > budget && evicted < count) {
+                release(candidates[evicted++]);
+                evictions++;
+            }
+        }
+
+        frame++;
+
+        return evicted;
+    }
+
+    /**
+     * Deletes every layer
+     */
+    public void clear() {
+        layers.values().forEach(this::release);
+        layers.clear();
+    }
+
+    /**
+     * Sets how many bytes the framebuffers may take up before layers are evicted
+     * @param budget the budget in bytes
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the estimated size of the framebuffers which currently exist, in bytes
+     */
+    public long getUsed() {
+        return used;
+    }
+
+    public int size() {
+        return layers.size();
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of times a layer has been rendered into its framebuffer
+     */
+    public long getRenders() {
+        return renders;
+    }
+
+    private void release(Layer layer) {
+        if (layer.framebuffer != null) {
+            nvgluDeleteFramebuffer(handle, layer.framebuffer);
+            used -= layer.getSize();
+            layer.framebuffer = null;
+        }
+
+        layer.valid = false;
+    }
+
+    /**
+     * A block rendered into a framebuffer of its own
+     */
+    public static final class Layer {
+
+        private final String identifier;
+
+        private int width;
+        private int height;
+
+        private NVGLUFramebuffer framebuffer = null;
+        private boolean valid = false;
+        private long lastUsed;
+
+        private Layer(String identifier, int width, int height) {
+            this.identifier = identifier;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return the NanoVG image of the framebuffer, or -1 if the layer doesn't have one
+         */
+        public int getImage() {
+            return framebuffer == null ? -1 : framebuffer.image();
+        }
+
+        /**
+         * @return whether the framebuffer holds what the layer last rendered, so it can be drawn as it is
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        // RGBA colour and an 8 bit stencil
+        private long getSize() {
+            return (long) width * height * 5;
+        }
+
+    }
+
+}
@@ -0,0 +1,392 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGPaint;
+
+import java.util.Arrays;
+
+/**
+ * Passes drawing operations on to another renderer, merging consecutive fills of the same opaque colour
+ * into a single path, so that many same-coloured shapes cost one fill rather than one each.
+ * The shapes of each path are held back until its fill is known. A fill of the same colour as the
+ * previous one adds its shapes to the previous path, and anything else first fills the previous path.
+ * NanoVG fills every shape with a solid winding, so merged shapes look the same as separate fills,
+ * but only opaque colours are merged, since translucent shapes which overlap would otherwise blend once instead of twice.
+ * {@link MergingRenderer#flush()} must be called before the frame ends.
+ */
+public class MergingRenderer implements Renderer {
+
+    private static final int RECT = 0;
+    private static final int ROUNDED_RECT = 1;
+    private static final int CIRCLE = 2;
+    private static final int MOVE_TO = 3;
+    private static final int LINE_TO = 4;
+    private static final int CLOSE_PATH = 5;
+
+    private final Renderer renderer;
+    private boolean enabled = false;
+
+    // the shapes of the path being built, which haven't been passed on yet
+    private int[] ops = new int[16];
+    private int opCount = 0;
+    private float[] floats = new float[64];
+    private int floatCount = 0;
+
+    // whether a path has been started, and whether it has been passed on directly because the state changed while building it
+    private boolean building = false;
+    private boolean direct = false;
+
+    // whether the renderer has a path whose fill has been held back, and its colour
+    private boolean pending = false;
+    private int pendingColour = 0;
+
+    private long fills = 0;
+    private long merged = 0;
+
+    /**
+     * @param renderer the renderer operations are passed on to
+     */
+    public MergingRenderer(Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Enables or disables merging. Disabling it fills anything held back.
+     */
+    public void setEnabled(boolean enabled) {
+        if (!enabled) {
+            flush();
+        }
+
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Fills the path which has been held back, if there is one
+     */
+    public void flush() {
+        if (pending) {
+            renderer.fill(pendingColour);
+            pending = false;
+            fills++;
+        }
+    }
+
+    /**
+     * Drops the path being built and the path which has been held back without passing them on, for frames which are abandoned
+     */
+    public void discard() {
+        building = false;
+        direct = false;
+        pending = false;
+        opCount = 0;
+        floatCount = 0;
+    }
+
+    /**
+     * @return the number of fills passed on
+     */
+    public long getFills() {
+        return fills;
+    }
+
+    /**
+     * @return the number of fills which were merged into the previous one
+     */
+    public long getMerged() {
+        return merged;
+    }
+
+    /**
+     * Resets the fill and merge counters
+     */
+    public void resetStatistics() {
+        fills = 0;
+        merged = 0;
+    }
+
+    @Override
+    public void beginPath() {
+        if (!enabled) {
+            renderer.beginPath();
+            return;
+        }
+
+        building = true;
+        direct = false;
+        opCount = 0;
+        floatCount = 0;
+    }
+
+    @Override
+    public void closePath() {
+        if (buffering()) {
+            op(CLOSE_PATH);
+        } else if (!pending) {
+            // a merged path only has closed shapes, so closing it again changes nothing
+            renderer.closePath();
+        }
+    }
+
+    @Override
+    public void rect(float x, float y, float width, float height) {
+        if (buffering()) {
+            op(RECT);
+            floats4(x, y, width, height);
+        } else {
+            renderer.rect(x, y, width, height);
+        }
+    }
+
+    @Override
+    public void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        if (buffering()) {
+            op(ROUNDED_RECT);
+            floats4(x, y, width, height);
+            floats4(topLeft, topRight, bottomRight, bottomLeft);
+        } else {
+            renderer.roundedRect(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+        }
+    }
+
+    @Override
+    public void circle(float x, float y, float radius) {
+        if (buffering()) {
+            op(CIRCLE);
+            floats3(x, y, radius);
+        } else {
+            renderer.circle(x, y, radius);
+        }
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        if (buffering()) {
+            op(MOVE_TO);
+            floats2(x, y);
+        } else {
+            renderer.moveTo(x, y);
+        }
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        if (buffering()) {
+            op(LINE_TO);
+            floats2(x, y);
+        } else {
+            renderer.lineTo(x, y);
+        }
+    }
+
+    @Override
+    public void fill(int colour) {
+        if (!buffering()) {
+            renderer.fill(colour);
+            building = false;
+            return;
+        }
+
+        building = false;
+
+        if (pending && colour == pendingColour) {
+            replay();
+            merged++;
+            return;
+        }
+
+        flush();
+
+        renderer.beginPath();
+        replay();
+
+        if ((colour >>> 24) == 0xFF) {
+            pending = true;
+            pendingColour = colour;
+        } else {
+            renderer.fill(colour);
+            fills++;
+        }
+    }
+
+    @Override
+    public void fill(NVGPaint paint) {
+        passOn();
+        renderer.fill(paint);
+        building = false;
+    }
+
+    @Override
+    public void stroke(float thickness, int colour) {
+        passOn();
+        renderer.stroke(thickness, colour);
+        building = false;
+    }
+
+    @Override
+    public void stroke(float thickness, NVGPaint paint) {
+        passOn();
+        renderer.stroke(thickness, paint);
+        building = false;
+    }
+
+    @Override
+    public void text(float x, float y, String text, String font, float size, int alignment, int colour) {
+        flush();
+        renderer.text(x, y, text, font, size, alignment, colour);
+    }
+
+    @Override
+    public void text(float x, float y, String text, int font, float size, int alignment, int colour) {
+        flush();
+        renderer.text(x, y, text, font, size, alignment, colour);
+    }
+
+    @Override
+    public void save() {
+        passOn();
+        renderer.save();
+    }
+
+    @Override
+    public void restore() {
+        passOn();
+        renderer.restore();
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        passOn();
+        renderer.translate(x, y);
+    }
+
+    @Override
+    public void rotate(float angle) {
+        passOn();
+        renderer.rotate(angle);
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        passOn();
+        renderer.scale(x, y);
+    }
+
+    @Override
+    public void intersectScissor(float x, float y, float width, float height) {
+        passOn();
+        renderer.intersectScissor(x, y, width, height);
+    }
+
+    @Override
+    public void lineCap(int cap) {
+        passOn();
+        renderer.lineCap(cap);
+    }
+
+    @Override
+    public void lineJoin(int join) {
+        passOn();
+        renderer.lineJoin(join);
+    }
+
+    @Override
+    public void globalAlpha(float alpha) {
+        passOn();
+        renderer.globalAlpha(alpha);
+    }
+
+    private boolean buffering() {
+        return enabled && building && !direct;
+    }
+
+    // fills anything held back and passes on the path being built, so that an operation can be passed on in order
+    private void passOn() {
+        flush();
+
+        if (buffering()) {
+            renderer.beginPath();
+            replay();
+            direct = true;
+        }
+    }
+
+    private void replay() {
+        int f = 0;
+
+        for (int i = 0; i < opCount; i++) {
+            switch (ops[i]) {
+                case RECT:
+                    renderer.rect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3]);
+                    f += 4;
+                    break;
+
+                case ROUNDED_RECT:
+                    renderer.roundedRect(floats[f], floats[f + 1], floats[f + 2], floats[f + 3], floats[f + 4], floats[f + 5], floats[f + 6], floats[f + 7]);
+                    f += 8;
+                    break;
+
+                case CIRCLE:
+                    renderer.circle(floats[f], floats[f + 1], floats[f + 2]);
+                    f += 3;
+                    break;
+
+                case MOVE_TO:
+                    renderer.moveTo(floats[f], floats[f + 1]);
+                    f += 2;
+                    break;
+
+                case LINE_TO:
+                    renderer.lineTo(floats[f], floats[f + 1]);
+                    f += 2;
+                    break;
+
+                case CLOSE_PATH:
+                    renderer.closePath();
+                    break;
+            }
+        }
+
+        opCount = 0;
+        floatCount = 0;
+    }
+
+    private void op(int op) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, opCount * 2);
+        }
+
+        ops[opCount++] = op;
+    }
+
+    private void floats2(float first, float second) {
+        ensureFloats(2);
+        floats[floatCount++] = first;
+        floats[floatCount++] = second;
+    }
+
+    private void floats3(float first, float second, float third) {
+        ensureFloats(3);
+        floats[floatCount++] = first;
+        floats[floatCount++] = second;
+        floats[floatCount++] = third;
+    }
+
+    private void floats4(float first, float second, float third, float fourth) {
+        ensureFloats(4);
+        floats[floatCount++] = first;
+        floats[floatCount++] = second;
+        floats[floatCount++] = third;
+        floats[floatCount++] = fourth;
+    }
+
+    private void ensureFloats(int count) {
+        if (floatCount + count > floats.length) {
+            floats = Arrays.copyOf(floats, Math.max(floats.length * 2, floatCount + count));
+        }
+    }
+
+}
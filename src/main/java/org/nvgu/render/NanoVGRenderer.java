@@ -0,0 +1,363 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.system.NativeResource;
+import org.nvgu.util.Colours;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+
+/**
+ * Issues drawing operations straight to a NanoVG instance.
+ * The render state NanoVG was last given, such as the font, stroke width and alignment, is mirrored here,
+ * including across saves and restores, so that setting a value which is already current doesn't cross into native code.
+ * If the state is changed directly through NanoVG, {@link NanoVGRenderer#invalidate()} must be called afterwards.
+ */
+public class NanoVGRenderer implements Renderer, NativeResource {
+
+    // NanoVG ignores saves beyond this depth, and restores below the first state
+    private static final int MAX_STATES = 32;
+
+    private final long handle;
+
+    // NanoVG copies colours when they're set, so one struct is enough for every packed colour
+    private final NVGColor colour = NVGColor.calloc();
+
+    // states[depth - 1] is the current state
+    private final State[] states = new State[MAX_STATES];
+    private int depth = 1;
+
+    private long issued = 0;
+    private long elided = 0;
+
+    /**
+     * @param handle the handle of the NanoVG instance
+     */
+    public NanoVGRenderer(long handle) {
+        this.handle = handle;
+
+        for (int i = 0; i < MAX_STATES; i++) {
+            states[i] = new State();
+        }
+
+        invalidate();
+    }
+
+    /**
+     * Sets the mirrored state to the one NanoVG starts every frame with. Must be called after {@code nvgBeginFrame}.
+     */
+    public void reset() {
+        depth = 1;
+
+        State state = states[0];
+        state.fontName = null;
+        state.fontId = 0;
+        state.fontSize = 16;
+        state.alignment = NVG_ALIGN_LEFT | NVG_ALIGN_BASELINE;
+        state.strokeWidth = 1;
+        state.lineCap = NVG_BUTT;
+        state.lineJoin = NVG_MITER;
+        state.alpha = 1;
+        state.fillColour = 0xFFFFFFFF;
+        state.fillColourKnown = true;
+    }
+
+    /**
+     * Forgets the mirrored state, so that every value is set again the next time it is used
+     */
+    public void invalidate() {
+        depth = 1;
+        states[0].invalidate();
+    }
+
+    @Override
+    public void beginPath() {
+        nvgBeginPath(handle);
+    }
+
+    @Override
+    public void closePath() {
+        nvgClosePath(handle);
+    }
+
+    @Override
+    public void rect(float x, float y, float width, float height) {
+        nvgRect(handle, x, y, width, height);
+    }
+
+    @Override
+    public void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        nvgRoundedRectVarying(handle, x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+    }
+
+    @Override
+    public void circle(float x, float y, float radius) {
+        nvgCircle(handle, x, y, radius);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        nvgMoveTo(handle, x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        nvgLineTo(handle, x, y);
+    }
+
+    @Override
+    public void fill(int colour) {
+        fillColour(colour);
+        nvgFill(handle);
+    }
+
+    @Override
+    public void fill(NVGPaint paint) {
+        nvgFillPaint(handle, paint);
+        states[depth - 1].fillColourKnown = false;
+
+        nvgFill(handle);
+    }
+
+    @Override
+    public void stroke(float thickness, int colour) {
+        strokeWidth(thickness);
+        nvgStrokeColor(handle, Colours.unpack(colour, this.colour));
+        nvgStroke(handle);
+    }
+
+    @Override
+    public void stroke(float thickness, NVGPaint paint) {
+        strokeWidth(thickness);
+        nvgStrokePaint(handle, paint);
+        nvgStroke(handle);
+    }
+
+    @Override
+    public void text(float x, float y, String text, String font, float size, int alignment, int colour) {
+        State state = states[depth - 1];
+
+        fillColour(colour);
+
+        if (font.equals(state.fontName)) {
+            elided++;
+        } else {
+            nvgFontFace(handle, font);
+            state.fontName = font;
+            state.fontId = -1;
+            issued++;
+        }
+
+        textStyle(state, size, alignment);
+        nvgText(handle, x, y, text);
+    }
+
+    @Override
+    public void text(float x, float y, String text, int font, float size, int alignment, int colour) {
+        State state = states[depth - 1];
+
+        fillColour(colour);
+
+        if (font == state.fontId) {
+            elided++;
+        } else {
+            nvgFontFaceId(handle, font);
+            state.fontId = font;
+            state.fontName = null;
+            issued++;
+        }
+
+        textStyle(state, size, alignment);
+        nvgText(handle, x, y, text);
+    }
+
+    @Override
+    public void save() {
+        nvgSave(handle);
+
+        if (depth < MAX_STATES) {
+            states[depth].set(states[depth - 1]);
+            depth++;
+        }
+    }
+
+    @Override
+    public void restore() {
+        nvgRestore(handle);
+
+        if (depth > 1) {
+            depth--;
+        }
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        nvgTranslate(handle, x, y);
+    }
+
+    @Override
+    public void rotate(float angle) {
+        nvgRotate(handle, angle);
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        nvgScale(handle, x, y);
+    }
+
+    @Override
+    public void intersectScissor(float x, float y, float width, float height) {
+        nvgIntersectScissor(handle, x, y, width, height);
+    }
+
+    @Override
+    public void lineCap(int cap) {
+        State state = states[depth - 1];
+
+        if (state.lineCap == cap) {
+            elided++;
+        } else {
+            nvgLineCap(handle, cap);
+            state.lineCap = cap;
+            issued++;
+        }
+    }
+
+    @Override
+    public void lineJoin(int join) {
+        State state = states[depth - 1];
+
+        if (state.lineJoin == join) {
+            elided++;
+        } else {
+            nvgLineJoin(handle, join);
+            state.lineJoin = join;
+            issued++;
+        }
+    }
+
+    @Override
+    public void globalAlpha(float alpha) {
+        State state = states[depth - 1];
+
+        if (state.alpha == alpha) {
+            elided++;
+        } else {
+            nvgGlobalAlpha(handle, alpha);
+            state.alpha = alpha;
+            issued++;
+        }
+    }
+
+    /**
+     * @return the number of state changes which were passed on to NanoVG
+     */
+    public long getIssuedStateChanges() {
+        return issued;
+    }
+
+    /**
+     * @return the number of state changes which were skipped because the value was already current
+     */
+    public long getElidedStateChanges() {
+        return elided;
+    }
+
+    /**
+     * Resets the issued and elided counters
+     */
+    public void resetStatistics() {
+        issued = 0;
+        elided = 0;
+    }
+
+    @Override
+    public void free() {
+        colour.free();
+    }
+
+    private void fillColour(int colour) {
+        State state = states[depth - 1];
+
+        if (state.fillColourKnown && state.fillColour == colour) {
+            elided++;
+        } else {
+            nvgFillColor(handle, Colours.unpack(colour, this.colour));
+            state.fillColour = colour;
+            state.fillColourKnown = true;
+            issued++;
+        }
+    }
+
+    private void strokeWidth(float width) {
+        State state = states[depth - 1];
+
+        if (state.strokeWidth == width) {
+            elided++;
+        } else {
+            nvgStrokeWidth(handle, width);
+            state.strokeWidth = width;
+            issued++;
+        }
+    }
+
+    private void textStyle(State state, float size, int alignment) {
+        if (state.fontSize == size) {
+            elided++;
+        } else {
+            nvgFontSize(handle, size);
+            state.fontSize = size;
+            issued++;
+        }
+
+        if (state.alignment == alignment) {
+            elided++;
+        } else {
+            nvgTextAlign(handle, alignment);
+            state.alignment = alignment;
+            issued++;
+        }
+    }
+
+    // unknown values are null, -1 or NaN, which never match a value being set
+    private static final class State {
+
+        private String fontName;
+        private int fontId;
+        private float fontSize;
+        private int alignment;
+        private float strokeWidth;
+        private int lineCap;
+        private int lineJoin;
+        private float alpha;
+        private int fillColour;
+        private boolean fillColourKnown;
+
+        private void invalidate() {
+            fontName = null;
+            fontId = -1;
+            fontSize = Float.NaN;
+            alignment = -1;
+            strokeWidth = Float.NaN;
+            lineCap = -1;
+            lineJoin = -1;
+            alpha = Float.NaN;
+            fillColourKnown = false;
+        }
+
+        private void set(State other) {
+            fontName = other.fontName;
+            fontId = other.fontId;
+            fontSize = other.fontSize;
+            alignment = other.alignment;
+            strokeWidth = other.strokeWidth;
+            lineCap = other.lineCap;
+            lineJoin = other.lineJoin;
+            alpha = other.alpha;
+            fillColour = other.fillColour;
+            fillColourKnown = other.fillColourKnown;
+        }
+
+    }
+
+}
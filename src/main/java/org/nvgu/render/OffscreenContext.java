@@ -0,0 +1,238 @@
+package org.nvgu.render;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.egl.EGL;
+import org.lwjgl.egl.EGL10;
+import org.lwjgl.egl.EGLCapabilities;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.NativeResource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.egl.EGL10.*;
+import static org.lwjgl.egl.EGL12.*;
+import static org.lwjgl.egl.EGL14.*;
+import static org.lwjgl.egl.EXTPlatformBase.*;
+import static org.lwjgl.egl.KHRCreateContext.*;
+
+/**
+ * An OpenGL 3.3 core context without a window, created through EGL, so that NanoVG can render on machines without a display,
+ * such as servers rendering with Mesa's llvmpipe. Mesa's surfaceless platform is used when it is available,
+ * which needs no display server at all, and the default display otherwise.
+ * The context has nothing to draw into by itself, so frames are drawn into an {@link OffscreenTarget}.
+ * A context can only be current on one thread at a time.
+ */
+public class OffscreenContext implements NativeResource {
+
+    // not in LWJGL, from EGL_MESA_platform_surfaceless
+    private static final int EGL_PLATFORM_SURFACELESS_MESA = 0x31DD;
+
+    // displays are shared by every context in the process, so each is only terminated once its last context is freed
+    private static final Map<Long, Integer> displays = new HashMap<>();
+
+    private final long display;
+    private final long context;
+    private final long surface;
+    private final GLCapabilities capabilities;
+
+    private boolean freed = false;
+
+    /**
+     * Creates a context and makes it current on the calling thread
+     */
+    public OffscreenContext() {
+        this(null);
+    }
+
+    /**
+     * Creates a context and makes it current on the calling thread
+     * @param shared a context to share textures and other objects with, or null
+     */
+    public OffscreenContext(OffscreenContext shared) {
+        this.display = shared == null ? openDisplay() : retain(shared.display);
+
+        EGLCapabilities egl = EGL.createDisplayCapabilities(display);
+
+        if (!eglBindAPI(EGL_OPENGL_API)) {
+            throw fail(display, "bind the OpenGL API", EGL_NO_CONTEXT, EGL_NO_SURFACE);
+        }
+
+        // without a surface there is no default framebuffer, which is fine since everything is drawn into framebuffer objects
+        boolean surfaceless = egl.EGL_KHR_surfaceless_context;
+
+        int[] configAttributes = {
+                EGL_SURFACE_TYPE, surfaceless ? 0 : EGL_PBUFFER_BIT,
+                EGL_RENDERABLE_TYPE, EGL_OPENGL_BIT,
+                EGL_RED_SIZE, 8,
+                EGL_GREEN_SIZE, 8,
+                EGL_BLUE_SIZE, 8,
+                EGL_ALPHA_SIZE, 8,
+                EGL_STENCIL_SIZE, 8,
+                EGL_NONE
+        };
+
+        long config;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer configs = stack.mallocPointer(1);
+            int[] count = new int[1];
+
+            if (!eglChooseConfig(display, configAttributes, configs, count) || count[0] == 0) {
+                throw fail(display, "find a suitable config", EGL_NO_CONTEXT, EGL_NO_SURFACE);
+            }
+
+            config = configs.get(0);
+        }
+
+        int[] contextAttributes = egl.EGL_KHR_create_context || egl.EGL15 ? new int[] {
+                EGL_CONTEXT_MAJOR_VERSION_KHR, 3,
+                EGL_CONTEXT_MINOR_VERSION_KHR, 3,
+                EGL_CONTEXT_OPENGL_PROFILE_MASK_KHR, EGL_CONTEXT_OPENGL_CORE_PROFILE_BIT_KHR,
+                EGL_NONE
+        } : new int[] {EGL_NONE};
+
+        this.context = eglCreateContext(display, config, shared == null ? EGL_NO_CONTEXT : shared.context, contextAttributes);
+
+        if (context == EGL_NO_CONTEXT) {
+            throw fail(display, "create an OpenGL 3.3 context", EGL_NO_CONTEXT, EGL_NO_SURFACE);
+        }
+
+        this.surface = surfaceless ? EGL_NO_SURFACE : eglCreatePbufferSurface(display, config, new int[] {EGL_WIDTH, 1, EGL_HEIGHT, 1, EGL_NONE});
+
+        if (!surfaceless && surface == EGL_NO_SURFACE) {
+            throw fail(display, "create a pbuffer surface", context, EGL_NO_SURFACE);
+        }
+
+        if (!eglMakeCurrent(display, surface, surface, context)) {
+            throw fail(display, "make the context current", context, surface);
+        }
+
+        // GL functions are loaded through EGL, unless they were already loaded for a window
+        synchronized (displays) {
+            if (GL.getFunctionProvider() == null) {
+                GL.create(EGL10::eglGetProcAddress);
+            }
+        }
+
+        this.capabilities = GL.createCapabilities();
+    }
+
+    /**
+     * Makes the context current on the calling thread
+     */
+    public void makeCurrent() {
+        if (!eglMakeCurrent(display, surface, surface, context)) {
+            throw error("make the context current");
+        }
+
+        GL.setCapabilities(capabilities);
+    }
+
+    /**
+     * Releases the context from the calling thread, so it can be made current on another
+     */
+    public void release() {
+        eglMakeCurrent(display, EGL_NO_SURFACE, EGL_NO_SURFACE, EGL_NO_CONTEXT);
+        GL.setCapabilities(null);
+    }
+
+    public GLCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Releases and destroys the context, which must be current on the calling thread or on none
+     */
+    @Override
+    public void free() {
+        if (freed) {
+            return;
+        }
+
+        release();
+
+        if (surface != EGL_NO_SURFACE) {
+            eglDestroySurface(display, surface);
+        }
+
+        eglDestroyContext(display, context);
+        release(display);
+
+        freed = true;
+    }
+
+    private static long openDisplay() {
+        String extensions = eglQueryString(EGL_NO_DISPLAY, EGL_EXTENSIONS);
+        long display = EGL_NO_DISPLAY;
+
+        if (extensions != null && extensions.contains("EGL_EXT_platform_base") && extensions.contains("EGL_MESA_platform_surfaceless")) {
+            display = eglGetPlatformDisplayEXT(EGL_PLATFORM_SURFACELESS_MESA, EGL_DEFAULT_DISPLAY, (int[]) null);
+        }
+
+        if (display == EGL_NO_DISPLAY) {
+            display = eglGetDisplay(EGL_DEFAULT_DISPLAY);
+        }
+
+        if (display == EGL_NO_DISPLAY) {
+            throw new IllegalStateException("No EGL display is available");
+        }
+
+        synchronized (displays) {
+            if (!displays.containsKey(display)) {
+                int[] major = new int[1];
+                int[] minor = new int[1];
+
+                if (!eglInitialize(display, major, minor)) {
+                    throw error("initialize EGL");
+                }
+
+                displays.put(display, 0);
+            }
+        }
+
+        return retain(display);
+    }
+
+    private static long retain(long display) {
+        synchronized (displays) {
+            displays.merge(display, 1, Integer::sum);
+        }
+
+        return display;
+    }
+
+    private static void release(long display) {
+        synchronized (displays) {
+            if (displays.merge(display, -1, Integer::sum) == 0) {
+                displays.remove(display);
+                eglTerminate(display);
+            }
+        }
+    }
+
+    // destroys whatever was created before a step of creating a context failed, and releases the display
+    private static IllegalStateException fail(long display, String action, long context, long surface) {
+        // read before cleaning up, which would replace the error of the step which failed
+        IllegalStateException error = error(action);
+
+        if (surface != EGL_NO_SURFACE) {
+            eglDestroySurface(display, surface);
+        }
+
+        if (context != EGL_NO_CONTEXT) {
+            eglDestroyContext(display, context);
+        }
+
+        release(display);
+
+        return error;
+    }
+
+    private static IllegalStateException error(String action) {
+        return new IllegalStateException("Failed to " + action + ", EGL error 0x" + Integer.toHexString(eglGetError()));
+    }
+
+}
@@ -0,0 +1,182 @@
+package org.nvgu.render;
+
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * A framebuffer object with a colour and a stencil buffer, which frames are drawn into when there is no window,
+ * and whose pixels can be read back. Pixels are read with premultiplied alpha, as NanoVG blends them,
+ * and with the top row first, even though GL stores framebuffers bottom up.
+ */
+public class OffscreenTarget implements NativeResource {
+
+    private final int width;
+    private final int height;
+
+    private final int framebuffer;
+    private final int colour;
+    private final int stencil;
+
+    // RGBA pixels of the last read, reused by every read
+    private ByteBuffer pixels = null;
+    private int[] row = new int[0];
+
+    /**
+     * Creates the framebuffer in the current context
+     * @param width the width in pixels
+     * @param height the height in pixels
+     */
+    public OffscreenTarget(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        this.colour = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, colour);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_RGBA8, width, height);
+
+        // NanoVG only needs a stencil, but a combined depth and stencil buffer is what every driver supports
+        this.stencil = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, stencil);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH24_STENCIL8, width, height);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        this.framebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, colour);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_STENCIL_ATTACHMENT, GL_RENDERBUFFER, stencil);
+
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            free();
+            throw new IllegalStateException("Failed to create a " + width + "x" + height + " framebuffer, status 0x" + Integer.toHexString(status));
+        }
+    }
+
+    /**
+     * Binds the framebuffer and sets the viewport to cover it
+     */
+    public void bind() {
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        glViewport(0, 0, width, height);
+    }
+
+    /**
+     * Clears the colour and stencil of the framebuffer, which must be bound
+     * @param argb the colour to clear to
+     */
+    public void clear(int argb) {
+        glClearColor((argb >> 16 & 0xFF) / 255f, (argb >> 8 & 0xFF) / 255f, (argb & 0xFF) / 255f, (argb >>> 24) / 255f);
+        glClearStencil(0);
+        glClear(GL_COLOR_BUFFER_BIT | GL_STENCIL_BUFFER_BIT);
+    }
+
+    /**
+     * Reads the pixels of the framebuffer, waiting for everything drawn into it to finish
+     * @return the RGBA pixels, in a direct buffer which is reused by the next read
+     */
+    public ByteBuffer read() {
+        if (pixels == null) {
+            pixels = MemoryUtil.memAlloc(width * height * 4);
+        }
+
+        read(pixels);
+
+        return pixels;
+    }
+
+    /**
+     * Reads the pixels of the framebuffer into the given buffer, waiting for everything drawn into it to finish
+     * @param rgba a buffer with room for width * height * 4 bytes from its position
+     */
+    public void read(ByteBuffer rgba) {
+        int stride = width * 4;
+
+        if (rgba.remaining() < stride * height) {
+            throw new IllegalArgumentException("The buffer needs room for " + stride * height + " bytes");
+        }
+
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebuffer);
+        glPixelStorei(GL_PACK_ALIGNMENT, 4);
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, rgba);
+
+        flip(MemoryUtil.memAddress(rgba), stride, height);
+    }
+
+    /**
+     * Reads the pixels of the framebuffer into the given array, waiting for everything drawn into it to finish
+     * @param argb an array of at least width * height pixels, or null to allocate one
+     * @return the array of ARGB pixels
+     */
+    public int[] read(int[] argb) {
+        if (argb == null || argb.length < width * height) {
+            argb = new int[width * height];
+        }
+
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebuffer);
+        glPixelStorei(GL_PACK_ALIGNMENT, 4);
+        glReadPixels(0, 0, width, height, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, argb);
+
+        if (row.length < width) {
+            row = new int[width];
+        }
+
+        for (int top = 0, bottom = height - 1; top < bottom; top++, bottom--) {
+            System.arraycopy(argb, top * width, row, 0, width);
+            System.arraycopy(argb, bottom * width, argb, top * width, width);
+            System.arraycopy(row, 0, argb, bottom * width, width);
+        }
+
+        return argb;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFramebuffer() {
+        return framebuffer;
+    }
+
+    /**
+     * Deletes the framebuffer, in the context it was created in
+     */
+    @Override
+    public void free() {
+        glDeleteFramebuffers(framebuffer);
+        glDeleteRenderbuffers(colour);
+        glDeleteRenderbuffers(stencil);
+
+        if (pixels != null) {
+            MemoryUtil.memFree(pixels);
+            pixels = null;
+        }
+    }
+
+    // swaps the rows of an image in place, so the bottom row comes first
+    static void flip(long address, int stride, int height) {
+        long temporary = MemoryUtil.nmemAlloc(stride);
+
+        for (int top = 0, bottom = height - 1; top < bottom; top++, bottom--) {
+            long first = address + (long) top * stride;
+            long second = address + (long) bottom * stride;
+
+            MemoryUtil.memCopy(first, temporary, stride);
+            MemoryUtil.memCopy(second, first, stride);
+            MemoryUtil.memCopy(temporary, second, stride);
+        }
+
+        MemoryUtil.nmemFree(temporary);
+    }
+
+}
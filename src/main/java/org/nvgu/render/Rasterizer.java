@@ -0,0 +1,266 @@
+package org.nvgu.render;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Turns closed polygons into the exact fraction of each pixel they cover, by accumulating the signed area
+ * each edge covers in every cell and summing the cells along each row.
+ * Edges with opposite directions cancel out, so polygons must all be wound the same way to be filled as their union.
+ * Rows are independent of each other, so large polygons are split into bands of rows which are rasterized in parallel.
+ */
+final class Rasterizer {
+
+    // below this many pixels, splitting into bands costs more than it saves
+    private static final int PARALLEL_AREA = 128 * 128;
+    private static final int MIN_BAND_HEIGHT = 8;
+
+    /**
+     * Receives the coverage of each row
+     */
+    interface SpanPainter {
+
+        /**
+         * @param y the row
+         * @param x the column of the first pixel
+         * @param coverage the coverage of each pixel from 0 to 1, starting at the offset
+         * @param offset where the first pixel's coverage is
+         * @param length the number of pixels
+         */
+        void paint(int y, int x, float[] coverage, int offset, int length);
+
+    }
+
+    private final ForkJoinPool pool;
+
+    // x0, y0, x1, y1 of each edge, relative to the top left of the bounds
+    private float[] edges = new float[256];
+    private int edgeCount = 0;
+
+    // one row of stride cells per row of the bounds, always zero between polygons
+    private float[] cells = new float[0];
+
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+    private int stride;
+
+    Rasterizer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Starts a new polygon, which is only drawn within the given bounds
+     * @return false if the bounds are empty
+     */
+    boolean begin(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.stride = right - left + 2;
+        this.edgeCount = 0;
+
+        return right > left && bottom > top;
+    }
+
+    /**
+     * Adds an edge of the polygon, in pixels
+     */
+    void line(float x0, float y0, float x1, float y1) {
+        if (y0 == y1 || Math.max(y0, y1) <= top || Math.min(y0, y1) >= bottom) {
+            return;
+        }
+
+        // the parts left of the bounds still cover every pixel to their right, so they become a vertical edge on the left
+        if ((x0 < left) != (x1 < left)) {
+            float y = y0 + (y1 - y0) * (left - x0) / (x1 - x0);
+
+            clipRight(x0, y0, left, y);
+            clipRight(left, y, x1, y1);
+        } else {
+            clipRight(x0, y0, x1, y1);
+        }
+    }
+
+    /**
+     * Rasterizes the polygon, passing the coverage of every row in the bounds to the painter.
+     * The painter may be called from several threads at once, but never for the same row.
+     */
+    void rasterize(SpanPainter painter) {
+        int rows = bottom - top;
+
+        if (edgeCount == 0 || rows <= 0) {
+            return;
+        }
+
+        if (cells.length < stride * rows) {
+            cells = new float[stride * rows];
+        }
+
+        int parallelism = pool.getParallelism();
+
+        if (parallelism > 1 && (long) rows * (right - left) >= PARALLEL_AREA && rows >= MIN_BAND_HEIGHT * 2) {
+            pool.invoke(new Band(painter, 0, rows, Math.max(MIN_BAND_HEIGHT, rows / (parallelism * 4))));
+        } else {
+            band(painter, 0, rows);
+        }
+    }
+
+    // the parts right of the bounds cover nothing within them, so they become a vertical edge on the right,
+    // leaving the slope of the part within the bounds as it was
+    private void clipRight(float x0, float y0, float x1, float y1) {
+        if ((x0 > right) != (x1 > right)) {
+            float y = y0 + (y1 - y0) * (right - x0) / (x1 - x0);
+
+            add(x0, y0, right, y);
+            add(right, y, x1, y1);
+        } else {
+            add(x0, y0, x1, y1);
+        }
+    }
+
+    private void add(float x0, float y0, float x1, float y1) {
+        if (edgeCount + 4 > edges.length) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+
+        // edges have already been split where they cross the bounds, so clamping only flattens the parts outside onto them
+        float width = right - left;
+
+        edges[edgeCount++] = Math.min(Math.max(x0 - left, 0), width);
+        edges[edgeCount++] = y0 - top;
+        edges[edgeCount++] = Math.min(Math.max(x1 - left, 0), width);
+        edges[edgeCount++] = y1 - top;
+    }
+
+    private void band(SpanPainter painter, int from, int to) {
+        float[] e = edges;
+
+        for (int i = 0; i < edgeCount; i += 4) {
+            accumulate(e[i], e[i + 1], e[i + 2], e[i + 3], from, to);
+        }
+
+        float[] c = cells;
+        int width = right - left;
+
+        for (int y = from; y < to; y++) {
+            int row = y * stride;
+            float sum = 0;
+
+            for (int x = row; x < row + width; x++) {
+                sum += c[x];
+                c[x] = Math.min(1, Math.abs(sum));
+            }
+
+            painter.paint(top + y, left, c, row, width);
+
+            Arrays.fill(c, row, row + stride, 0);
+        }
+    }
+
+    // adds the area an edge covers to the cells of the rows between from and to
+    private void accumulate(float x0, float y0, float x1, float y1, int from, int to) {
+        float direction = 1;
+
+        if (y0 > y1) {
+            float x = x0;
+            x0 = x1;
+            x1 = x;
+
+            float y = y0;
+            y0 = y1;
+            y1 = y;
+
+            direction = -1;
+        }
+
+        int first = Math.max(from, (int) Math.floor(y0));
+        int last = Math.min(to, (int) Math.ceil(y1));
+
+        float slope = (x1 - x0) / (y1 - y0);
+        float[] c = cells;
+
+        for (int y = first; y < last; y++) {
+            float entry = Math.max(y, y0);
+            float exit = Math.min(y + 1, y1);
+
+            float xa = x0 + slope * (entry - y0);
+            float xb = x0 + slope * (exit - y0);
+            float d = (exit - entry) * direction;
+
+            float xl = Math.min(xa, xb);
+            float xr = Math.max(xa, xb);
+            float xlFloor = (float) Math.floor(xl);
+            float xrCeil = (float) Math.ceil(xr);
+            int xli = (int) xlFloor;
+            int xri = (int) xrCeil;
+            int row = y * stride;
+
+            if (xri <= xli + 1) {
+                // within a single column, split between it and the next by where the edge crosses on average
+                float middle = 0.5f * (xa + xb) - xlFloor;
+
+                c[row + xli] += d - d * middle;
+                c[row + xli + 1] += d * middle;
+            } else {
+                // across several columns, each gets the area of the trapezoid within it
+                float s = 1 / (xr - xl);
+                float xlf = xl - xlFloor;
+                float xrf = xr - xrCeil + 1;
+                float a0 = 0.5f * s * (1 - xlf) * (1 - xlf);
+                float am = 0.5f * s * xrf * xrf;
+
+                c[row + xli] += d * a0;
+
+                if (xri == xli + 2) {
+                    c[row + xli + 1] += d * (1 - a0 - am);
+                } else {
+                    float a1 = s * (1.5f - xlf);
+                    c[row + xli + 1] += d * (a1 - a0);
+
+                    for (int x = xli + 2; x < xri - 1; x++) {
+                        c[row + x] += d * s;
+                    }
+
+                    float a2 = a1 + (xri - xli - 3) * s;
+                    c[row + xri - 1] += d * (1 - a2 - am);
+                }
+
+                c[row + xri] += d * am;
+            }
+        }
+    }
+
+    private final class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SpanPainter painter;
+        private final int from;
+        private final int to;
+        private final int height;
+
+        private Band(SpanPainter painter, int from, int to, int height) {
+            this.painter = painter;
+            this.from = from;
+            this.to = to;
+            this.height = height;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= height) {
+                band(painter, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Band(painter, from, middle, height), new Band(painter, middle, to, height));
+        }
+
+    }
+
+}
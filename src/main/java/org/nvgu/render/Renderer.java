@@ -0,0 +1,102 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGPaint;
+
+/**
+ * The drawing operations {@link org.nvgu.NVGU} is built on.
+ * Colours are packed as ARGB. Paints only need to remain valid for the duration of the call.
+ */
+public interface Renderer {
+
+    void beginPath();
+
+    void closePath();
+
+    void rect(float x, float y, float width, float height);
+
+    void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft);
+
+    void circle(float x, float y, float radius);
+
+    void moveTo(float x, float y);
+
+    void lineTo(float x, float y);
+
+    /**
+     * Fills the current path with a colour
+     * @param colour the colour, packed as ARGB
+     */
+    void fill(int colour);
+
+    /**
+     * Fills the current path with a paint
+     * @param paint the paint, such as a gradient or image pattern
+     */
+    void fill(NVGPaint paint);
+
+    /**
+     * Strokes the current path with a colour
+     * @param thickness the width of the stroke
+     * @param colour the colour, packed as ARGB
+     */
+    void stroke(float thickness, int colour);
+
+    /**
+     * Strokes the current path with a paint
+     * @param thickness the width of the stroke
+     * @param paint the paint, such as a gradient or image pattern
+     */
+    void stroke(float thickness, NVGPaint paint);
+
+    /**
+     * Draws a single line of text
+     * @param x the x position
+     * @param y the y position
+     * @param text the text to draw
+     * @param font the identifier of the font
+     * @param size the font size
+     * @param alignment the NanoVG alignment flags
+     * @param colour the colour, packed as ARGB
+     */
+    void text(float x, float y, String text, String font, float size, int alignment, int colour);
+
+    /**
+     * Draws a single line of text, with the font given by its id rather than its identifier
+     * @param x the x position
+     * @param y the y position
+     * @param text the text to draw
+     * @param font the id of the font
+     * @param size the font size
+     * @param alignment the NanoVG alignment flags
+     * @param colour the colour, packed as ARGB
+     */
+    void text(float x, float y, String text, int font, float size, int alignment, int colour);
+
+    void save();
+
+    void restore();
+
+    void translate(float x, float y);
+
+    void rotate(float angle);
+
+    void scale(float x, float y);
+
+    void intersectScissor(float x, float y, float width, float height);
+
+    /**
+     * @param cap the NanoVG line cap, e.g. {@code NVG_ROUND}
+     */
+    void lineCap(int cap);
+
+    /**
+     * @param join the NanoVG line join, e.g. {@code NVG_BEVEL}
+     */
+    void lineJoin(int join);
+
+    /**
+     * @param alpha the transparency applied to everything drawn afterwards, from 0 to 1
+     */
+    void globalAlpha(float alpha);
+
+}
@@ -0,0 +1,1064 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+
+/**
+ * Draws into an array of pixels on the CPU, without NanoVG or a GL context, so that frames can be rendered on machines without a GPU.
+ * Paths, transforms, scissors, strokes and paints behave as they do in NanoVG: every shape is filled as a solid
+ * with antialiased edges, gradients are evaluated the way NanoVG's shader does, and images are sampled bilinearly.
+ * Edges are antialiased by the exact area they cover, and large shapes are rasterized in bands of rows across the pool's threads.
+ * Text isn't drawn, since glyphs are rasterized by NanoVG's font stash.
+ * Images drawn through image patterns must be given to {@link SoftwareRenderer#setImage(int, int, int, int[], int)} first.
+ * The pixels are ARGB with premultiplied alpha, the same as {@link java.awt.image.BufferedImage#TYPE_INT_ARGB_PRE}.
+ */
+public class SoftwareRenderer implements Renderer {
+
+    // matches the depth of NanoVG's own state stack
+    private static final int MAX_STATES = 32;
+
+    private static final float KAPPA = 0.5522847493f;
+
+    // the largest distance a flattened curve may be from the real one, in pixels, as in NanoVG
+    private static final float TOLERANCE = 0.25f;
+    private static final float MITER_LIMIT = 10;
+    private static final int MAX_DISC_SEGMENTS = 64;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private final Rasterizer rasterizer;
+    private final Map<Integer, Image> images = new HashMap<>();
+
+    private final State[] states = new State[MAX_STATES];
+    private int depth = 1;
+
+    // the points of the path in pixels, already transformed, and where each contour starts
+    private float[] points = new float[256];
+    private int pointCount = 0;
+    private int[] contours = new int[16];
+    private boolean[] closed = new boolean[16];
+    private int contourCount = 0;
+
+    // scratch space for the polygons a stroke is built from, which are rasterized as soon as they are added
+    private float[] contour = new float[256];
+    private final float[] quad = new float[8];
+    private final float[] corner = new float[8];
+    private final float[] disc = new float[MAX_DISC_SEGMENTS * 2];
+
+    // scratch space for intersecting scissors
+    private final float[] inverseTransform = new float[6];
+    private final float[] previousScissor = new float[6];
+
+    // reused for every paint, since the pixels are painted before the fill returns
+    private final Paint paint = new Paint();
+
+    /**
+     * Creates a renderer which rasterizes large shapes across the common pool
+     * @param width the width of the frame in pixels
+     * @param height the height of the frame in pixels
+     */
+    public SoftwareRenderer(int width, int height) {
+        this(width, height, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param width the width of the frame in pixels
+     * @param height the height of the frame in pixels
+     * @param pool the pool which bands of rows are rasterized on
+     */
+    public SoftwareRenderer(int width, int height, ForkJoinPool pool) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive, got " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.rasterizer = new Rasterizer(pool);
+
+        for (int i = 0; i < MAX_STATES; i++) {
+            states[i] = new State();
+        }
+
+        reset();
+    }
+
+    /**
+     * Resets the transform, scissor and render state, as NanoVG does at the start of every frame
+     */
+    public void reset() {
+        depth = 1;
+        states[0].reset();
+        pointCount = 0;
+        contourCount = 0;
+    }
+
+    /**
+     * Sets every pixel to the given colour
+     * @param argb the colour, packed as ARGB
+     */
+    public void clear(int argb) {
+        Arrays.fill(pixels, premultiply(argb));
+    }
+
+    /**
+     * Gives the renderer the pixels of an image, so image patterns using it can be drawn
+     * @param image the image, as used in {@link NVGPaint#image()}
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param argb the pixels of the image, packed as ARGB without premultiplied alpha, which are copied
+     * @param flags the NanoVG image flags, of which repeating and flipping are used
+     */
+    public void setImage(int image, int width, int height, int[] argb, int flags) {
+        int[] premultiplied = new int[width * height];
+
+        for (int i = 0; i < premultiplied.length; i++) {
+            premultiplied[i] = (flags & NVG_IMAGE_PREMULTIPLIED) != 0 ? argb[i] : premultiply(argb[i]);
+        }
+
+        images.put(image, new Image(width, height, premultiplied, flags));
+    }
+
+    public void removeImage(int image) {
+        images.remove(image);
+    }
+
+    /**
+     * @return the pixels being drawn into, as ARGB with premultiplied alpha, row by row from the top
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Copies the pixels into the given array as ARGB without premultiplied alpha
+     * @param destination an array of at least width * height pixels
+     */
+    public void copyTo(int[] destination) {
+        for (int i = 0; i < pixels.length; i++) {
+            destination[i] = unpremultiply(pixels[i]);
+        }
+    }
+
+    /**
+     * Copies the pixels into the given buffer, starting at its position, as ARGB without premultiplied alpha
+     * @param destination a buffer with at least width * height pixels remaining
+     */
+    public void copyTo(IntBuffer destination) {
+        int position = destination.position();
+
+        for (int i = 0; i < pixels.length; i++) {
+            destination.put(position + i, unpremultiply(pixels[i]));
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void beginPath() {
+        pointCount = 0;
+        contourCount = 0;
+    }
+
+    @Override
+    public void closePath() {
+        if (contourCount > 0) {
+            closed[contourCount - 1] = true;
+        }
+    }
+
+    @Override
+    public void rect(float x, float y, float width, float height) {
+        moveTo(x, y);
+        lineTo(x, y + height);
+        lineTo(x + width, y + height);
+        lineTo(x + width, y);
+        closePath();
+    }
+
+    @Override
+    public void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        if (topLeft < 0.1f && topRight < 0.1f && bottomRight < 0.1f && bottomLeft < 0.1f) {
+            rect(x, y, width, height);
+            return;
+        }
+
+        float halfWidth = Math.abs(width) * 0.5f;
+        float halfHeight = Math.abs(height) * 0.5f;
+        float signX = Math.signum(width);
+        float signY = Math.signum(height);
+
+        float rxBL = Math.min(bottomLeft, halfWidth) * signX, ryBL = Math.min(bottomLeft, halfHeight) * signY;
+        float rxBR = Math.min(bottomRight, halfWidth) * signX, ryBR = Math.min(bottomRight, halfHeight) * signY;
+        float rxTR = Math.min(topRight, halfWidth) * signX, ryTR = Math.min(topRight, halfHeight) * signY;
+        float rxTL = Math.min(topLeft, halfWidth) * signX, ryTL = Math.min(topLeft, halfHeight) * signY;
+        float k = 1 - KAPPA;
+
+        moveTo(x, y + ryTL);
+        lineTo(x, y + height - ryBL);
+        bezierTo(x, y + height - ryBL * k, x + rxBL * k, y + height, x + rxBL, y + height);
+        lineTo(x + width - rxBR, y + height);
+        bezierTo(x + width - rxBR * k, y + height, x + width, y + height - ryBR * k, x + width, y + height - ryBR);
+        lineTo(x + width, y + ryTR);
+        bezierTo(x + width, y + ryTR * k, x + width - rxTR * k, y, x + width - rxTR, y);
+        lineTo(x + rxTL, y);
+        bezierTo(x + rxTL * k, y, x, y + ryTL * k, x, y + ryTL);
+        closePath();
+    }
+
+    @Override
+    public void circle(float x, float y, float radius) {
+        moveTo(x - radius, y);
+        bezierTo(x - radius, y + radius * KAPPA, x - radius * KAPPA, y + radius, x, y + radius);
+        bezierTo(x + radius * KAPPA, y + radius, x + radius, y + radius * KAPPA, x + radius, y);
+        bezierTo(x + radius, y - radius * KAPPA, x + radius * KAPPA, y - radius, x, y - radius);
+        bezierTo(x - radius * KAPPA, y - radius, x - radius, y - radius * KAPPA, x - radius, y);
+        closePath();
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        if (contourCount == contours.length) {
+            contours = Arrays.copyOf(contours, contourCount * 2);
+            closed = Arrays.copyOf(closed, contourCount * 2);
+        }
+
+        contours[contourCount] = pointCount;
+        closed[contourCount] = false;
+        contourCount++;
+
+        float[] t = states[depth - 1].transform;
+        point(t[0] * x + t[2] * y + t[4], t[1] * x + t[3] * y + t[5]);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        if (contourCount == 0) {
+            moveTo(x, y);
+            return;
+        }
+
+        float[] t = states[depth - 1].transform;
+        point(t[0] * x + t[2] * y + t[4], t[1] * x + t[3] * y + t[5]);
+    }
+
+    @Override
+    public void fill(int colour) {
+        paint.solid(colour, states[depth - 1].alpha);
+        fillPath();
+    }
+
+    @Override
+    public void fill(NVGPaint paint) {
+        this.paint.set(paint, states[depth - 1], 1);
+        fillPath();
+    }
+
+    @Override
+    public void stroke(float thickness, int colour) {
+        State state = states[depth - 1];
+        float width = thickness * averageScale(state.transform);
+
+        // strokes thinner than a pixel are drawn a pixel wide and faded instead, as in NanoVG
+        float alpha = Math.min(1, width);
+        paint.solid(colour, state.alpha * alpha * alpha);
+
+        strokePath(Math.max(1, width));
+    }
+
+    @Override
+    public void stroke(float thickness, NVGPaint paint) {
+        State state = states[depth - 1];
+        float width = thickness * averageScale(state.transform);
+        float alpha = Math.min(1, width);
+
+        this.paint.set(paint, state, alpha * alpha);
+
+        strokePath(Math.max(1, width));
+    }
+
+    @Override
+    public void text(float x, float y, String text, String font, float size, int alignment, int colour) {
+        // glyphs only exist in NanoVG's font stash
+    }
+
+    @Override
+    public void text(float x, float y, String text, int font, float size, int alignment, int colour) {
+    }
+
+    @Override
+    public void save() {
+        if (depth < MAX_STATES) {
+            states[depth].set(states[depth - 1]);
+            depth++;
+        }
+    }
+
+    @Override
+    public void restore() {
+        if (depth > 1) {
+            depth--;
+        }
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        float[] t = states[depth - 1].transform;
+
+        t[4] += t[0] * x + t[2] * y;
+        t[5] += t[1] * x + t[3] * y;
+    }
+
+    @Override
+    public void rotate(float angle) {
+        float[] t = states[depth - 1].transform;
+
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+        float a = t[0], b = t[1], c = t[2], d = t[3];
+
+        t[0] = a * cos + c * sin;
+        t[1] = b * cos + d * sin;
+        t[2] = c * cos - a * sin;
+        t[3] = d * cos - b * sin;
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        float[] t = states[depth - 1].transform;
+
+        t[0] *= x;
+        t[1] *= x;
+        t[2] *= y;
+        t[3] *= y;
+    }
+
+    @Override
+    public void intersectScissor(float x, float y, float width, float height) {
+        State state = states[depth - 1];
+        float[] t = state.transform;
+
+        if (state.scissorExtentX >= 0) {
+            // the previous scissor, transformed into the current space and reduced to the box around it, as in NanoVG
+            invert(t, inverseTransform);
+            multiply(state.scissor, inverseTransform, previousScissor);
+
+            float extentX = state.scissorExtentX * Math.abs(previousScissor[0]) + state.scissorExtentY * Math.abs(previousScissor[2]);
+            float extentY = state.scissorExtentX * Math.abs(previousScissor[1]) + state.scissorExtentY * Math.abs(previousScissor[3]);
+
+            float left = Math.max(previousScissor[4] - extentX, x);
+            float top = Math.max(previousScissor[5] - extentY, y);
+            float right = Math.min(previousScissor[4] + extentX, x + width);
+            float bottom = Math.min(previousScissor[5] + extentY, y + height);
+
+            x = left;
+            y = top;
+            width = Math.max(0, right - left);
+            height = Math.max(0, bottom - top);
+        }
+
+        float[] s = state.scissor;
+        float centreX = x + width * 0.5f;
+        float centreY = y + height * 0.5f;
+
+        s[0] = t[0];
+        s[1] = t[1];
+        s[2] = t[2];
+        s[3] = t[3];
+        s[4] = t[0] * centreX + t[2] * centreY + t[4];
+        s[5] = t[1] * centreX + t[3] * centreY + t[5];
+
+        state.scissorExtentX = width * 0.5f;
+        state.scissorExtentY = height * 0.5f;
+    }
+
+    @Override
+    public void lineCap(int cap) {
+        states[depth - 1].lineCap = cap;
+    }
+
+    @Override
+    public void lineJoin(int join) {
+        states[depth - 1].lineJoin = join;
+    }
+
+    @Override
+    public void globalAlpha(float alpha) {
+        states[depth - 1].alpha = alpha;
+    }
+
+    private void bezierTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        if (contourCount == 0) {
+            return;
+        }
+
+        float[] t = states[depth - 1].transform;
+
+        float x0 = points[pointCount - 2];
+        float y0 = points[pointCount - 1];
+
+        flatten(x0, y0,
+                t[0] * x1 + t[2] * y1 + t[4], t[1] * x1 + t[3] * y1 + t[5],
+                t[0] * x2 + t[2] * y2 + t[4], t[1] * x2 + t[3] * y2 + t[5],
+                t[0] * x3 + t[2] * y3 + t[4], t[1] * x3 + t[3] * y3 + t[5],
+                0);
+    }
+
+    // subdivides a curve until it is flat enough, as in NanoVG
+    private void flatten(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4, int level) {
+        if (level > 10) {
+            return;
+        }
+
+        float dx = x4 - x1;
+        float dy = y4 - y1;
+        float d2 = Math.abs((x2 - x4) * dy - (y2 - y4) * dx);
+        float d3 = Math.abs((x3 - x4) * dy - (y3 - y4) * dx);
+
+        if ((d2 + d3) * (d2 + d3) < TOLERANCE * (dx * dx + dy * dy)) {
+            point(x4, y4);
+            return;
+        }
+
+        float x12 = (x1 + x2) * 0.5f, y12 = (y1 + y2) * 0.5f;
+        float x23 = (x2 + x3) * 0.5f, y23 = (y2 + y3) * 0.5f;
+        float x34 = (x3 + x4) * 0.5f, y34 = (y3 + y4) * 0.5f;
+        float x123 = (x12 + x23) * 0.5f, y123 = (y12 + y23) * 0.5f;
+        float x234 = (x23 + x34) * 0.5f, y234 = (y23 + y34) * 0.5f;
+        float x1234 = (x123 + x234) * 0.5f, y1234 = (y123 + y234) * 0.5f;
+
+        flatten(x1, y1, x12, y12, x123, y123, x1234, y1234, level + 1);
+        flatten(x1234, y1234, x234, y234, x34, y34, x4, y4, level + 1);
+    }
+
+    private void point(float x, float y) {
+        if (pointCount + 2 > points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+
+        points[pointCount++] = x;
+        points[pointCount++] = y;
+    }
+
+    private void fillPath() {
+        if (!beginPolygons(0)) {
+            return;
+        }
+
+        for (int i = 0; i < contourCount; i++) {
+            int start = contours[i];
+            int end = i + 1 < contourCount ? contours[i + 1] : pointCount;
+
+            polygon(points, start, end);
+        }
+
+        rasterizer.rasterize(paint);
+    }
+
+    private void strokePath(float width) {
+        State state = states[depth - 1];
+        float half = width * 0.5f;
+
+        // miters reach furthest past the path
+        float outset = state.lineJoin == NVG_MITER ? half * MITER_LIMIT : half * 1.5f;
+
+        if (!beginPolygons(outset)) {
+            return;
+        }
+
+        for (int i = 0; i < contourCount; i++) {
+            int start = contours[i];
+            int end = i + 1 < contourCount ? contours[i + 1] : pointCount;
+
+            // without repeated points, so every segment has a direction
+            if (contour.length < end - start) {
+                contour = new float[Math.max(contour.length * 2, end - start)];
+            }
+
+            int count = 0;
+
+            for (int p = start; p < end; p += 2) {
+                if (count == 0 || Math.abs(points[p] - contour[count - 2]) > 0.01f || Math.abs(points[p + 1] - contour[count - 1]) > 0.01f) {
+                    contour[count++] = points[p];
+                    contour[count++] = points[p + 1];
+                }
+            }
+
+            boolean loop = closed[i];
+
+            if (loop && count > 4 && Math.abs(contour[0] - contour[count - 2]) <= 0.01f && Math.abs(contour[1] - contour[count - 1]) <= 0.01f) {
+                count -= 2;
+            }
+
+            int vertices = count / 2;
+
+            if (vertices < 2) {
+                if (vertices == 1 && state.lineCap != NVG_BUTT) {
+                    disc(contour[0], contour[1], half);
+                }
+
+                continue;
+            }
+
+            int segments = loop ? vertices : vertices - 1;
+
+            for (int s = 0; s < segments; s++) {
+                int a = s * 2;
+                int b = ((s + 1) % vertices) * 2;
+
+                float dx = contour[b] - contour[a];
+                float dy = contour[b + 1] - contour[a + 1];
+                float length = (float) Math.sqrt(dx * dx + dy * dy);
+                float nx = -dy / length * half;
+                float ny = dx / length * half;
+
+                float ax = contour[a], ay = contour[a + 1];
+                float bx = contour[b], by = contour[b + 1];
+
+                // square caps extend the first and last segments by half the width
+                if (!loop && state.lineCap == NVG_SQUARE) {
+                    if (s == 0) {
+                        ax -= dx / length * half;
+                        ay -= dy / length * half;
+                    }
+
+                    if (s == segments - 1) {
+                        bx += dx / length * half;
+                        by += dy / length * half;
+                    }
+                }
+
+                quad[0] = ax + nx;
+                quad[1] = ay + ny;
+                quad[2] = bx + nx;
+                quad[3] = by + ny;
+                quad[4] = bx - nx;
+                quad[5] = by - ny;
+                quad[6] = ax - nx;
+                quad[7] = ay - ny;
+
+                polygon(quad, 0, 8);
+            }
+
+            for (int v = loop ? 0 : 1; v < (loop ? vertices : vertices - 1); v++) {
+                join(contour, (v + vertices - 1) % vertices, v, (v + 1) % vertices, half, state.lineJoin);
+            }
+
+            if (!loop && state.lineCap == NVG_ROUND) {
+                disc(contour[0], contour[1], half);
+                disc(contour[count - 2], contour[count - 1], half);
+            }
+        }
+
+        rasterizer.rasterize(paint);
+    }
+
+    // fills the gap on the outside of a corner
+    private void join(float[] contour, int previous, int vertex, int next, float half, int join) {
+        float x = contour[vertex * 2];
+        float y = contour[vertex * 2 + 1];
+
+        if (join == NVG_ROUND) {
+            disc(x, y, half);
+            return;
+        }
+
+        float inX = x - contour[previous * 2];
+        float inY = y - contour[previous * 2 + 1];
+        float outX = contour[next * 2] - x;
+        float outY = contour[next * 2 + 1] - y;
+
+        float inLength = (float) Math.sqrt(inX * inX + inY * inY);
+        float outLength = (float) Math.sqrt(outX * outX + outY * outY);
+
+        float inNormalX = -inY / inLength * half, inNormalY = inX / inLength * half;
+        float outNormalX = -outY / outLength * half, outNormalY = outX / outLength * half;
+
+        // the outside of the corner is the side the next segment's offset points back along the previous segment
+        float side = outNormalX * inX + outNormalY * inY > 0 ? 1 : -1;
+
+        float dot = (inNormalX * outNormalX + inNormalY * outNormalY) / (half * half);
+
+        if (join == NVG_MITER && dot > -1 + 1e-4f && Math.sqrt(2 / (1 + dot)) <= MITER_LIMIT) {
+            float miterScale = 1 / (1 + dot);
+            float miterX = (inNormalX + outNormalX) * miterScale;
+            float miterY = (inNormalY + outNormalY) * miterScale;
+
+            corner[0] = x;
+            corner[1] = y;
+            corner[2] = x + side * inNormalX;
+            corner[3] = y + side * inNormalY;
+            corner[4] = x + side * miterX;
+            corner[5] = y + side * miterY;
+            corner[6] = x + side * outNormalX;
+            corner[7] = y + side * outNormalY;
+
+            polygon(corner, 0, 8);
+        } else {
+            corner[0] = x;
+            corner[1] = y;
+            corner[2] = x + side * inNormalX;
+            corner[3] = y + side * inNormalY;
+            corner[4] = x + side * outNormalX;
+            corner[5] = y + side * outNormalY;
+
+            polygon(corner, 0, 6);
+        }
+    }
+
+    private void disc(float x, float y, float radius) {
+        int segments = Math.max(8, Math.min(MAX_DISC_SEGMENTS, (int) Math.ceil(radius * 2)));
+
+        for (int i = 0; i < segments; i++) {
+            double angle = Math.PI * 2 * i / segments;
+
+            disc[i * 2] = x + (float) Math.cos(angle) * radius;
+            disc[i * 2 + 1] = y + (float) Math.sin(angle) * radius;
+        }
+
+        polygon(disc, 0, segments * 2);
+    }
+
+    // starts rasterizing within the box around the path, grown by the outset and limited to the frame and scissor
+    private boolean beginPolygons(float outset) {
+        if (pointCount == 0) {
+            return false;
+        }
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < pointCount; i += 2) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+        }
+
+        float left = Math.max(0, minX - outset - 1);
+        float top = Math.max(0, minY - outset - 1);
+        float right = Math.min(width, maxX + outset + 1);
+        float bottom = Math.min(height, maxY + outset + 1);
+
+        State state = states[depth - 1];
+
+        if (state.scissorExtentX >= 0) {
+            float[] s = state.scissor;
+            float extentX = Math.abs(s[0]) * state.scissorExtentX + Math.abs(s[2]) * state.scissorExtentY;
+            float extentY = Math.abs(s[1]) * state.scissorExtentX + Math.abs(s[3]) * state.scissorExtentY;
+
+            // the scissor's edge is antialiased over half a pixel either side
+            left = Math.max(left, s[4] - extentX - 0.5f);
+            right = Math.min(right, s[4] + extentX + 0.5f);
+            top = Math.max(top, s[5] - extentY - 0.5f);
+            bottom = Math.min(bottom, s[5] + extentY + 0.5f);
+        }
+
+        return rasterizer.begin((int) Math.floor(left), (int) Math.floor(top), (int) Math.ceil(right), (int) Math.ceil(bottom));
+    }
+
+    // adds a closed polygon, always wound the same way so that overlapping polygons are filled as their union
+    private void polygon(float[] polygon, int start, int end) {
+        if (end - start < 6) {
+            return;
+        }
+
+        float area = 0;
+
+        for (int i = start; i < end; i += 2) {
+            int next = i + 2 < end ? i + 2 : start;
+            area += polygon[i] * polygon[next + 1] - polygon[next] * polygon[i + 1];
+        }
+
+        for (int i = start; i < end; i += 2) {
+            int next = i + 2 < end ? i + 2 : start;
+
+            if (area >= 0) {
+                rasterizer.line(polygon[i], polygon[i + 1], polygon[next], polygon[next + 1]);
+            } else {
+                rasterizer.line(polygon[next], polygon[next + 1], polygon[i], polygon[i + 1]);
+            }
+        }
+    }
+
+    private static float averageScale(float[] t) {
+        return ((float) Math.sqrt(t[0] * t[0] + t[1] * t[1]) + (float) Math.sqrt(t[2] * t[2] + t[3] * t[3])) * 0.5f;
+    }
+
+    private static void invert(float[] t, float[] inverse) {
+        double determinant = (double) t[0] * t[3] - (double) t[2] * t[1];
+
+        if (Math.abs(determinant) < 1e-6) {
+            Arrays.fill(inverse, 0);
+            inverse[0] = 1;
+            inverse[3] = 1;
+            return;
+        }
+
+        double scale = 1 / determinant;
+
+        inverse[0] = (float) (t[3] * scale);
+        inverse[2] = (float) (-t[2] * scale);
+        inverse[4] = (float) (((double) t[2] * t[5] - (double) t[3] * t[4]) * scale);
+        inverse[1] = (float) (-t[1] * scale);
+        inverse[3] = (float) (t[0] * scale);
+        inverse[5] = (float) (((double) t[1] * t[4] - (double) t[0] * t[5]) * scale);
+    }
+
+    // the transform which applies first and then second, as nvgTransformMultiply
+    private static void multiply(float[] first, float[] second, float[] result) {
+        float a = first[0] * second[0] + first[1] * second[2];
+        float c = first[2] * second[0] + first[3] * second[2];
+        float e = first[4] * second[0] + first[5] * second[2] + second[4];
+
+        float b = first[0] * second[1] + first[1] * second[3];
+        float d = first[2] * second[1] + first[3] * second[3];
+        float f = first[4] * second[1] + first[5] * second[3] + second[5];
+
+        result[0] = a;
+        result[1] = b;
+        result[2] = c;
+        result[3] = d;
+        result[4] = e;
+        result[5] = f;
+    }
+
+    private static int premultiply(int argb) {
+        int alpha = argb >>> 24;
+
+        return (alpha << 24)
+                | ((((argb >> 16) & 0xFF) * alpha + 127) / 255 << 16)
+                | ((((argb >> 8) & 0xFF) * alpha + 127) / 255 << 8)
+                | (((argb & 0xFF) * alpha + 127) / 255);
+    }
+
+    private static int unpremultiply(int argb) {
+        int alpha = argb >>> 24;
+
+        if (alpha == 0) {
+            return 0;
+        }
+
+        if (alpha == 255) {
+            return argb;
+        }
+
+        return (alpha << 24)
+                | (Math.min(255, (((argb >> 16) & 0xFF) * 255 + alpha / 2) / alpha) << 16)
+                | (Math.min(255, (((argb >> 8) & 0xFF) * 255 + alpha / 2) / alpha) << 8)
+                | Math.min(255, ((argb & 0xFF) * 255 + alpha / 2) / alpha);
+    }
+
+    private static final class State {
+
+        private final float[] transform = new float[6];
+        private final float[] scissor = new float[6];
+
+        // half the size of the scissor, or negative without one
+        private float scissorExtentX;
+        private float scissorExtentY;
+
+        private float alpha;
+        private int lineCap;
+        private int lineJoin;
+
+        private void reset() {
+            transform[0] = 1;
+            transform[1] = 0;
+            transform[2] = 0;
+            transform[3] = 1;
+            transform[4] = 0;
+            transform[5] = 0;
+
+            Arrays.fill(scissor, 0);
+            scissorExtentX = -1;
+            scissorExtentY = -1;
+
+            alpha = 1;
+            lineCap = NVG_BUTT;
+            lineJoin = NVG_MITER;
+        }
+
+        private void set(State other) {
+            System.arraycopy(other.transform, 0, transform, 0, 6);
+            System.arraycopy(other.scissor, 0, scissor, 0, 6);
+
+            scissorExtentX = other.scissorExtentX;
+            scissorExtentY = other.scissorExtentY;
+            alpha = other.alpha;
+            lineCap = other.lineCap;
+            lineJoin = other.lineJoin;
+        }
+
+    }
+
+    private static final class Image {
+
+        private final int width;
+        private final int height;
+        private final int[] pixels;
+        private final int flags;
+
+        private Image(int width, int height, int[] pixels, int flags) {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+            this.flags = flags;
+        }
+
+    }
+
+    // colours the covered pixels, the same as NanoVG's fragment shader
+    private final class Paint implements Rasterizer.SpanPainter {
+
+        private static final int SOLID = 0;
+        private static final int GRADIENT = 1;
+        private static final int IMAGE = 2;
+
+        private int type;
+
+        // premultiplied components of the inner and outer colours
+        private final float[] inner = new float[4];
+        private final float[] outer = new float[4];
+
+        // from frame space to the space of the paint
+        private final float[] inverse = new float[6];
+        private float extentX;
+        private float extentY;
+        private float radius;
+        private float feather;
+        private Image image;
+
+        // from frame space to the space of the scissor, which is centred on the scissor
+        private boolean scissored;
+        private final float[] scissor = new float[6];
+        private float scissorExtentX;
+        private float scissorExtentY;
+        private float scissorScaleX;
+        private float scissorScaleY;
+
+        private final float[] combined = new float[6];
+
+        private void solid(int argb, float alpha) {
+            type = SOLID;
+            colour(((argb >>> 24) / 255f) * alpha, ((argb >> 16) & 0xFF) / 255f, ((argb >> 8) & 0xFF) / 255f, (argb & 0xFF) / 255f, inner);
+            scissor(states[depth - 1]);
+        }
+
+        private void set(NVGPaint paint, State state, float alpha) {
+            float[] xform = new float[6];
+
+            for (int i = 0; i < 6; i++) {
+                xform[i] = paint.xform(i);
+            }
+
+            // the paint is in the space the path was drawn in, as NanoVG multiplies it by the transform when filling
+            multiply(xform, state.transform, combined);
+            invert(combined, inverse);
+
+            extentX = paint.extent(0);
+            extentY = paint.extent(1);
+            radius = paint.radius();
+            feather = paint.feather();
+
+            NVGColor innerColour = paint.innerColor();
+            NVGColor outerColour = paint.outerColor();
+
+            colour(innerColour.a() * state.alpha * alpha, innerColour.r(), innerColour.g(), innerColour.b(), inner);
+            colour(outerColour.a() * state.alpha * alpha, outerColour.r(), outerColour.g(), outerColour.b(), outer);
+
+            image = paint.image() == 0 ? null : images.get(paint.image());
+            type = paint.image() == 0 ? GRADIENT : IMAGE;
+
+            scissor(state);
+        }
+
+        private void colour(float alpha, float red, float green, float blue, float[] colour) {
+            colour[0] = alpha;
+            colour[1] = red * alpha;
+            colour[2] = green * alpha;
+            colour[3] = blue * alpha;
+        }
+
+        private void scissor(State state) {
+            scissored = state.scissorExtentX >= 0;
+
+            if (scissored) {
+                float[] s = state.scissor;
+
+                invert(s, scissor);
+                scissorExtentX = state.scissorExtentX;
+                scissorExtentY = state.scissorExtentY;
+                scissorScaleX = (float) Math.sqrt(s[0] * s[0] + s[2] * s[2]);
+                scissorScaleY = (float) Math.sqrt(s[1] * s[1] + s[3] * s[3]);
+            }
+        }
+
+        @Override
+        public void paint(int y, int x, float[] coverage, int offset, int length) {
+            int[] target = pixels;
+            int row = y * width;
+            float py = y + 0.5f;
+
+            // opaque colours fully covering a pixel replace it
+            int opaque = type == SOLID && !scissored && inner[0] >= 1 ? solidPixel() : 0;
+
+            for (int i = 0; i < length; i++) {
+                float alpha = coverage[offset + i];
+
+                if (alpha < 1 / 512f) {
+                    continue;
+                }
+
+                if (opaque != 0 && alpha >= 1) {
+                    target[row + x + i] = opaque;
+                    continue;
+                }
+
+                float px = x + i + 0.5f;
+
+                if (scissored) {
+                    float sx = Math.abs(scissor[0] * px + scissor[2] * py + scissor[4]) - scissorExtentX;
+                    float sy = Math.abs(scissor[1] * px + scissor[3] * py + scissor[5]) - scissorExtentY;
+
+                    alpha *= clamp(0.5f - sx * scissorScaleX) * clamp(0.5f - sy * scissorScaleY);
+
+                    if (alpha < 1 / 512f) {
+                        continue;
+                    }
+                }
+
+                float a, r, g, b;
+
+                switch (type) {
+                    case GRADIENT: {
+                        float gx = inverse[0] * px + inverse[2] * py + inverse[4];
+                        float gy = inverse[1] * px + inverse[3] * py + inverse[5];
+
+                        // the signed distance to a rounded rectangle, as in NanoVG's shader
+                        float dx = Math.abs(gx) - (extentX - radius);
+                        float dy = Math.abs(gy) - (extentY - radius);
+                        float distance = Math.min(Math.max(dx, dy), 0) + (float) Math.sqrt(Math.max(dx, 0) * Math.max(dx, 0) + Math.max(dy, 0) * Math.max(dy, 0)) - radius;
+                        float t = clamp((distance + feather * 0.5f) / feather);
+
+                        a = inner[0] + (outer[0] - inner[0]) * t;
+                        r = inner[1] + (outer[1] - inner[1]) * t;
+                        g = inner[2] + (outer[2] - inner[2]) * t;
+                        b = inner[3] + (outer[3] - inner[3]) * t;
+                        break;
+                    }
+
+                    case IMAGE: {
+                        if (image == null) {
+                            continue;
+                        }
+
+                        float u = (inverse[0] * px + inverse[2] * py + inverse[4]) / extentX;
+                        float v = (inverse[1] * px + inverse[3] * py + inverse[5]) / extentY;
+                        int texel = sample(image, u, v);
+
+                        a = (texel >>> 24) / 255f * inner[0];
+                        r = ((texel >> 16) & 0xFF) / 255f * inner[1];
+                        g = ((texel >> 8) & 0xFF) / 255f * inner[2];
+                        b = (texel & 0xFF) / 255f * inner[3];
+                        break;
+                    }
+
+                    default: {
+                        a = inner[0];
+                        r = inner[1];
+                        g = inner[2];
+                        b = inner[3];
+                        break;
+                    }
+                }
+
+                a *= alpha;
+
+                if (a <= 0) {
+                    continue;
+                }
+
+                // source over, with premultiplied alpha
+                int index = row + x + i;
+                int destination = target[index];
+                float keep = 1 - a;
+
+                int da = (int) (a * 255 + (destination >>> 24) * keep + 0.5f);
+                int dr = (int) (r * alpha * 255 + ((destination >> 16) & 0xFF) * keep + 0.5f);
+                int dg = (int) (g * alpha * 255 + ((destination >> 8) & 0xFF) * keep + 0.5f);
+                int db = (int) (b * alpha * 255 + (destination & 0xFF) * keep + 0.5f);
+
+                target[index] = (Math.min(da, 255) << 24) | (Math.min(dr, 255) << 16) | (Math.min(dg, 255) << 8) | Math.min(db, 255);
+            }
+        }
+
+        private int solidPixel() {
+            return 0xFF000000 | ((int) (inner[1] * 255 + 0.5f) << 16) | ((int) (inner[2] * 255 + 0.5f) << 8) | (int) (inner[3] * 255 + 0.5f);
+        }
+
+        // bilinearly samples an image at coordinates from 0 to 1, clamped or repeated at the edges
+        private int sample(Image image, float u, float v) {
+            if ((image.flags & NVG_IMAGE_FLIPY) != 0) {
+                v = 1 - v;
+            }
+
+            float fx = u * image.width - 0.5f;
+            float fy = v * image.height - 0.5f;
+
+            int x0 = (int) Math.floor(fx);
+            int y0 = (int) Math.floor(fy);
+            float tx = fx - x0;
+            float ty = fy - y0;
+
+            if ((image.flags & NVG_IMAGE_NEAREST) != 0) {
+                return texel(image, tx < 0.5f ? x0 : x0 + 1, ty < 0.5f ? y0 : y0 + 1);
+            }
+
+            int c00 = texel(image, x0, y0);
+            int c10 = texel(image, x0 + 1, y0);
+            int c01 = texel(image, x0, y0 + 1);
+            int c11 = texel(image, x0 + 1, y0 + 1);
+
+            int result = 0;
+
+            for (int shift = 0; shift < 32; shift += 8) {
+                float top = ((c00 >>> shift) & 0xFF) * (1 - tx) + ((c10 >>> shift) & 0xFF) * tx;
+                float bottom = ((c01 >>> shift) & 0xFF) * (1 - tx) + ((c11 >>> shift) & 0xFF) * tx;
+
+                result |= ((int) (top * (1 - ty) + bottom * ty + 0.5f) & 0xFF) << shift;
+            }
+
+            return result;
+        }
+
+        private int texel(Image image, int x, int y) {
+            x = (image.flags & NVG_IMAGE_REPEATX) != 0 ? Math.floorMod(x, image.width) : Math.min(Math.max(x, 0), image.width - 1);
+            y = (image.flags & NVG_IMAGE_REPEATY) != 0 ? Math.floorMod(y, image.height) : Math.min(Math.max(y, 0), image.height - 1);
+
+            return image.pixels[y * image.width + x];
+        }
+
+        private float clamp(float value) {
+            return value < 0 ? 0 : Math.min(value, 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,438 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.nvgu.render.TracingRenderer.*;
+
+/**
+ * Reads a trace written by a {@link TracingRenderer} one frame at a time, issuing its operations to a renderer.
+ * The file is read through a buffer, so traces of any length can be replayed.
+ */
+public class TraceReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final List<String> fonts = new ArrayList<>();
+    // allocated when the first paint is read, and reused for every paint after it
+    private NVGPaint paint = null;
+
+    private int frameWidth;
+    private int frameHeight;
+    private boolean inFrame = false;
+
+    /**
+     * Opens a trace file
+     * @param path the path of the trace file
+     */
+    public TraceReader(Path path) {
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        buffer.limit(0);
+
+        if (!fill(8) || buffer.getInt() != MAGIC) {
+            close();
+            throw new IllegalArgumentException(path + " isn't a trace");
+        }
+
+        int version = buffer.getInt();
+
+        if (version != VERSION) {
+            close();
+            throw new IllegalArgumentException(path + " is a trace of version " + version + ", but only version " + VERSION + " can be read");
+        }
+    }
+
+    /**
+     * Moves to the start of the next frame, skipping whatever is left of the current one
+     * @return false if there are no more frames
+     */
+    public boolean nextFrame() {
+        if (inFrame) {
+            read(null);
+        }
+
+        while (fill(1)) {
+            int op = buffer.get();
+
+            if (op == BEGIN_FRAME) {
+                require(8);
+                frameWidth = buffer.getInt();
+                frameHeight = buffer.getInt();
+                inFrame = true;
+
+                return true;
+            }
+
+            skip(op);
+        }
+
+        return false;
+    }
+
+    /**
+     * Issues every operation of the current frame to the given renderer
+     * @param renderer the renderer to replay to
+     */
+    public void replayFrame(Renderer renderer) {
+        if (!inFrame) {
+            throw new IllegalStateException("Not at the start of a frame");
+        }
+
+        read(renderer);
+    }
+
+    public int getFrameWidth() {
+        return frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return frameHeight;
+    }
+
+    @Override
+    public void close() {
+        if (paint != null) {
+            paint.free();
+            paint = null;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // issues operations until the end of the frame, or skips them if the renderer is null
+    private void read(Renderer renderer) {
+        inFrame = false;
+
+        while (fill(1)) {
+            int op = buffer.get();
+
+            if (op == END_FRAME) {
+                return;
+            }
+
+            if (renderer == null) {
+                skip(op);
+                continue;
+            }
+
+            switch (op) {
+                case BEGIN_PATH: {
+                    renderer.beginPath();
+                    break;
+                }
+
+                case CLOSE_PATH: {
+                    renderer.closePath();
+                    break;
+                }
+
+                case RECT: {
+                    require(16);
+                    renderer.rect(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case ROUNDED_RECT: {
+                    require(32);
+                    renderer.roundedRect(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case CIRCLE: {
+                    require(12);
+                    renderer.circle(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case MOVE_TO: {
+                    require(8);
+                    renderer.moveTo(buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case LINE_TO: {
+                    require(8);
+                    renderer.lineTo(buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case FILL_COLOUR: {
+                    require(4);
+                    renderer.fill(buffer.getInt());
+                    break;
+                }
+
+                case FILL_PAINT: {
+                    renderer.fill(paint());
+                    break;
+                }
+
+                case STROKE_COLOUR: {
+                    require(8);
+                    renderer.stroke(buffer.getFloat(), buffer.getInt());
+                    break;
+                }
+
+                case STROKE_PAINT: {
+                    require(4);
+                    float thickness = buffer.getFloat();
+                    renderer.stroke(thickness, paint());
+                    break;
+                }
+
+                case TEXT: {
+                    require(24);
+                    float x = buffer.getFloat();
+                    float y = buffer.getFloat();
+                    String font = fonts.get(buffer.getInt());
+                    float size = buffer.getFloat();
+                    int alignment = buffer.getInt();
+                    int colour = buffer.getInt();
+
+                    renderer.text(x, y, string(), font, size, alignment, colour);
+                    break;
+                }
+
+                case TEXT_FONT_ID: {
+                    require(24);
+                    float x = buffer.getFloat();
+                    float y = buffer.getFloat();
+                    int font = buffer.getInt();
+                    float size = buffer.getFloat();
+                    int alignment = buffer.getInt();
+                    int colour = buffer.getInt();
+
+                    renderer.text(x, y, string(), font, size, alignment, colour);
+                    break;
+                }
+
+                case SAVE: {
+                    renderer.save();
+                    break;
+                }
+
+                case RESTORE: {
+                    renderer.restore();
+                    break;
+                }
+
+                case TRANSLATE: {
+                    require(8);
+                    renderer.translate(buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case ROTATE: {
+                    require(4);
+                    renderer.rotate(buffer.getFloat());
+                    break;
+                }
+
+                case SCALE: {
+                    require(8);
+                    renderer.scale(buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case SCISSOR: {
+                    require(16);
+                    renderer.intersectScissor(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    break;
+                }
+
+                case LINE_CAP: {
+                    require(4);
+                    renderer.lineCap(buffer.getInt());
+                    break;
+                }
+
+                case LINE_JOIN: {
+                    require(4);
+                    renderer.lineJoin(buffer.getInt());
+                    break;
+                }
+
+                case GLOBAL_ALPHA: {
+                    require(4);
+                    renderer.globalAlpha(buffer.getFloat());
+                    break;
+                }
+
+                default: {
+                    skip(op);
+                }
+            }
+        }
+    }
+
+    // reads past an operation without issuing it, except for font definitions which later operations refer to
+    private void skip(int op) {
+        switch (op) {
+            case FONT: {
+                fonts.add(string());
+                break;
+            }
+
+            case TEXT:
+            case TEXT_FONT_ID: {
+                advance(24);
+                advance(length());
+                break;
+            }
+
+            case FILL_PAINT: {
+                advance(NVGPaint.SIZEOF);
+                break;
+            }
+
+            case STROKE_PAINT: {
+                advance(4 + NVGPaint.SIZEOF);
+                break;
+            }
+
+            case RECT:
+            case SCISSOR: {
+                advance(16);
+                break;
+            }
+
+            case ROUNDED_RECT: {
+                advance(32);
+                break;
+            }
+
+            case CIRCLE: {
+                advance(12);
+                break;
+            }
+
+            case BEGIN_FRAME:
+            case MOVE_TO:
+            case LINE_TO:
+            case STROKE_COLOUR:
+            case TRANSLATE:
+            case SCALE: {
+                advance(8);
+                break;
+            }
+
+            case FILL_COLOUR:
+            case ROTATE:
+            case LINE_CAP:
+            case LINE_JOIN:
+            case GLOBAL_ALPHA: {
+                advance(4);
+                break;
+            }
+
+            case BEGIN_PATH:
+            case CLOSE_PATH:
+            case SAVE:
+            case RESTORE:
+            case END_FRAME: {
+                break;
+            }
+
+            default: {
+                throw new IllegalStateException("Unknown trace operation " + op);
+            }
+        }
+    }
+
+    private NVGPaint paint() {
+        require(NVGPaint.SIZEOF);
+
+        if (paint == null) {
+            paint = NVGPaint.calloc();
+        }
+
+        MemoryUtil.memCopy(MemoryUtil.memAddress(buffer), paint.address(), NVGPaint.SIZEOF);
+        buffer.position(buffer.position() + NVGPaint.SIZEOF);
+
+        return paint;
+    }
+
+    private int length() {
+        require(4);
+        return buffer.getInt();
+    }
+
+    // reads a length followed by that many bytes of UTF-8, which may be larger than the buffer
+    private String string() {
+        byte[] bytes = new byte[length()];
+        int read = 0;
+
+        while (read < bytes.length) {
+            require(1);
+
+            int count = Math.min(buffer.remaining(), bytes.length - read);
+            buffer.get(bytes, read, count);
+            read += count;
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void advance(int count) {
+        while (count > 0) {
+            require(1);
+
+            int step = Math.min(buffer.remaining(), count);
+            buffer.position(buffer.position() + step);
+            count -= step;
+        }
+    }
+
+    private void require(int count) {
+        if (!fill(count)) {
+            throw new IllegalStateException("The trace ends in the middle of an operation");
+        }
+    }
+
+    // reads from the file until at least the given number of bytes are buffered
+    private boolean fill(int count) {
+        if (buffer.remaining() >= count) {
+            return true;
+        }
+
+        buffer.compact();
+
+        try {
+            while (buffer.position() < count) {
+                if (channel.read(buffer) == -1) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.flip();
+        }
+
+        return buffer.remaining() >= count;
+    }
+
+}
@@ -0,0 +1,378 @@
+package org.nvgu.render;
+
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Passes drawing operations on to another renderer, while writing them to a trace file,
+ * so that the frames can be replayed later by a {@link TraceReader}, such as to benchmark them against another version.
+ * Operations are written as an opcode byte followed by their operands in little endian, with paints copied whole
+ * and font names written once and referred to by index afterwards. Texture and font ids are written as they are,
+ * so the same fonts and textures must be created in the same order before replaying.
+ * Writes are buffered, and the buffer is written to the file whenever it fills up and when the trace is closed.
+ */
+public class TracingRenderer implements Renderer, AutoCloseable {
+
+    static final int MAGIC = 0x5447564E; // "NVGT" in little endian
+    static final int VERSION = 1;
+
+    static final int BEGIN_FRAME = 0;
+    static final int END_FRAME = 1;
+    static final int BEGIN_PATH = 2;
+    static final int CLOSE_PATH = 3;
+    static final int RECT = 4;
+    static final int ROUNDED_RECT = 5;
+    static final int CIRCLE = 6;
+    static final int MOVE_TO = 7;
+    static final int LINE_TO = 8;
+    static final int FILL_COLOUR = 9;
+    static final int FILL_PAINT = 10;
+    static final int STROKE_COLOUR = 11;
+    static final int STROKE_PAINT = 12;
+    static final int TEXT = 13;
+    static final int TEXT_FONT_ID = 14;
+    static final int SAVE = 15;
+    static final int RESTORE = 16;
+    static final int TRANSLATE = 17;
+    static final int ROTATE = 18;
+    static final int SCALE = 19;
+    static final int SCISSOR = 20;
+    static final int LINE_CAP = 21;
+    static final int LINE_JOIN = 22;
+    static final int GLOBAL_ALPHA = 23;
+    // defines the next font name index, followed by the name
+    static final int FONT = 24;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Renderer renderer;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final Map<String, Integer> fonts = new HashMap<>();
+
+    private long frames = 0;
+    private long operations = 0;
+    private long written = 0;
+
+    /**
+     * Creates the trace file, replacing any file already there
+     * @param renderer the renderer operations are passed on to
+     * @param path the path of the trace file
+     */
+    public TracingRenderer(Renderer renderer, Path path) {
+        this.renderer = renderer;
+
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    /**
+     * Marks the start of a frame in the trace
+     * @param width the width of the frame
+     * @param height the height of the frame
+     */
+    public void beginFrame(int width, int height) {
+        op(BEGIN_FRAME, 8);
+        buffer.putInt(width);
+        buffer.putInt(height);
+    }
+
+    /**
+     * Marks the end of a frame in the trace
+     */
+    public void endFrame() {
+        op(END_FRAME, 0);
+        frames++;
+    }
+
+    @Override
+    public void beginPath() {
+        op(BEGIN_PATH, 0);
+        renderer.beginPath();
+    }
+
+    @Override
+    public void closePath() {
+        op(CLOSE_PATH, 0);
+        renderer.closePath();
+    }
+
+    @Override
+    public void rect(float x, float y, float width, float height) {
+        op(RECT, 16);
+        buffer.putFloat(x).putFloat(y).putFloat(width).putFloat(height);
+        renderer.rect(x, y, width, height);
+    }
+
+    @Override
+    public void roundedRect(float x, float y, float width, float height, float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        op(ROUNDED_RECT, 32);
+        buffer.putFloat(x).putFloat(y).putFloat(width).putFloat(height);
+        buffer.putFloat(topLeft).putFloat(topRight).putFloat(bottomRight).putFloat(bottomLeft);
+        renderer.roundedRect(x, y, width, height, topLeft, topRight, bottomRight, bottomLeft);
+    }
+
+    @Override
+    public void circle(float x, float y, float radius) {
+        op(CIRCLE, 12);
+        buffer.putFloat(x).putFloat(y).putFloat(radius);
+        renderer.circle(x, y, radius);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        op(MOVE_TO, 8);
+        buffer.putFloat(x).putFloat(y);
+        renderer.moveTo(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        op(LINE_TO, 8);
+        buffer.putFloat(x).putFloat(y);
+        renderer.lineTo(x, y);
+    }
+
+    @Override
+    public void fill(int colour) {
+        op(FILL_COLOUR, 4);
+        buffer.putInt(colour);
+        renderer.fill(colour);
+    }
+
+    @Override
+    public void fill(NVGPaint paint) {
+        op(FILL_PAINT, NVGPaint.SIZEOF);
+        paint(paint);
+        renderer.fill(paint);
+    }
+
+    @Override
+    public void stroke(float thickness, int colour) {
+        op(STROKE_COLOUR, 8);
+        buffer.putFloat(thickness).putInt(colour);
+        renderer.stroke(thickness, colour);
+    }
+
+    @Override
+    public void stroke(float thickness, NVGPaint paint) {
+        op(STROKE_PAINT, 4 + NVGPaint.SIZEOF);
+        buffer.putFloat(thickness);
+        paint(paint);
+        renderer.stroke(thickness, paint);
+    }
+
+    @Override
+    public void text(float x, float y, String text, String font, float size, int alignment, int colour) {
+        int index = font(font);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        op(TEXT, 24);
+        buffer.putFloat(x).putFloat(y).putInt(index).putFloat(size).putInt(alignment).putInt(colour);
+        bytes(bytes);
+
+        renderer.text(x, y, text, font, size, alignment, colour);
+    }
+
+    @Override
+    public void text(float x, float y, String text, int font, float size, int alignment, int colour) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        op(TEXT_FONT_ID, 24);
+        buffer.putFloat(x).putFloat(y).putInt(font).putFloat(size).putInt(alignment).putInt(colour);
+        bytes(bytes);
+
+        renderer.text(x, y, text, font, size, alignment, colour);
+    }
+
+    @Override
+    public void save() {
+        op(SAVE, 0);
+        renderer.save();
+    }
+
+    @Override
+    public void restore() {
+        op(RESTORE, 0);
+        renderer.restore();
+    }
+
+    @Override
+    public void translate(float x, float y) {
+        op(TRANSLATE, 8);
+        buffer.putFloat(x).putFloat(y);
+        renderer.translate(x, y);
+    }
+
+    @Override
+    public void rotate(float angle) {
+        op(ROTATE, 4);
+        buffer.putFloat(angle);
+        renderer.rotate(angle);
+    }
+
+    @Override
+    public void scale(float x, float y) {
+        op(SCALE, 8);
+        buffer.putFloat(x).putFloat(y);
+        renderer.scale(x, y);
+    }
+
+    @Override
+    public void intersectScissor(float x, float y, float width, float height) {
+        op(SCISSOR, 16);
+        buffer.putFloat(x).putFloat(y).putFloat(width).putFloat(height);
+        renderer.intersectScissor(x, y, width, height);
+    }
+
+    @Override
+    public void lineCap(int cap) {
+        op(LINE_CAP, 4);
+        buffer.putInt(cap);
+        renderer.lineCap(cap);
+    }
+
+    @Override
+    public void lineJoin(int join) {
+        op(LINE_JOIN, 4);
+        buffer.putInt(join);
+        renderer.lineJoin(join);
+    }
+
+    @Override
+    public void globalAlpha(float alpha) {
+        op(GLOBAL_ALPHA, 4);
+        buffer.putFloat(alpha);
+        renderer.globalAlpha(alpha);
+    }
+
+    /**
+     * @return the number of frames traced
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return the number of operations traced, not counting frame markers
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return the number of bytes written to the file so far, not counting what is still buffered
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Writes whatever is buffered to the file
+     */
+    public void flush() {
+        buffer.flip();
+
+        try {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes whatever is buffered and closes the file
+     */
+    @Override
+    public void close() {
+        flush();
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // writes the opcode, making sure there is room for it and its operands
+    private void op(int op, int size) {
+        if (buffer.remaining() < 1 + size) {
+            flush();
+        }
+
+        buffer.put((byte) op);
+
+        if (op != BEGIN_FRAME && op != END_FRAME && op != FONT) {
+            operations++;
+        }
+    }
+
+    private void paint(NVGPaint paint) {
+        MemoryUtil.memCopy(paint.address(), MemoryUtil.memAddress(buffer), NVGPaint.SIZEOF);
+        buffer.position(buffer.position() + NVGPaint.SIZEOF);
+    }
+
+    // defines the font the first time it is seen, before the operation using it
+    private int font(String font) {
+        Integer index = fonts.get(font);
+
+        if (index == null) {
+            index = fonts.size();
+            fonts.put(font, index);
+
+            op(FONT, 0);
+            bytes(font.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return index;
+    }
+
+    // writes a length followed by the bytes, which may be larger than the buffer
+    private void bytes(byte[] bytes) {
+        if (buffer.remaining() < 4 + bytes.length) {
+            flush();
+        }
+
+        buffer.putInt(bytes.length);
+
+        if (bytes.length <= buffer.remaining()) {
+            buffer.put(bytes);
+            return;
+        }
+
+        flush();
+
+        try {
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+
+            while (wrapped.hasRemaining()) {
+                written += channel.write(wrapped);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.nvgu.text;
+
+import java.util.Arrays;
+
+/**
+ * A document of many lines of text, such as a log, which is drawn through a scrolling viewport.
+ * The top of every line is kept as a running sum of the heights of the lines before it,
+ * so finding the lines inside the viewport is a binary search rather than a scan from the top,
+ * and appending a line only adds one entry to the sum.
+ * @see org.nvgu.NVGU#textDocument(TextDocument, float, float, float, float, float, int)
+ */
+public class TextDocument {
+
+    private final String font;
+    private final float size;
+    private final float lineHeight;
+
+    private String[] lines = new String[64];
+
+    // tops[i] is the top of line i, and tops[count] is the height of the whole document
+    private double[] tops = new double[65];
+    private int count = 0;
+
+    /**
+     * @param font the font of the document
+     * @param size the size of the font
+     * @param lineHeight the height of a line which isn't given its own height
+     */
+    public TextDocument(String font, float size, float lineHeight) {
+        this.font = font;
+        this.size = size;
+        this.lineHeight = lineHeight;
+    }
+
+    /**
+     * Appends a line with the default line height
+     * @param line the line to append
+     */
+    public TextDocument append(String line) {
+        return append(line, lineHeight);
+    }
+
+    /**
+     * Appends a line with its own height
+     * @param line the line to append
+     * @param height the height of the line
+     */
+    public TextDocument append(String line, float height) {
+        if (count == lines.length) {
+            lines = Arrays.copyOf(lines, count * 2);
+            tops = Arrays.copyOf(tops, count * 2 + 1);
+        }
+
+        lines[count] = line;
+        tops[count + 1] = tops[count] + height;
+        count++;
+
+        return this;
+    }
+
+    /**
+     * Removes every line
+     */
+    public TextDocument clear() {
+        Arrays.fill(lines, 0, count, null);
+        count = 0;
+
+        return this;
+    }
+
+    /**
+     * Finds the line at the given distance from the top of the document
+     * @param offset the distance from the top of the document
+     * @return the index of the line, clamped to the first and last lines, or 0 if the document is empty
+     */
+    public int lineAt(double offset) {
+        if (count == 0 || offset <= 0) {
+            return 0;
+        }
+
+        // the last line whose top is at or above the offset
+        int low = 0;
+        int high = count - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (tops[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    public String getLine(int line) {
+        return lines[line];
+    }
+
+    /**
+     * @return the distance from the top of the document to the top of the given line
+     */
+    public double getLineTop(int line) {
+        return tops[line];
+    }
+
+    public float getLineHeight(int line) {
+        return (float) (tops[line + 1] - tops[line]);
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    /**
+     * @return the combined height of every line
+     */
+    public double getHeight() {
+        return tops[count];
+    }
+
+    public String getFont() {
+        return font;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    /**
+     * @return the height of a line which isn't given its own height
+     */
+    public float getDefaultLineHeight() {
+        return lineHeight;
+    }
+
+}
@@ -0,0 +1,283 @@
+package org.nvgu.text;
+
+import org.lwjgl.nanovg.NVGGlyphPosition;
+import org.lwjgl.nanovg.NVGTextRow;
+import org.nvgu.util.Alignment;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * The result of wrapping a paragraph of text to a width: its lines, where each line sits
+ * and where each glyph sits within its line. Positions are relative to the point the
+ * paragraph is drawn at, which the alignment is applied to in the same way as single lines of text,
+ * with the horizontal alignment applied to each line within the wrapping width.
+ * Layouts are immutable, so they can be kept and drawn any number of times.
+ */
+public final class TextLayout {
+
+    private static final int ROWS = 16;
+
+    private final String font;
+    private final float size;
+    private final float wrapWidth;
+    private final Alignment alignment;
+
+    private final String[] lines;
+    private final float[] lineX;
+    private final float[] lineY;
+    private final float[] lineWidths;
+    private final float lineHeight;
+
+    // glyphs of line i are at [glyphOffsets[i], glyphOffsets[i + 1])
+    private final int[] glyphOffsets;
+    private final int[] glyphChars;
+    private final float[] glyphX;
+    private final float[] glyphMinX;
+    private final float[] glyphMaxX;
+
+    private final float width;
+    private final float height;
+
+    private TextLayout(String font, float size, float wrapWidth, Alignment alignment, String[] lines, float[] lineX, float[] lineY, float[] lineWidths, float lineHeight, int[] glyphOffsets, int[] glyphChars, float[] glyphX, float[] glyphMinX, float[] glyphMaxX, float width, float height) {
+        this.font = font;
+        this.size = size;
+        this.wrapWidth = wrapWidth;
+        this.alignment = alignment;
+        this.lines = lines;
+        this.lineX = lineX;
+        this.lineY = lineY;
+        this.lineWidths = lineWidths;
+        this.lineHeight = lineHeight;
+        this.glyphOffsets = glyphOffsets;
+        this.glyphChars = glyphChars;
+        this.glyphX = glyphX;
+        this.glyphMinX = glyphMinX;
+        this.glyphMaxX = glyphMaxX;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Wraps the given text using NanoVG's line breaker.
+     * @param handle the handle of the NanoVG instance
+     * @param text the text to wrap, which may contain line breaks
+     * @param wrapWidth the width to wrap the text to
+     * @param font the font of the text
+     * @param size the size of the font
+     * @param alignment how the paragraph and its lines should be aligned
+     * @return the layout of the text
+     */
+    public static TextLayout create(long handle, String text, float wrapWidth, String font, float size, Alignment alignment) {
+        ByteBuffer bytes = memUTF8(text, false);
+        NVGTextRow.Buffer rows = NVGTextRow.malloc(ROWS);
+        NVGGlyphPosition.Buffer positions = NVGGlyphPosition.malloc(Math.max(1, bytes.remaining()));
+
+        float[] ascender = new float[1];
+        float[] descender = new float[1];
+        float[] lineHeight = new float[1];
+
+        String[] lines = new String[8];
+        float[] lineWidths = new float[8];
+        int lineCount = 0;
+
+        int[] glyphOffsets = new int[9];
+        int[] glyphChars = new int[Math.max(1, bytes.remaining())];
+        float[] glyphX = new float[glyphChars.length];
+        float[] glyphMinX = new float[glyphChars.length];
+        float[] glyphMaxX = new float[glyphChars.length];
+        int glyphCount = 0;
+
+        nvgSave(handle);
+
+        try {
+            nvgFontFace(handle, font);
+            nvgFontSize(handle, size);
+            nvgTextAlign(handle, NVG_ALIGN_LEFT | NVG_ALIGN_TOP);
+            nvgTextMetrics(handle, ascender, descender, lineHeight);
+
+            long start = memAddress(bytes);
+            long end = start + bytes.remaining();
+
+            while (start < end) {
+                int count = nnvgTextBreakLines(handle, start, end, wrapWidth, rows.address(), ROWS);
+
+                if (count == 0) {
+                    break;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    NVGTextRow row = rows.get(i);
+
+                    if (lineCount == lines.length) {
+                        lines = Arrays.copyOf(lines, lineCount * 2);
+                        lineWidths = Arrays.copyOf(lineWidths, lineCount * 2);
+                        glyphOffsets = Arrays.copyOf(glyphOffsets, lineCount * 2 + 1);
+                    }
+
+                    int length = (int) (row.end() - row.start());
+
+                    lines[lineCount] = memUTF8(row.start(), length);
+                    lineWidths[lineCount] = row.width();
+
+                    int glyphs = nnvgTextGlyphPositions(handle, 0, 0, row.start(), row.end(), positions.address(), positions.capacity());
+
+                    // glyphs point at bytes, which are mapped back to chars of the line
+                    long cursor = row.start();
+                    int chars = 0;
+
+                    for (int j = 0; j < glyphs; j++) {
+                        NVGGlyphPosition position = positions.get(j);
+
+                        while (cursor < position.str()) {
+                            int lead = memGetByte(cursor) & 0xFF;
+                            int sequence = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+
+                            chars += sequence == 4 ? 2 : 1;
+                            cursor += sequence;
+                        }
+
+                        glyphChars[glyphCount] = chars;
+                        glyphX[glyphCount] = position.x();
+                        glyphMinX[glyphCount] = position.minx();
+                        glyphMaxX[glyphCount] = position.maxx();
+                        glyphCount++;
+                    }
+
+                    glyphOffsets[++lineCount] = glyphCount;
+                }
+
+                start = rows.get(count - 1).next();
+            }
+        } finally {
+            nvgRestore(handle);
+
+            memFree(bytes);
+            rows.free();
+            positions.free();
+        }
+
+        int horizontal = alignment.getTextAlignment() & (NVG_ALIGN_LEFT | NVG_ALIGN_CENTER | NVG_ALIGN_RIGHT);
+        int vertical = alignment.getTextAlignment() & (NVG_ALIGN_TOP | NVG_ALIGN_MIDDLE | NVG_ALIGN_BOTTOM);
+
+        float height = lineCount * lineHeight[0];
+        float top = vertical == NVG_ALIGN_MIDDLE ? -height / 2f : vertical == NVG_ALIGN_BOTTOM ? -height : 0;
+
+        float[] lineX = new float[lineCount];
+        float[] lineY = new float[lineCount];
+        float width = 0;
+
+        for (int i = 0; i < lineCount; i++) {
+            switch (horizontal) {
+                case NVG_ALIGN_CENTER:
+                    lineX[i] = (wrapWidth - lineWidths[i]) / 2f;
+                    break;
+
+                case NVG_ALIGN_RIGHT:
+                    lineX[i] = wrapWidth - lineWidths[i];
+                    break;
+            }
+
+            lineY[i] = top + i * lineHeight[0];
+            width = Math.max(width, lineWidths[i]);
+        }
+
+        return new TextLayout(font, size, wrapWidth, alignment, Arrays.copyOf(lines, lineCount), lineX, lineY, Arrays.copyOf(lineWidths, lineCount), lineHeight[0], Arrays.copyOf(glyphOffsets, lineCount + 1), Arrays.copyOf(glyphChars, glyphCount), Arrays.copyOf(glyphX, glyphCount), Arrays.copyOf(glyphMinX, glyphCount), Arrays.copyOf(glyphMaxX, glyphCount), width, height);
+    }
+
+    public String getFont() {
+        return font;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    public float getWrapWidth() {
+        return wrapWidth;
+    }
+
+    public Alignment getAlignment() {
+        return alignment;
+    }
+
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    public String getLine(int line) {
+        return lines[line];
+    }
+
+    /**
+     * @return the left edge of the given line, relative to where the paragraph is drawn
+     */
+    public float getLineX(int line) {
+        return lineX[line];
+    }
+
+    /**
+     * @return the top edge of the given line, relative to where the paragraph is drawn
+     */
+    public float getLineY(int line) {
+        return lineY[line];
+    }
+
+    public float getLineWidth(int line) {
+        return lineWidths[line];
+    }
+
+    public float getLineHeight() {
+        return lineHeight;
+    }
+
+    public int getGlyphCount(int line) {
+        return glyphOffsets[line + 1] - glyphOffsets[line];
+    }
+
+    /**
+     * @return the index of the first char of the given glyph within its line
+     */
+    public int getGlyphCharIndex(int line, int glyph) {
+        return glyphChars[glyphOffsets[line] + glyph];
+    }
+
+    /**
+     * @return the position of the given glyph, relative to the left edge of its line
+     */
+    public float getGlyphX(int line, int glyph) {
+        return glyphX[glyphOffsets[line] + glyph];
+    }
+
+    /**
+     * @return the left bound of the given glyph, relative to the left edge of its line
+     */
+    public float getGlyphMinX(int line, int glyph) {
+        return glyphMinX[glyphOffsets[line] + glyph];
+    }
+
+    /**
+     * @return the right bound of the given glyph, relative to the left edge of its line
+     */
+    public float getGlyphMaxX(int line, int glyph) {
+        return glyphMaxX[glyphOffsets[line] + glyph];
+    }
+
+    /**
+     * @return the width of the widest line
+     */
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the combined height of all lines
+     */
+    public float getHeight() {
+        return height;
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.nvgu.text;
+
+import org.nvgu.util.Alignment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers paragraph layouts, keyed by text, font, size, wrapping width and alignment,
+ * so that a static paragraph is only ever broken into lines once.
+ * The cache holds at most {@code capacity} layouts, evicting the least recently used one when full.
+ */
+public class TextLayoutCache {
+
+    private final int capacity;
+    private final Map<Key, TextLayout> layouts;
+
+    // reused for lookups, so a hit doesn't allocate
+    private final Key probe = new Key();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity the maximum number of layouts to keep
+     */
+    public TextLayoutCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+
+        this.capacity = capacity;
+
+        this.layouts = new LinkedHashMap<Key, TextLayout>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, TextLayout> eldest) {
+                return size() > TextLayoutCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached layout of the given paragraph
+     * @return the layout, or null if it hasn't been cached
+     */
+    public TextLayout get(String text, float wrapWidth, String font, float size, Alignment alignment) {
+        TextLayout layout = layouts.get(probe.set(text, wrapWidth, font, size, alignment));
+
+        if (layout == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return layout;
+    }
+
+    /**
+     * Caches the layout of the given paragraph
+     */
+    public void put(String text, TextLayout layout) {
+        layouts.put(new Key().set(text, layout.getWrapWidth(), layout.getFont(), layout.getSize(), layout.getAlignment()), layout);
+    }
+
+    /**
+     * Removes every cached layout, e.g. after a font has been replaced
+     */
+    public void clear() {
+        layouts.clear();
+    }
+
+    /**
+     * Resets the hit and miss counters
+     */
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return layouts.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups which were hits, or 0 if there haven't been any lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static final class Key {
+
+        private String text;
+        private float wrapWidth;
+        private String font;
+        private float size;
+        private Alignment alignment;
+        private int hash;
+
+        private Key set(String text, float wrapWidth, String font, float size, Alignment alignment) {
+            this.text = text;
+            this.wrapWidth = wrapWidth;
+            this.font = font;
+            this.size = size;
+            this.alignment = alignment;
+
+            int hash = text.hashCode();
+            hash = 31 * hash + Float.floatToIntBits(wrapWidth);
+            hash = 31 * hash + font.hashCode();
+            hash = 31 * hash + Float.floatToIntBits(size);
+            hash = 31 * hash + alignment.ordinal();
+            this.hash = hash;
+
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) object;
+
+            return Float.floatToIntBits(wrapWidth) == Float.floatToIntBits(other.wrapWidth)
+                    && Float.floatToIntBits(size) == Float.floatToIntBits(other.size)
+                    && alignment == other.alignment
+                    && font.equals(other.font)
+                    && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
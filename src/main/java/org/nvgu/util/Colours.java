@@ -0,0 +1,125 @@
+package org.nvgu.util;
+
+import org.lwjgl.nanovg.NVGColor;
+
+/**
+ * Helpers for colours packed into an int as ARGB, the same layout as {@link java.awt.Color#getRGB()}.
+ * None of these allocate, so they can be used freely while rendering every frame.
+ */
+public final class Colours {
+
+    private Colours() {
+    }
+
+    /**
+     * Packs the given components
+     * @param red red component, 0-255
+     * @param green green component, 0-255
+     * @param blue blue component, 0-255
+     * @param alpha alpha component, 0-255
+     * @return the packed colour
+     */
+    public static int argb(int red, int green, int blue, int alpha) {
+        return (clamp(alpha) << 24) | (clamp(red) << 16) | (clamp(green) << 8) | clamp(blue);
+    }
+
+    /**
+     * Packs the given components, with full alpha
+     * @param red red component, 0-255
+     * @param green green component, 0-255
+     * @param blue blue component, 0-255
+     * @return the packed colour
+     */
+    public static int rgb(int red, int green, int blue) {
+        return argb(red, green, blue, 255);
+    }
+
+    public static int alpha(int argb) {
+        return argb >>> 24;
+    }
+
+    public static int red(int argb) {
+        return (argb >> 16) & 0xFF;
+    }
+
+    public static int green(int argb) {
+        return (argb >> 8) & 0xFF;
+    }
+
+    public static int blue(int argb) {
+        return argb & 0xFF;
+    }
+
+    /**
+     * Replaces the alpha of the given colour
+     * @param argb the colour
+     * @param alpha the new alpha, 0-255
+     * @return the colour with the new alpha
+     */
+    public static int withAlpha(int argb, int alpha) {
+        return (argb & 0x00FFFFFF) | (clamp(alpha) << 24);
+    }
+
+    /**
+     * Multiplies the alpha of the given colour by a factor
+     * @param argb the colour
+     * @param factor the factor to multiply the alpha by, 0-1
+     * @return the colour with the scaled alpha
+     */
+    public static int scaleAlpha(int argb, float factor) {
+        return withAlpha(argb, Math.round(alpha(argb) * factor));
+    }
+
+    /**
+     * Multiplies the colour components by the alpha of the colour
+     * @param argb the colour
+     * @return the premultiplied colour
+     */
+    public static int premultiply(int argb) {
+        int alpha = alpha(argb);
+
+        return (alpha << 24)
+                | (((red(argb) * alpha + 127) / 255) << 16)
+                | (((green(argb) * alpha + 127) / 255) << 8)
+                | ((blue(argb) * alpha + 127) / 255);
+    }
+
+    /**
+     * Linearly interpolates between two colours, component by component
+     * @param from the colour at factor 0
+     * @param to the colour at factor 1
+     * @param factor how far to interpolate, 0-1
+     * @return the interpolated colour
+     */
+    public static int lerp(int from, int to, float factor) {
+        return argb(
+                lerpComponent(red(from), red(to), factor),
+                lerpComponent(green(from), green(to), factor),
+                lerpComponent(blue(from), blue(to), factor),
+                lerpComponent(alpha(from), alpha(to), factor)
+        );
+    }
+
+    /**
+     * Writes the given colour into a {@link NVGColor}
+     * @param argb the colour
+     * @param colour the native colour to write to
+     * @return the native colour
+     */
+    public static NVGColor unpack(int argb, NVGColor colour) {
+        return colour
+                .r(red(argb) / 255f)
+                .g(green(argb) / 255f)
+                .b(blue(argb) / 255f)
+                .a(alpha(argb) / 255f);
+    }
+
+    private static int lerpComponent(int from, int to, float factor) {
+        return (int) (from + (to - from) * factor);
+    }
+
+    private static int clamp(int component) {
+        return component < 0 ? 0 : Math.min(component, 255);
+    }
+
+}
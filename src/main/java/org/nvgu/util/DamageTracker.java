@@ -0,0 +1,185 @@
+package org.nvgu.util;
+
+/**
+ * Collects the areas of a frame which need redrawing.
+ * Overlapping areas are merged as they're added, and once there are more than the maximum
+ * number of areas, the two whose union wastes the least space are merged, so the set stays small.
+ * Areas are stored as left, top, right and bottom edges.
+ */
+public class DamageTracker {
+
+    private final int maxRects;
+
+    // one extra slot for the rectangle being added
+    private final float[] rects;
+    private int count = 0;
+
+    /**
+     * @param maxRects the maximum number of separate areas to track
+     */
+    public DamageTracker(int maxRects) {
+        if (maxRects <= 0) {
+            throw new IllegalArgumentException("Maximum number of rectangles must be positive, got " + maxRects);
+        }
+
+        this.maxRects = maxRects;
+        this.rects = new float[(maxRects + 1) * 4];
+    }
+
+    /**
+     * Marks an area as needing to be redrawn
+     * @param x left coordinate
+     * @param y top coordinate
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public void add(float x, float y, float width, float height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        float left = x;
+        float top = y;
+        float right = x + width;
+        float bottom = y + height;
+
+        for (int i = 0; i < count; i++) {
+            // already covered
+            if (left >= left(i) && top >= top(i) && right <= right(i) && bottom <= bottom(i)) {
+                return;
+            }
+        }
+
+        set(count++, left, top, right, bottom);
+
+        mergeOverlapping();
+
+        while (count > maxRects) {
+            mergeCheapest();
+        }
+    }
+
+    /**
+     * Removes all areas
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return the number of separate areas
+     */
+    public int size() {
+        return count;
+    }
+
+    public float getX(int index) {
+        return left(index);
+    }
+
+    public float getY(int index) {
+        return top(index);
+    }
+
+    public float getWidth(int index) {
+        return right(index) - left(index);
+    }
+
+    public float getHeight(int index) {
+        return bottom(index) - top(index);
+    }
+
+    /**
+     * @return the total area covered, in square pixels
+     */
+    public float getArea() {
+        float area = 0;
+
+        for (int i = 0; i < count; i++) {
+            area += area(i);
+        }
+
+        return area;
+    }
+
+    private void mergeOverlapping() {
+        boolean merged = true;
+
+        while (merged) {
+            merged = false;
+
+            for (int i = 0; i < count && !merged; i++) {
+                for (int j = i + 1; j < count && !merged; j++) {
+                    if (left(i) <= right(j) && left(j) <= right(i) && top(i) <= bottom(j) && top(j) <= bottom(i)) {
+                        merge(i, j);
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void mergeCheapest() {
+        int first = 0;
+        int second = 1;
+        float cheapest = Float.MAX_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                float union = (Math.max(right(i), right(j)) - Math.min(left(i), left(j))) * (Math.max(bottom(i), bottom(j)) - Math.min(top(i), top(j)));
+                float waste = union - area(i) - area(j);
+
+                if (waste < cheapest) {
+                    cheapest = waste;
+                    first = i;
+                    second = j;
+                }
+            }
+        }
+
+        merge(first, second);
+    }
+
+    // merges j into i, and moves the last rectangle into j's place
+    private void merge(int i, int j) {
+        set(i, Math.min(left(i), left(j)), Math.min(top(i), top(j)), Math.max(right(i), right(j)), Math.max(bottom(i), bottom(j)));
+
+        count--;
+
+        if (j != count) {
+            set(j, left(count), top(count), right(count), bottom(count));
+        }
+    }
+
+    private void set(int index, float left, float top, float right, float bottom) {
+        rects[index * 4] = left;
+        rects[index * 4 + 1] = top;
+        rects[index * 4 + 2] = right;
+        rects[index * 4 + 3] = bottom;
+    }
+
+    private float area(int index) {
+        return (right(index) - left(index)) * (bottom(index) - top(index));
+    }
+
+    private float left(int index) {
+        return rects[index * 4];
+    }
+
+    private float top(int index) {
+        return rects[index * 4 + 1];
+    }
+
+    private float right(int index) {
+        return rects[index * 4 + 2];
+    }
+
+    private float bottom(int index) {
+        return rects[index * 4 + 3];
+    }
+
+}
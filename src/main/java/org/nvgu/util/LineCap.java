@@ -0,0 +1,19 @@
+package org.nvgu.util;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+
+public enum LineCap {
+    BUTT(NVG_BUTT),
+    ROUND(NVG_ROUND),
+    SQUARE(NVG_SQUARE);
+
+    private final int cap;
+
+    LineCap(int cap) {
+        this.cap = cap;
+    }
+
+    public int getCap() {
+        return cap;
+    }
+}
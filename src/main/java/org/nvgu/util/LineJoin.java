@@ -0,0 +1,19 @@
+package org.nvgu.util;
+
+import static org.lwjgl.nanovg.NanoVG.*;
+
+public enum LineJoin {
+    MITER(NVG_MITER),
+    ROUND(NVG_ROUND),
+    BEVEL(NVG_BEVEL);
+
+    private final int join;
+
+    LineJoin(int join) {
+        this.join = join;
+    }
+
+    public int getJoin() {
+        return join;
+    }
+}
@@ -0,0 +1,166 @@
+package org.nvgu.util;
+
+import org.lwjgl.system.NativeResource;
+
+import static org.lwjgl.system.MemoryUtil.*;
+
+/**
+ * Off-heap bump allocator for short-lived structs, such as the colours and paints
+ * created while drawing a frame.
+ * Allocating is a pointer bump, and {@link NativeArena#reset()} releases everything at once.
+ * If a frame needs more memory than the arena holds, extra chunks are allocated for the
+ * rest of that frame, and on the next reset they are merged into a single chunk large enough
+ * for the whole frame, so once the arena has reached the high-water mark no further native
+ * allocation takes place.
+ */
+public class NativeArena implements NativeResource {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private long address = NULL;
+    private long capacity;
+    private long offset = 0;
+
+    // chunks which overflowed during the current frame, freed on the next reset
+    private long[] retired = new long[4];
+    private long retiredCapacity = 0;
+    private int retiredCount = 0;
+
+    private long highWaterMark = 0;
+
+    public NativeArena() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the initial capacity of the arena in bytes, which is allocated on first use
+     */
+    public NativeArena(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Allocates uninitialised memory from the arena.
+     * The memory remains valid until the next {@link NativeArena#reset()}.
+     * @param size the size of the allocation in bytes
+     * @param alignment the alignment of the allocation, must be a power of two
+     * @return the address of the allocation
+     */
+    public long malloc(int size, int alignment) {
+        if (address == NULL) {
+            address = nmemAllocChecked(capacity);
+        }
+
+        long aligned = (address + offset + alignment - 1) & -alignment;
+
+        if (aligned + size > address + capacity) {
+            grow(size + alignment);
+            aligned = (address + alignment - 1) & -alignment;
+        }
+
+        offset = aligned + size - address;
+        highWaterMark = Math.max(highWaterMark, retiredCapacity + offset);
+
+        return aligned;
+    }
+
+    /**
+     * Allocates zeroed memory from the arena.
+     * The memory remains valid until the next {@link NativeArena#reset()}.
+     * @param size the size of the allocation in bytes
+     * @param alignment the alignment of the allocation, must be a power of two
+     * @return the address of the allocation
+     */
+    public long calloc(int size, int alignment) {
+        long allocation = malloc(size, alignment);
+        memSet(allocation, 0, size);
+
+        return allocation;
+    }
+
+    /**
+     * Releases every allocation made since the last reset.
+     */
+    public void reset() {
+        if (retiredCount > 0) {
+            // the frame didn't fit, replace all chunks with a single one which does
+            long required = retiredCapacity + capacity;
+
+            for (int i = 0; i < retiredCount; i++) {
+                nmemFree(retired[i]);
+            }
+
+            nmemFree(address);
+
+            retiredCount = 0;
+            retiredCapacity = 0;
+
+            capacity = required;
+            address = nmemAllocChecked(capacity);
+        }
+
+        offset = 0;
+    }
+
+    /**
+     * Frees all memory held by the arena. The arena may still be used afterwards,
+     * in which case it will allocate again.
+     */
+    @Override
+    public void free() {
+        for (int i = 0; i < retiredCount; i++) {
+            nmemFree(retired[i]);
+        }
+
+        if (address != NULL) {
+            nmemFree(address);
+        }
+
+        retiredCount = 0;
+        retiredCapacity = 0;
+
+        address = NULL;
+        offset = 0;
+    }
+
+    /**
+     * @return the capacity of the current chunk in bytes
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of bytes in use since the last reset
+     */
+    public long getUsed() {
+        return retiredCapacity + offset;
+    }
+
+    /**
+     * @return the largest number of bytes in use at one time
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    private void grow(long required) {
+        if (retiredCount == retired.length) {
+            long[] newRetired = new long[retired.length * 2];
+            System.arraycopy(retired, 0, newRetired, 0, retired.length);
+            retired = newRetired;
+        }
+
+        retired[retiredCount++] = address;
+        retiredCapacity += capacity;
+
+        capacity = Math.max(capacity * 2, required);
+        address = nmemAllocChecked(capacity);
+        offset = 0;
+    }
+
+}
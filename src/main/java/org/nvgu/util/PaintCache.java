@@ -0,0 +1,289 @@
+package org.nvgu.util;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
+import org.lwjgl.system.NativeResource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps native colours and gradient paints alive across frames, so that constant colours and
+ * gradients with unchanged geometry don't have to be rebuilt every frame.
+ * Colours are keyed by their packed ARGB value, gradients by their type, geometry, colours and feather.
+ * The cache holds at most {@code capacity} entries, evicting the least recently used one when full.
+ * Evicted entries stay valid until {@link PaintCache#flush()} is called at the end of the frame.
+ */
+public class PaintCache implements NativeResource {
+
+    private static final int COLOUR = 0;
+    private static final int LINEAR_GRADIENT = 1;
+    private static final int RADIAL_GRADIENT = 2;
+
+    private final int capacity;
+    private final Map<Key, Object> entries;
+
+    // reused for lookups, so a hit doesn't allocate
+    private final Key probe = new Key();
+
+    private final NVGColor inner = NVGColor.calloc();
+    private final NVGColor outer = NVGColor.calloc();
+
+    private final List<Object> evicted = new ArrayList<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param capacity the maximum number of colours and paints to keep
+     */
+    public PaintCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+
+        this.capacity = capacity;
+
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() > PaintCache.this.capacity) {
+                    evicted.add(eldest.getValue());
+                    evictions++;
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached native colour for the given packed colour, creating it if needed.
+     * @param argb the colour, packed as ARGB
+     * @return the native colour
+     */
+    public NVGColor colour(int argb) {
+        probe.set(COLOUR, argb, 0, 0, 0, 0, 0, 0);
+
+        NVGColor colour = (NVGColor) entries.get(probe);
+
+        if (colour != null) {
+            hits++;
+            return colour;
+        }
+
+        misses++;
+
+        colour = Colours.unpack(argb, NVGColor.calloc());
+        entries.put(probe.copy(), colour);
+
+        return colour;
+    }
+
+    /**
+     * Gets the cached linear gradient with the given parameters, creating it if needed.
+     * @param startX start x coordinate of the gradient
+     * @param startY start y coordinate of the gradient
+     * @param endX end x coordinate of the gradient
+     * @param endY end y coordinate of the gradient
+     * @param feather the feather of the gradient
+     * @param start start colour of the gradient, packed as ARGB
+     * @param end end colour of the gradient, packed as ARGB
+     * @return the gradient
+     */
+    public NVGUColour linearGradient(float startX, float startY, float endX, float endY, float feather, int start, int end) {
+        probe.set(LINEAR_GRADIENT, start, end, startX, startY, endX, endY, feather);
+
+        NVGUColour colour = (NVGUColour) entries.get(probe);
+
+        if (colour != null) {
+            hits++;
+            return colour;
+        }
+
+        misses++;
+
+        NVGPaint paint = Paints.linearGradient(startX, startY, endX, endY, Colours.unpack(start, inner), Colours.unpack(end, outer), NVGPaint.calloc()).feather(feather);
+
+        colour = new NVGUColour(paint);
+        entries.put(probe.copy(), colour);
+
+        return colour;
+    }
+
+    /**
+     * Gets the cached radial gradient with the given parameters, creating it if needed.
+     * @param centreX centre x coordinate of the gradient
+     * @param centreY centre y coordinate of the gradient
+     * @param innerRadius the inner radius of the gradient
+     * @param outerRadius the outer radius of the gradient
+     * @param feather the feather of the gradient
+     * @param start start colour of the gradient, packed as ARGB
+     * @param end end colour of the gradient, packed as ARGB
+     * @return the gradient
+     */
+    public NVGUColour radialGradient(float centreX, float centreY, float innerRadius, float outerRadius, float feather, int start, int end) {
+        probe.set(RADIAL_GRADIENT, start, end, centreX, centreY, innerRadius, outerRadius, feather);
+
+        NVGUColour colour = (NVGUColour) entries.get(probe);
+
+        if (colour != null) {
+            hits++;
+            return colour;
+        }
+
+        misses++;
+
+        NVGPaint paint = Paints.radialGradient(centreX, centreY, innerRadius, outerRadius, Colours.unpack(start, inner), Colours.unpack(end, outer), NVGPaint.calloc()).feather(feather);
+
+        colour = new NVGUColour(paint);
+        entries.put(probe.copy(), colour);
+
+        return colour;
+    }
+
+    /**
+     * Frees the entries which have been evicted since the last flush.
+     * Should be called once the frame that may still be using them has been rendered.
+     */
+    public void flush() {
+        for (Object entry : evicted) {
+            release(entry);
+        }
+
+        evicted.clear();
+    }
+
+    /**
+     * Frees every entry, including those which have been evicted.
+     */
+    @Override
+    public void free() {
+        flush();
+
+        for (Object entry : entries.values()) {
+            release(entry);
+        }
+
+        entries.clear();
+
+        inner.free();
+        outer.free();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the fraction of lookups which were hits, or 0 if there haven't been any lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static void release(Object entry) {
+        if (entry instanceof NVGUColour) {
+            ((NVGUColour) entry).getPaint().free();
+        } else {
+            ((NVGColor) entry).free();
+        }
+    }
+
+    private static final class Key {
+
+        private int type;
+        private int start;
+        private int end;
+        private float a;
+        private float b;
+        private float c;
+        private float d;
+        private float e;
+        private int hash;
+
+        private void set(int type, int start, int end, float a, float b, float c, float d, float e) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+            this.e = e;
+
+            int hash = type;
+            hash = 31 * hash + start;
+            hash = 31 * hash + end;
+            hash = 31 * hash + Float.floatToIntBits(a);
+            hash = 31 * hash + Float.floatToIntBits(b);
+            hash = 31 * hash + Float.floatToIntBits(c);
+            hash = 31 * hash + Float.floatToIntBits(d);
+            hash = 31 * hash + Float.floatToIntBits(e);
+            this.hash = hash;
+        }
+
+        private Key copy() {
+            Key key = new Key();
+            key.set(type, start, end, a, b, c, d, e);
+
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) object;
+
+            return type == other.type
+                    && start == other.start
+                    && end == other.end
+                    && Float.floatToIntBits(a) == Float.floatToIntBits(other.a)
+                    && Float.floatToIntBits(b) == Float.floatToIntBits(other.b)
+                    && Float.floatToIntBits(c) == Float.floatToIntBits(other.c)
+                    && Float.floatToIntBits(d) == Float.floatToIntBits(other.d)
+                    && Float.floatToIntBits(e) == Float.floatToIntBits(other.e);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.nvgu.util;
+
+import org.lwjgl.nanovg.NVGColor;
+import org.lwjgl.nanovg.NVGPaint;
+
+/**
+ * Builds gradient and image paints the same way NanoVG does, without needing an instance of NanoVG,
+ * so that paints can be made for a {@link org.nvgu.render.SoftwareRenderer} as well.
+ */
+public final class Paints {
+
+    // how far linear gradients reach past their ends, as in NanoVG
+    private static final float LARGE = 1e5f;
+
+    private Paints() {
+    }
+
+    /**
+     * Writes a linear gradient into the given paint, the same as {@code nvgLinearGradient}
+     * @param startX start x coordinate of the gradient
+     * @param startY start y coordinate of the gradient
+     * @param endX end x coordinate of the gradient
+     * @param endY end y coordinate of the gradient
+     * @param inner start colour of the gradient
+     * @param outer end colour of the gradient
+     * @param paint the paint to write to
+     * @return the paint
+     */
+    public static NVGPaint linearGradient(float startX, float startY, float endX, float endY, NVGColor inner, NVGColor outer, NVGPaint paint) {
+        float dx = endX - startX;
+        float dy = endY - startY;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+        if (distance > 0.0001f) {
+            dx /= distance;
+            dy /= distance;
+        } else {
+            dx = 0;
+            dy = 1;
+        }
+
+        return set(paint, dy, -dx, dx, dy, startX - dx * LARGE, startY - dy * LARGE, LARGE, LARGE + distance * 0.5f, 0, Math.max(1, distance), inner, outer, 0);
+    }
+
+    /**
+     * Writes a radial gradient into the given paint, the same as {@code nvgRadialGradient}
+     * @param centreX x coordinate of the centre of the gradient
+     * @param centreY y coordinate of the centre of the gradient
+     * @param innerRadius the radius where the gradient starts
+     * @param outerRadius the radius where the gradient ends
+     * @param inner start colour of the gradient
+     * @param outer end colour of the gradient
+     * @param paint the paint to write to
+     * @return the paint
+     */
+    public static NVGPaint radialGradient(float centreX, float centreY, float innerRadius, float outerRadius, NVGColor inner, NVGColor outer, NVGPaint paint) {
+        float radius = (innerRadius + outerRadius) * 0.5f;
+
+        return set(paint, 1, 0, 0, 1, centreX, centreY, radius, radius, radius, Math.max(1, outerRadius - innerRadius), inner, outer, 0);
+    }
+
+    /**
+     * Writes an image pattern into the given paint, the same as {@code nvgImagePattern}
+     * @param x left coordinate of the image
+     * @param y top coordinate of the image
+     * @param width width of the image
+     * @param height height of the image
+     * @param angle rotation of the image around its top left corner, in radians
+     * @param image the image
+     * @param alpha the transparency of the image, from 0 to 1
+     * @param paint the paint to write to
+     * @return the paint
+     */
+    public static NVGPaint imagePattern(float x, float y, float width, float height, float angle, int image, float alpha, NVGPaint paint) {
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+
+        set(paint, cos, sin, -sin, cos, x, y, width, height, 0, 0, null, null, image);
+
+        paint.innerColor().r(1).g(1).b(1).a(alpha);
+        paint.outerColor().r(1).g(1).b(1).a(alpha);
+
+        return paint;
+    }
+
+    private static NVGPaint set(NVGPaint paint, float a, float b, float c, float d, float e, float f, float extentX, float extentY, float radius, float feather, NVGColor inner, NVGColor outer, int image) {
+        paint.xform(0, a);
+        paint.xform(1, b);
+        paint.xform(2, c);
+        paint.xform(3, d);
+        paint.xform(4, e);
+        paint.xform(5, f);
+
+        paint.extent(0, extentX);
+        paint.extent(1, extentY);
+
+        paint.radius(radius);
+        paint.feather(feather);
+        paint.image(image);
+
+        if (inner != null) {
+            paint.innerColor(inner);
+            paint.outerColor(outer);
+        }
+
+        return paint;
+    }
+
+}
@@ -0,0 +1,223 @@
+package org.nvgu.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers text measurements so they don't have to be asked of NanoVG again.
+ * Widths are keyed by font, size and text, and the cache holds at most {@code capacity} of them,
+ * evicting the least recently used one when full. Font metrics are keyed by font and size,
+ * and are kept until the cache is cleared, as there are only ever a few of them.
+ */
+public class TextMeasureCache {
+
+    private final int capacity;
+
+    private final Map<Key, Key> widths;
+    private final Map<Key, Key> metrics = new HashMap<>();
+
+    // reused for lookups, so a hit doesn't allocate
+    private final Key probe = new Key();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity the maximum number of widths to keep
+     */
+    public TextMeasureCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+
+        this.capacity = capacity;
+
+        this.widths = new LinkedHashMap<Key, Key>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Key> eldest) {
+                return size() > TextMeasureCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached width of the given text
+     * @param font the font of the text
+     * @param size the size of the font
+     * @param text the text
+     * @return the width, or {@link Float#NaN} if it hasn't been cached
+     */
+    public float getWidth(String font, float size, String text) {
+        Key key = widths.get(probe.set(font, size, text));
+
+        if (key == null) {
+            misses++;
+            return Float.NaN;
+        }
+
+        hits++;
+        return key.width;
+    }
+
+    /**
+     * Caches the width of the given text
+     * @param font the font of the text
+     * @param size the size of the font
+     * @param text the text
+     * @param width the width of the text
+     */
+    public void putWidth(String font, float size, String text, float width) {
+        Key key = new Key().set(font, size, text);
+        key.width = width;
+
+        widths.put(key, key);
+    }
+
+    /**
+     * Gets the cached line height of the given font
+     * @param font the font
+     * @param size the size of the font
+     * @return the line height, or {@link Float#NaN} if it hasn't been cached
+     */
+    public float getLineHeight(String font, float size) {
+        Key key = metrics.get(probe.set(font, size, null));
+
+        if (key == null) {
+            misses++;
+            return Float.NaN;
+        }
+
+        hits++;
+        return key.lineHeight;
+    }
+
+    /**
+     * Gets the cached ascender of the given font
+     * @param font the font
+     * @param size the size of the font
+     * @return the ascender, or {@link Float#NaN} if it hasn't been cached
+     */
+    public float getAscender(String font, float size) {
+        Key key = metrics.get(probe.set(font, size, null));
+        return key == null ? Float.NaN : key.ascender;
+    }
+
+    /**
+     * Gets the cached descender of the given font
+     * @param font the font
+     * @param size the size of the font
+     * @return the descender, or {@link Float#NaN} if it hasn't been cached
+     */
+    public float getDescender(String font, float size) {
+        Key key = metrics.get(probe.set(font, size, null));
+        return key == null ? Float.NaN : key.descender;
+    }
+
+    /**
+     * Caches the metrics of the given font
+     * @param font the font
+     * @param size the size of the font
+     * @param ascender the ascender of the font
+     * @param descender the descender of the font
+     * @param lineHeight the line height of the font
+     */
+    public void putMetrics(String font, float size, float ascender, float descender, float lineHeight) {
+        Key key = new Key().set(font, size, null);
+        key.ascender = ascender;
+        key.descender = descender;
+        key.lineHeight = lineHeight;
+
+        metrics.put(key, key);
+    }
+
+    /**
+     * Removes every cached measurement, e.g. after a font has been replaced
+     */
+    public void clear() {
+        widths.clear();
+        metrics.clear();
+    }
+
+    /**
+     * Resets the hit and miss counters
+     */
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of cached widths
+     */
+    public int size() {
+        return widths.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups which were hits, or 0 if there haven't been any lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    // doubles as the entry, so a width or the font metrics are stored alongside the key
+    private static final class Key {
+
+        private String font;
+        private float size;
+        private String text;
+        private int hash;
+
+        private float width;
+        private float ascender;
+        private float descender;
+        private float lineHeight;
+
+        private Key set(String font, float size, String text) {
+            this.font = font;
+            this.size = size;
+            this.text = text;
+
+            int hash = font.hashCode();
+            hash = 31 * hash + Float.floatToIntBits(size);
+            hash = 31 * hash + (text == null ? 0 : text.hashCode());
+            this.hash = hash;
+
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) object;
+
+            return Float.floatToIntBits(size) == Float.floatToIntBits(other.size)
+                    && font.equals(other.font)
+                    && (text == null ? other.text == null : text.equals(other.text));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -4,6 +4,7 @@ import org.lwjgl.glfw.GLFWCursorPosCallbackI;
 import org.nvgu.NVGU;
 import org.nvgu.util.Alignment;
 import org.nvgu.util.Border;
+import org.nvgu.util.Colours;
 import org.nvgu.util.LinearGradientDirection;
 
 import java.awt.*;
@@ -18,6 +19,9 @@ public class GUI {
     private static final Animation animationA = new Animation(1000, false, Easing.LINEAR);
     private static final Animation animationB = new Animation(1000, false, Easing.LINEAR);
 
+    private static final int CYAN = Color.CYAN.getRGB();
+    private static final int MAGENTA = Color.MAGENTA.getRGB();
+
     public static void main(String[] args) {
         nvgu = new NVGU();
 
@@ -25,6 +29,7 @@ public class GUI {
 
         Runnable init = () -> {
             nvgu.create()
+                    .enablePaintCache(256)
                     .createFont("inter", GUI.class.getResourceAsStream("inter.ttf"))
                     .createTexture("mountains", GUI.class.getResourceAsStream("mountains.jpg"));
         };
@@ -44,10 +49,14 @@ public class GUI {
                 animationB.setState(false);
             }
 
-            nvgu.texturedRoundedRectangle(0, 0, window.getWidth(), window.getHeight(), 20, "mountains")
-                    .roundedRectangle(0, 0, window.getWidth(), window.getHeight(), 20, new Color(0, 0, 0, 150))
-                    .roundedRectangle(0, 0, window.getWidth(), window.getHeight(), 20, nvgu.radialGradient(0, 0, window.getWidth(), window.getHeight(), 1000, 0, 500, new Color(0, 0, 0, 0), Color.BLACK, Alignment.CENTER_MIDDLE))
-                    .roundedRectangleBorder(0, 0, window.getWidth(), window.getHeight(), 20, 3, nvgu.linearGradient(0, 0, window.getWidth(), window.getHeight(), lerpColour(Color.CYAN, Color.MAGENTA, animationA.getAnimationFactor()), lerpColour(Color.MAGENTA, Color.CYAN, animationB.getAnimationFactor()), LinearGradientDirection.DIAGONAL_LEFT_TO_RIGHT_UP), Border.INSIDE)
+            // the background only changes when the window is resized
+            nvgu.layer("background", window.getWidth(), window.getHeight(), () -> {
+                nvgu.texturedRoundedRectangle(0, 0, window.getWidth(), window.getHeight(), 20, "mountains")
+                        .roundedRectangle(0, 0, window.getWidth(), window.getHeight(), 20, new Color(0, 0, 0, 150))
+                        .roundedRectangle(0, 0, window.getWidth(), window.getHeight(), 20, nvgu.radialGradient(0, 0, window.getWidth(), window.getHeight(), 1000, 0, 500, new Color(0, 0, 0, 0), Color.BLACK, Alignment.CENTER_MIDDLE));
+            });
+
+            nvgu.roundedRectangleBorder(0, 0, window.getWidth(), window.getHeight(), 20, 3, nvgu.linearGradient(0, 0, window.getWidth(), window.getHeight(), Colours.lerp(CYAN, MAGENTA, (float) animationA.getAnimationFactor()), Colours.lerp(MAGENTA, CYAN, (float) animationB.getAnimationFactor()), LinearGradientDirection.DIAGONAL_LEFT_TO_RIGHT_UP), Border.INSIDE)
                     .text("Example GUI Application", window.getWidth() / 2f, 100, Color.WHITE, "inter", 40, Alignment.CENTER_MIDDLE);
 
             button.render(nvgu, window.getMouseX(), window.getMouseY());
@@ -56,20 +65,14 @@ public class GUI {
         window.run(init, render);
     }
 
-    private static Color lerpColour(Color from, Color to, double factor) {
-        return new Color(
-                (int) (from.getRed() + (to.getRed() - from.getRed()) * factor),
-                (int) (from.getGreen() + (to.getGreen() - from.getGreen()) * factor),
-                (int) (from.getBlue() + (to.getBlue() - from.getBlue()) * factor),
-                (int) (from.getAlpha() + (to.getAlpha() - from.getAlpha()) * factor)
-        );
-    }
-
     private static class Button {
 
         private final String text;
         private final Rectangle bounds;
 
+        private static final int IDLE = new Color(023047).getRGB();
+        private static final int HOVERED = new Color(0x219ebc).getRGB();
+
         private final Animation hover = new Animation(100, false, Easing.LINEAR);
 
         public Button(String text, Rectangle bounds) {
@@ -80,7 +83,7 @@ public class GUI {
         public void render(NVGU nvgu, float mouseX, float mouseY) {
             hover.setState(bounds.contains(mouseX, mouseY));
 
-            nvgu.roundedRectangle((float) (bounds.x + (2 * hover.getAnimationFactor())), (float) (bounds.y + (2 * hover.getAnimationFactor())), (float) (bounds.width - ((2 * hover.getAnimationFactor()) * 2)), (float) (bounds.height - ((2 * hover.getAnimationFactor()) * 2)), 10, lerpColour(new Color(023047), new Color(0x219ebc), hover.getLinearFactor()))
+            nvgu.roundedRectangle((float) (bounds.x + (2 * hover.getAnimationFactor())), (float) (bounds.y + (2 * hover.getAnimationFactor())), (float) (bounds.width - ((2 * hover.getAnimationFactor()) * 2)), (float) (bounds.height - ((2 * hover.getAnimationFactor()) * 2)), 10, Colours.lerp(IDLE, HOVERED, (float) hover.getLinearFactor()))
                     .text(this.text, bounds.x + bounds.width / 2f, bounds.y + bounds.height / 2f, Color.WHITE, "inter", 15, Alignment.CENTER_MIDDLE);
         }
 
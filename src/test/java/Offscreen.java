@@ -0,0 +1,63 @@
+import org.nvgu.NVGU;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.stb.STBImageWrite.stbi_write_png;
+
+public class Offscreen {
+
+    private static final int WIDTH = 600;
+    private static final int HEIGHT = 300;
+    private static final int FRAMES = 200;
+
+    public static void main(String[] args) {
+        NVGU nvgu = new NVGU().createOffscreen(WIDTH, HEIGHT);
+
+        float[] values = new float[24];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) (0.5 + 0.4 * Math.sin(i * 0.5));
+        }
+
+        Runnable chart = () -> {
+            nvgu.rectangle(0, 0, WIDTH, HEIGHT, Color.WHITE);
+
+            for (int i = 0; i < values.length; i++) {
+                float height = values[i] * (HEIGHT - 20);
+                nvgu.rectangle(10 + i * 24, HEIGHT - 10 - height, 20, height, Color.BLUE);
+            }
+        };
+
+        ByteBuffer pixels = nvgu.offscreenFrame(chart);
+        stbi_write_png("offscreen.png", WIDTH, HEIGHT, 4, pixels, WIDTH * 4);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < FRAMES; i++) {
+            nvgu.offscreenFrame(chart);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d frames of %dx%d in %.2f s, %.1f frames/s%n", FRAMES, WIDTH, HEIGHT, seconds, FRAMES / seconds);
+
+        // the same frames, read back in the background instead, where they would be encoded
+        long[] checksum = new long[1];
+
+        nvgu.enableExport(WIDTH, HEIGHT, 3, (frame, rgba, width, height) -> {
+            while (rgba.hasRemaining()) {
+                checksum[0] += rgba.get() & 0xFF;
+            }
+        });
+
+        for (int i = 0; i < FRAMES; i++) {
+            nvgu.frame(WIDTH, HEIGHT, chart);
+        }
+
+        nvgu.finishExport();
+        System.out.printf("%d frames exported at %.1f frames/s%n", nvgu.getFrameExporter().getExported(), nvgu.getFrameExporter().getExportFps());
+
+        nvgu.destroy();
+    }
+
+}
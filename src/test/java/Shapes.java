@@ -36,11 +36,19 @@ public class Shapes {
                             new float[] { 460, 35 },
                             new float[] { 470, 20 },
                             new float[] { 460, 5 }
-                    }, Color.WHITE);
+                    }, Color.WHITE)
+                    .rectangles(new float[] {
+                            475, 5, 14, 14,
+                            491, 5, 14, 14,
+                            475, 21, 14, 14,
+                            491, 21, 14, 14
+                    }, new int[] { 0xFFFF0000, 0xFF00FF00, 0xFF00FF00, 0xFFFF0000 })
+                    .circles(new float[] { 517, 12, 7, 517, 28, 7 }, new int[] { 0xFFFFFF00 });
 
             nvgu.text("Hello, world!", 5, 55, Color.WHITE, "arial", 20, Alignment.LEFT_TOP)
                     .setFontData("arial", 10, Alignment.LEFT_TOP)
                     .text("Smaller text!", 10 + nvgu.textWidth("Hello, world!", "arial", 20), 55, Color.BLUE)
+                    .wrappedText("This paragraph is wrapped to fit inside a 200 pixel wide column, and is only laid out once.", 5, 85, 200, Color.WHITE, "arial", 14, Alignment.LEFT_TOP)
                     .create();
         }));
 
@@ -0,0 +1,137 @@
+package org.nvgu.render;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that clipping to the bounds doesn't change the coverage of what is left inside them,
+ * by comparing shapes rasterized within narrow bounds against the same shapes within wide ones.
+ */
+public class RasterizerTest {
+
+    private static final int HEIGHT = 60;
+
+    @Test
+    public void clippingOnTheRightKeepsCoverage() {
+        float[] triangle = { 50, 0, 150, 50, 50, 50 };
+
+        assertSameCoverage(rasterize(triangle, 0, 100), rasterize(triangle, 0, 200), 0, 100);
+    }
+
+    @Test
+    public void clippingOnTheLeftKeepsCoverage() {
+        float[] triangle = { 50, 0, 150, 50, 50, 50 };
+
+        assertSameCoverage(rasterize(triangle, 100, 200), rasterize(triangle, 0, 200), 100, 200);
+    }
+
+    @Test
+    public void clippingOnBothSidesKeepsCoverage() {
+        float[] quad = { -20, 5, 130, 0, 110, 55, 10, 40 };
+
+        assertSameCoverage(rasterize(quad, 30, 90), rasterize(quad, -50, 200), 30, 90);
+    }
+
+    @Test
+    public void shapesOutsideOnTheRightCoverNothing() {
+        float[] triangle = { 120, 0, 180, 30, 120, 50 };
+
+        float[] coverage = rasterize(triangle, 0, 100);
+
+        for (float value : coverage) {
+            assertEquals(0, value, 0);
+        }
+    }
+
+    @Test
+    public void frameEdgeMatchesWiderFrame() {
+        SoftwareRenderer narrow = new SoftwareRenderer(100, HEIGHT);
+        SoftwareRenderer wide = new SoftwareRenderer(200, HEIGHT);
+
+        for (SoftwareRenderer renderer : new SoftwareRenderer[] { narrow, wide }) {
+            renderer.beginPath();
+            renderer.moveTo(50, 0);
+            renderer.lineTo(150, 50);
+            renderer.lineTo(50, 50);
+            renderer.closePath();
+            renderer.fill(0xFFFF0000);
+        }
+
+        assertSamePixels(narrow.getPixels(), 100, wide.getPixels(), 200, 100);
+        assertEquals(191, narrow.getPixels()[10 * 100 + 70] >>> 24, 1);
+        assertEquals(255, narrow.getPixels()[20 * 100 + 70] >>> 24);
+    }
+
+    @Test
+    public void scissorEdgeMatchesUnscissored() {
+        SoftwareRenderer scissored = new SoftwareRenderer(200, HEIGHT);
+        SoftwareRenderer whole = new SoftwareRenderer(200, HEIGHT);
+
+        scissored.intersectScissor(0, 0, 100, HEIGHT);
+
+        for (SoftwareRenderer renderer : new SoftwareRenderer[] { scissored, whole }) {
+            renderer.beginPath();
+            renderer.moveTo(50, 0);
+            renderer.lineTo(150, 50);
+            renderer.lineTo(50, 50);
+            renderer.closePath();
+            renderer.fill(0xFFFF0000);
+        }
+
+        assertSamePixels(scissored.getPixels(), 200, whole.getPixels(), 200, 100);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 100; x < 200; x++) {
+                assertEquals(0, scissored.getPixels()[y * 200 + x], "pixel " + x + ", " + y + " is outside the scissor");
+            }
+        }
+    }
+
+    // rasterizes the polygon within the given columns, returning the coverage of every pixel of a frame 200 wide
+    private static float[] rasterize(float[] polygon, int left, int right) {
+        float[] coverage = new float[200 * HEIGHT];
+        Rasterizer rasterizer = new Rasterizer(new ForkJoinPool(1));
+
+        assertTrue(rasterizer.begin(left, 0, right, HEIGHT));
+
+        for (int i = 0; i < polygon.length; i += 2) {
+            int next = (i + 2) % polygon.length;
+            rasterizer.line(polygon[i], polygon[i + 1], polygon[next], polygon[next + 1]);
+        }
+
+        rasterizer.rasterize((y, x, cells, offset, length) -> {
+            for (int i = 0; i < length; i++) {
+                int column = x + i;
+
+                if (column >= 0 && column < 200) {
+                    coverage[y * 200 + column] = cells[offset + i];
+                }
+            }
+        });
+
+        return coverage;
+    }
+
+    private static void assertSameCoverage(float[] clipped, float[] unclipped, int from, int to) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = from; x < to; x++) {
+                assertEquals(unclipped[y * 200 + x], clipped[y * 200 + x], 1e-4f, "coverage of " + x + ", " + y);
+            }
+        }
+    }
+
+    private static void assertSamePixels(int[] first, int firstWidth, int[] second, int secondWidth, int columns) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < columns; x++) {
+                int a = first[y * firstWidth + x] >>> 24;
+                int b = second[y * secondWidth + x] >>> 24;
+
+                assertEquals(b, a, 1, "alpha of " + x + ", " + y);
+            }
+        }
+    }
+
+}